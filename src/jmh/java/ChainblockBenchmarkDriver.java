@@ -0,0 +1,187 @@
+import benchmarks.ChainblockDriver;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+public class ChainblockBenchmarkDriver implements ChainblockDriver {
+    private static final int PROBES = 1024;
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    private static final String MISSING_PARTY = "missing";
+
+    private Chainblock chainblock;
+    private TransactionGenerator generator;
+    private Transaction[] probes;
+    private int cursor;
+
+    public void setUp(String implementation, int size, int parties, String statusMix) {
+        generator = new TransactionGenerator(42, parties, statusMix);
+        List<Transaction> transactions = generator.next(size);
+        chainblock = Chainblocks.create(implementation, size);
+        chainblock.addAll(transactions);
+        probes = new Transaction[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = transactions.get(generator.nextIndex(size));
+        }
+    }
+
+    private Transaction probe() {
+        return probes[cursor++ & (PROBES - 1)];
+    }
+
+    public int getCount() {
+        return chainblock.getCount();
+    }
+
+    public void addThenRemove() {
+        Transaction transaction = generator.next();
+        chainblock.add(transaction);
+        chainblock.removeTransactionById(transaction.getId());
+    }
+
+    public void addAllThenRemove(int batch) {
+        List<Transaction> transactions = generator.next(batch);
+        chainblock.addAll(transactions);
+        for (Transaction transaction : transactions) {
+            chainblock.removeTransactionById(transaction.getId());
+        }
+    }
+
+    public boolean containsTransaction() {
+        return chainblock.contains(probe());
+    }
+
+    public boolean containsId() {
+        return chainblock.contains(probe().getId());
+    }
+
+    public boolean containsMissingId() {
+        return chainblock.contains(-1 - (cursor++ & (PROBES - 1)));
+    }
+
+    public void changeTransactionStatus() {
+        chainblock.changeTransactionStatus(probe().getId(), STATUSES[cursor & 3]);
+    }
+
+    public Object getById() {
+        return chainblock.getById(probe().getId());
+    }
+
+    public Object getMissingId() {
+        return chainblock.getById(-1 - (cursor++ & (PROBES - 1)));
+    }
+
+    public Object tryGetById() {
+        return chainblock.tryGetById(probe().getId());
+    }
+
+    public Object tryGetMissingId() {
+        return chainblock.tryGetById(-1 - (cursor++ & (PROBES - 1)));
+    }
+
+    public Iterable<?> getByTransactionStatus() {
+        return chainblock.getByTransactionStatus(probe().getStatus());
+    }
+
+    public Iterable<?> getAllSendersWithTransactionStatus() {
+        return chainblock.getAllSendersWithTransactionStatus(probe().getStatus());
+    }
+
+    public Iterable<?> getAllReceiversWithTransactionStatus() {
+        return chainblock.getAllReceiversWithTransactionStatus(probe().getStatus());
+    }
+
+    public Iterable<?> getAllOrderedByAmountDescendingThenById() {
+        return chainblock.getAllOrderedByAmountDescendingThenById();
+    }
+
+    public Iterable<?> getBySenderOrderedByAmountDescending() {
+        return chainblock.getBySenderOrderedByAmountDescending(probe().getFrom());
+    }
+
+    public Iterable<?> getByReceiverOrderedByAmountThenById() {
+        return chainblock.getByReceiverOrderedByAmountThenById(probe().getTo());
+    }
+
+    public Iterable<?> getByTransactionStatusAndMaximumAmount() {
+        Transaction probe = probe();
+        return chainblock.getByTransactionStatusAndMaximumAmount(probe.getStatus(), probe.getAmount());
+    }
+
+    public Iterable<?> getByTransactionStatusAndMaximumAmount(double amount) {
+        return chainblock.getByTransactionStatusAndMaximumAmount(probe().getStatus(), amount);
+    }
+
+    public Iterable<?> getBySenderAndMinimumAmountDescending() {
+        Transaction probe = probe();
+        return chainblock.getBySenderAndMinimumAmountDescending(probe.getFrom(), probe.getAmount() - 0.01);
+    }
+
+    public Iterable<?> getByReceiverAndAmountRange() {
+        Transaction probe = probe();
+        return chainblock.getByReceiverAndAmountRange(probe.getTo(), probe.getAmount() - 100, probe.getAmount() + 100);
+    }
+
+    public Iterable<?> getByMissingSender() {
+        return chainblock.getBySenderOrderedByAmountDescending(MISSING_PARTY);
+    }
+
+    public int forEachBySender(Consumer<Object> action) {
+        return chainblock.forEachBySender(probe().getFrom(), action);
+    }
+
+    public int forEachByMissingSender(Consumer<Object> action) {
+        return chainblock.forEachBySender(MISSING_PARTY, action);
+    }
+
+    public int forEachByReceiverAndAmountRange(Consumer<Object> action) {
+        Transaction probe = probe();
+        return chainblock.forEachByReceiverAndAmountRange(probe.getTo(), probe.getAmount() - 100, probe.getAmount() + 100,
+                action);
+    }
+
+    public Iterable<?> getAllInAmountRange() {
+        Transaction probe = probe();
+        return chainblock.getAllInAmountRange(probe.getAmount() - 10, probe.getAmount() + 10);
+    }
+
+    public Iterable<?> getAllInAmountRange(double lo, double hi) {
+        return chainblock.getAllInAmountRange(lo, hi);
+    }
+
+    public Iterable<?> getTopOrderedByAmountDescendingThenById(int count) {
+        return chainblock.getTopOrderedByAmountDescendingThenById(count);
+    }
+
+    public Iterable<?> getTopBySenderOrderedByAmountDescending(int count) {
+        return chainblock.getTopBySenderOrderedByAmountDescending(probe().getFrom(), count);
+    }
+
+    public Iterable<?> getTopByTransactionStatus(int count) {
+        return chainblock.getTopByTransactionStatus(probe().getStatus(), count);
+    }
+
+    public Iterable<?> getPageOrderedByAmountDescendingThenById(int pageSize) {
+        return chainblock.getPageOrderedByAmountDescendingThenById(PageCursor.after(probe()), pageSize);
+    }
+
+    public Iterable<?> getPageByReceiverOrderedByAmountThenById(int pageSize) {
+        Transaction probe = probe();
+        return chainblock.getPageByReceiverOrderedByAmountThenById(probe.getTo(), PageCursor.after(probe), pageSize);
+    }
+
+    public Iterable<?> iterate() {
+        return chainblock;
+    }
+
+    public Object getRootHash() {
+        return ((MerkleChainblock) chainblock).getRootHash();
+    }
+
+    public Object getInclusionProof() {
+        return ((MerkleChainblock) chainblock).getInclusionProof(probe().getId());
+    }
+
+    public boolean verify() {
+        return ((MerkleChainblock) chainblock).verify();
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Creates the {@link Chainblock} implementations benchmarks compare, by name.
+ */
+public final class Chainblocks {
+    private Chainblocks() {
+    }
+
+    public static Chainblock create(String implementation, int expectedSize) {
+        switch (implementation) {
+            case "ChainblockImpl":
+                return new ChainblockImpl(expectedSize, false);
+            case "ChainblockImpl-lazy":
+                return new ChainblockImpl(expectedSize, true);
+            case "ChainblockImpl-parallel":
+                return new ChainblockImpl(expectedSize, false, 1);
+            case "ConcurrentChainblock":
+                return new ConcurrentChainblock();
+            case "ColumnarChainblock":
+                return new ColumnarChainblock();
+            case "ColumnarChainblock-offHeap":
+                return new ColumnarChainblock(new StringDictionary(), true);
+            case "VersionedChainblock":
+                return new VersionedChainblock();
+            case "ShardedChainblock":
+                return new ShardedChainblock(Runtime.getRuntime().availableProcessors(),
+                        () -> new ChainblockImpl(expectedSize / Runtime.getRuntime().availableProcessors(), false));
+            case "InstrumentedChainblock":
+                return new InstrumentedChainblock(new ChainblockImpl(expectedSize, false));
+            case "MerkleChainblock":
+                return new MerkleChainblock(new ChainblockImpl(expectedSize, false));
+            default:
+                throw new IllegalArgumentException("Unknown implementation " + implementation);
+        }
+    }
+}
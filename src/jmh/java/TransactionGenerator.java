@@ -0,0 +1,63 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Seeded source of benchmark transactions. Ids are sequential from 0, amounts
+ * have two decimals, parties are drawn from a fixed pool and statuses follow
+ * either a uniform or a mostly-successful mix.
+ */
+public class TransactionGenerator {
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private final SplittableRandom random;
+    private final String[] parties;
+    private final boolean skewed;
+    private int nextId;
+
+    public TransactionGenerator(long seed, int partyCount, String statusMix) {
+        this.random = new SplittableRandom(seed);
+        this.parties = new String[partyCount];
+        for (int i = 0; i < partyCount; i++) {
+            this.parties[i] = "party-" + i;
+        }
+        switch (statusMix) {
+            case "uniform":
+                this.skewed = false;
+                break;
+            case "skewed":
+                this.skewed = true;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown status mix " + statusMix);
+        }
+    }
+
+    public Transaction next() {
+        return new TransactionImpl(nextId++, nextStatus(), nextParty(), nextParty(), random.nextInt(1_000_000) / 100.0);
+    }
+
+    public List<Transaction> next(int count) {
+        List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            transactions.add(next());
+        }
+        return transactions;
+    }
+
+    public int nextIndex(int bound) {
+        return random.nextInt(bound);
+    }
+
+    private String nextParty() {
+        return parties[random.nextInt(parties.length)];
+    }
+
+    private TransactionStatus nextStatus() {
+        if (!skewed) {
+            return STATUSES[random.nextInt(STATUSES.length)];
+        }
+        int roll = random.nextInt(100);
+        return roll < 85 ? TransactionStatus.SUCCESSFUL : STATUSES[roll % STATUSES.length];
+    }
+}
@@ -0,0 +1,169 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures every {@code Chainblock} operation on a seeded chain. Select a
+ * subset with JMH parameters, e.g. {@code -p size=10000 -p implementation=ChainblockImpl},
+ * and add {@code -prof gc} to report allocation per operation. Query results
+ * are iterated in full so lazy and eager implementations do the same work.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ChainblockBenchmark {
+
+    @Param({"ChainblockImpl", "ChainblockImpl-lazy", "ConcurrentChainblock", "ColumnarChainblock"})
+    public String implementation;
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"100", "10000"})
+    public int parties;
+
+    @Param({"uniform", "skewed"})
+    public String statusMix;
+
+    @Param({"10"})
+    public int top;
+
+    private ChainblockDriver driver;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        driver = ChainblockDriver.create(implementation, size, parties, statusMix);
+    }
+
+    private static void consume(Iterable<?> result, Blackhole blackhole) {
+        for (Object item : result) {
+            blackhole.consume(item);
+        }
+    }
+
+    @Benchmark
+    public int getCount() {
+        return driver.getCount();
+    }
+
+    @Benchmark
+    public void addThenRemove() {
+        driver.addThenRemove();
+    }
+
+    @Benchmark
+    public void addAllThenRemove() {
+        driver.addAllThenRemove(100);
+    }
+
+    @Benchmark
+    public boolean containsTransaction() {
+        return driver.containsTransaction();
+    }
+
+    @Benchmark
+    public boolean containsId() {
+        return driver.containsId();
+    }
+
+    @Benchmark
+    public boolean containsMissingId() {
+        return driver.containsMissingId();
+    }
+
+    @Benchmark
+    public void changeTransactionStatus() {
+        driver.changeTransactionStatus();
+    }
+
+    @Benchmark
+    public Object getById() {
+        return driver.getById();
+    }
+
+    @Benchmark
+    public void getByTransactionStatus(Blackhole blackhole) {
+        consume(driver.getByTransactionStatus(), blackhole);
+    }
+
+    @Benchmark
+    public void getAllSendersWithTransactionStatus(Blackhole blackhole) {
+        consume(driver.getAllSendersWithTransactionStatus(), blackhole);
+    }
+
+    @Benchmark
+    public void getAllReceiversWithTransactionStatus(Blackhole blackhole) {
+        consume(driver.getAllReceiversWithTransactionStatus(), blackhole);
+    }
+
+    @Benchmark
+    public void getAllOrderedByAmountDescendingThenById(Blackhole blackhole) {
+        consume(driver.getAllOrderedByAmountDescendingThenById(), blackhole);
+    }
+
+    @Benchmark
+    public void getBySenderOrderedByAmountDescending(Blackhole blackhole) {
+        consume(driver.getBySenderOrderedByAmountDescending(), blackhole);
+    }
+
+    @Benchmark
+    public void getByReceiverOrderedByAmountThenById(Blackhole blackhole) {
+        consume(driver.getByReceiverOrderedByAmountThenById(), blackhole);
+    }
+
+    @Benchmark
+    public void getByTransactionStatusAndMaximumAmount(Blackhole blackhole) {
+        consume(driver.getByTransactionStatusAndMaximumAmount(), blackhole);
+    }
+
+    @Benchmark
+    public void getBySenderAndMinimumAmountDescending(Blackhole blackhole) {
+        consume(driver.getBySenderAndMinimumAmountDescending(), blackhole);
+    }
+
+    @Benchmark
+    public void getByReceiverAndAmountRange(Blackhole blackhole) {
+        consume(driver.getByReceiverAndAmountRange(), blackhole);
+    }
+
+    @Benchmark
+    public void getAllInAmountRange(Blackhole blackhole) {
+        consume(driver.getAllInAmountRange(), blackhole);
+    }
+
+    @Benchmark
+    public void getTopOrderedByAmountDescendingThenById(Blackhole blackhole) {
+        consume(driver.getTopOrderedByAmountDescendingThenById(top), blackhole);
+    }
+
+    @Benchmark
+    public void getTopBySenderOrderedByAmountDescending(Blackhole blackhole) {
+        consume(driver.getTopBySenderOrderedByAmountDescending(top), blackhole);
+    }
+
+    @Benchmark
+    public void getTopByTransactionStatus(Blackhole blackhole) {
+        consume(driver.getTopByTransactionStatus(top), blackhole);
+    }
+
+    @Benchmark
+    public void getPageOrderedByAmountDescendingThenById(Blackhole blackhole) {
+        consume(driver.getPageOrderedByAmountDescendingThenById(top), blackhole);
+    }
+
+    @Benchmark
+    public void getPageByReceiverOrderedByAmountThenById(Blackhole blackhole) {
+        consume(driver.getPageByReceiverOrderedByAmountThenById(top), blackhole);
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        consume(driver.iterate(), blackhole);
+    }
+}
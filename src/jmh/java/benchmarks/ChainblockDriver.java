@@ -0,0 +1,99 @@
+package benchmarks;
+
+import java.util.function.Consumer;
+
+/**
+ * Bridge between JMH, which refuses benchmark classes in the default package,
+ * and the chainblock classes, which live there and so cannot be referenced from
+ * a named package. The implementation, {@code ChainblockBenchmarkDriver}, sits
+ * in the default package and is loaded by name; every call is a monomorphic
+ * interface call that the JIT inlines.
+ */
+public interface ChainblockDriver {
+
+    static ChainblockDriver create(String implementation, int size, int parties, String statusMix) {
+        try {
+            ChainblockDriver driver = (ChainblockDriver) Class.forName("ChainblockBenchmarkDriver")
+                    .getDeclaredConstructor()
+                    .newInstance();
+            driver.setUp(implementation, size, parties, statusMix);
+            return driver;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    void setUp(String implementation, int size, int parties, String statusMix);
+
+    int getCount();
+
+    void addThenRemove();
+
+    void addAllThenRemove(int batch);
+
+    boolean containsTransaction();
+
+    boolean containsId();
+
+    boolean containsMissingId();
+
+    void changeTransactionStatus();
+
+    Object getById();
+
+    Object getMissingId();
+
+    Object tryGetById();
+
+    Object tryGetMissingId();
+
+    Iterable<?> getByTransactionStatus();
+
+    Iterable<?> getAllSendersWithTransactionStatus();
+
+    Iterable<?> getAllReceiversWithTransactionStatus();
+
+    Iterable<?> getAllOrderedByAmountDescendingThenById();
+
+    Iterable<?> getBySenderOrderedByAmountDescending();
+
+    Iterable<?> getByReceiverOrderedByAmountThenById();
+
+    Iterable<?> getByTransactionStatusAndMaximumAmount();
+
+    Iterable<?> getByTransactionStatusAndMaximumAmount(double amount);
+
+    Iterable<?> getBySenderAndMinimumAmountDescending();
+
+    Iterable<?> getByReceiverAndAmountRange();
+
+    Iterable<?> getByMissingSender();
+
+    int forEachBySender(Consumer<Object> action);
+
+    int forEachByMissingSender(Consumer<Object> action);
+
+    int forEachByReceiverAndAmountRange(Consumer<Object> action);
+
+    Iterable<?> getAllInAmountRange();
+
+    Iterable<?> getAllInAmountRange(double lo, double hi);
+
+    Iterable<?> getTopOrderedByAmountDescendingThenById(int count);
+
+    Iterable<?> getTopBySenderOrderedByAmountDescending(int count);
+
+    Iterable<?> getTopByTransactionStatus(int count);
+
+    Iterable<?> getPageOrderedByAmountDescendingThenById(int pageSize);
+
+    Iterable<?> getPageByReceiverOrderedByAmountThenById(int pageSize);
+
+    Iterable<?> iterate();
+
+    Object getRootHash();
+
+    Object getInclusionProof();
+
+    boolean verify();
+}
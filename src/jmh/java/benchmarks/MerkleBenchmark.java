@@ -0,0 +1,60 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of keeping a {@code MerkleChainblock} and of auditing it.
+ * {@code verify} rehashes the whole chain on the common fork-join pool, so its
+ * time should drop close to linearly with the number of cores; compare
+ * {@code addThenRemove} with the same benchmark on {@code ChainblockImpl} in
+ * {@link ChainblockBenchmark} for the per-write overhead.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+@State(Scope.Benchmark)
+public class MerkleBenchmark {
+
+    @Param({"100000", "1000000", "10000000"})
+    public int size;
+
+    private ChainblockDriver driver;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        driver = ChainblockDriver.create("MerkleChainblock", size, 10_000, "uniform");
+    }
+
+    @Benchmark
+    public void addThenRemove() {
+        driver.addThenRemove();
+    }
+
+    @Benchmark
+    public void changeTransactionStatus() {
+        driver.changeTransactionStatus();
+    }
+
+    @Benchmark
+    public Object getRootHash() {
+        return driver.getRootHash();
+    }
+
+    @Benchmark
+    public Object getInclusionProof() {
+        return driver.getInclusionProof();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public boolean verify() {
+        return driver.verify();
+    }
+}
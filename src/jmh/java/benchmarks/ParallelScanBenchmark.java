@@ -0,0 +1,55 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the sequential and fork-join paths of the queries that restore
+ * insertion order. {@code ChainblockImpl-parallel} always takes the parallel
+ * path, so the crossover is the smallest match count (about
+ * {@code size * selectivity}) at which it beats {@code ChainblockImpl}; use
+ * that as the {@code parallelThreshold}. Amounts are uniform in [0, 10000).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+@State(Scope.Benchmark)
+public class ParallelScanBenchmark {
+    private static final double MAXIMUM_AMOUNT = 10_000;
+
+    @Param({"ChainblockImpl", "ChainblockImpl-parallel"})
+    public String implementation;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"0.01", "0.1", "1.0"})
+    public double selectivity;
+
+    private ChainblockDriver driver;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        driver = ChainblockDriver.create(implementation, size, 10_000, "uniform");
+    }
+
+    private static void consume(Iterable<?> result, Blackhole blackhole) {
+        for (Object item : result) {
+            blackhole.consume(item);
+        }
+    }
+
+    @Benchmark
+    public void getAllInAmountRange(Blackhole blackhole) {
+        consume(driver.getAllInAmountRange(-1, MAXIMUM_AMOUNT * selectivity), blackhole);
+    }
+
+    @Benchmark
+    public void getByTransactionStatusAndMaximumAmount(Blackhole blackhole) {
+        consume(driver.getByTransactionStatusAndMaximumAmount(MAXIMUM_AMOUNT * selectivity), blackhole);
+    }
+}
@@ -0,0 +1,111 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Compares the throwing queries with their visitor counterparts on hits and on
+ * misses. Run with {@code -prof gc}: on {@code ChainblockImpl} the
+ * {@code tryGetById} and {@code forEachBySender} hits and misses should report
+ * about 0 B/op, and {@code forEachByReceiverAndAmountRange} a constant amount
+ * for its sub-set view whatever the number of matches.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class VisitorQueryBenchmark {
+
+    @Param({"ChainblockImpl", "InstrumentedChainblock"})
+    public String implementation;
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    @Param({"10000"})
+    public int parties;
+
+    private ChainblockDriver driver;
+    private long checksum;
+    private Consumer<Object> sink;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        driver = ChainblockDriver.create(implementation, size, parties, "uniform");
+        sink = item -> checksum += item.hashCode();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(Blackhole blackhole) {
+        blackhole.consume(checksum);
+    }
+
+    private static void consume(Iterable<?> result, Blackhole blackhole) {
+        for (Object item : result) {
+            blackhole.consume(item);
+        }
+    }
+
+    @Benchmark
+    public Object getById() {
+        return driver.getById();
+    }
+
+    @Benchmark
+    public Object tryGetById() {
+        return driver.tryGetById();
+    }
+
+    @Benchmark
+    public Object getMissingId() {
+        try {
+            return driver.getMissingId();
+        } catch (IllegalArgumentException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object tryGetMissingId() {
+        return driver.tryGetMissingId();
+    }
+
+    @Benchmark
+    public void getBySender(Blackhole blackhole) {
+        consume(driver.getBySenderOrderedByAmountDescending(), blackhole);
+    }
+
+    @Benchmark
+    public int forEachBySender() {
+        return driver.forEachBySender(sink);
+    }
+
+    @Benchmark
+    public Object getByMissingSender() {
+        try {
+            return driver.getByMissingSender();
+        } catch (IllegalArgumentException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public int forEachByMissingSender() {
+        return driver.forEachByMissingSender(sink);
+    }
+
+    @Benchmark
+    public void getByReceiverAndAmountRange(Blackhole blackhole) {
+        consume(driver.getByReceiverAndAmountRange(), blackhole);
+    }
+
+    @Benchmark
+    public int forEachByReceiverAndAmountRange() {
+        return driver.forEachByReceiverAndAmountRange(sink);
+    }
+}
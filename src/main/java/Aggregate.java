@@ -0,0 +1,45 @@
+/**
+ * Count, sum, minimum and maximum of the amounts of a group of transactions,
+ * as returned by {@link AggregatingChainblock}. Minimum and maximum are NaN for
+ * an empty group.
+ */
+public final class Aggregate {
+    static final Aggregate EMPTY = new Aggregate(0, 0, Double.NaN, Double.NaN);
+
+    private final long count;
+    private final double sum;
+    private final double min;
+    private final double max;
+
+    Aggregate(long count, double sum, double min, double max) {
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getAverage() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + " sum=" + sum + " min=" + min + " max=" + max;
+    }
+}
@@ -0,0 +1,311 @@
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * {@link Chainblock} decorator that keeps count, sum, minimum and maximum of
+ * the amounts per sender, per receiver and per status, plus the number of
+ * distinct senders and receivers per status. Every successful {@code add},
+ * {@code removeTransactionById} and {@code changeTransactionStatus} updates
+ * the affected groups in place, so reading an aggregate never visits a
+ * transaction. The sum is exact, so it matches a recompute however many
+ * amounts came and went, and a NaN amount makes sum, minimum and maximum NaN
+ * only while it is in the group. Minimum and maximum come from a per-group
+ * multiset of amounts, which costs O(log k) for a group of k distinct amounts
+ * because removing the current extreme has to find the next one.
+ */
+public class AggregatingChainblock implements Chainblock {
+    private final Chainblock delegate;
+    private final Map<String, Accumulator> bySender;
+    private final Map<String, Accumulator> byReceiver;
+    private final Map<TransactionStatus, Accumulator> byStatus;
+    private final Map<TransactionStatus, Map<String, Integer>> sendersByStatus;
+    private final Map<TransactionStatus, Map<String, Integer>> receiversByStatus;
+
+    public AggregatingChainblock(Chainblock delegate) {
+        this.delegate = delegate;
+        this.bySender = new HashMap<>();
+        this.byReceiver = new HashMap<>();
+        this.byStatus = new EnumMap<>(TransactionStatus.class);
+        this.sendersByStatus = new EnumMap<>(TransactionStatus.class);
+        this.receiversByStatus = new EnumMap<>(TransactionStatus.class);
+        for (TransactionStatus status : TransactionStatus.values()) {
+            this.byStatus.put(status, new Accumulator());
+            this.sendersByStatus.put(status, new HashMap<>());
+            this.receiversByStatus.put(status, new HashMap<>());
+        }
+        for (Transaction transaction : delegate) {
+            added(transaction, transaction.getStatus());
+        }
+    }
+
+    public synchronized Aggregate getSenderAggregate(String sender) {
+        return snapshot(bySender.get(sender));
+    }
+
+    public synchronized Aggregate getReceiverAggregate(String receiver) {
+        return snapshot(byReceiver.get(receiver));
+    }
+
+    public synchronized Aggregate getStatusAggregate(TransactionStatus status) {
+        return snapshot(byStatus.get(status));
+    }
+
+    public synchronized int getDistinctSenderCount(TransactionStatus status) {
+        return sendersByStatus.get(status).size();
+    }
+
+    public synchronized int getDistinctReceiverCount(TransactionStatus status) {
+        return receiversByStatus.get(status).size();
+    }
+
+    public int getCount() {
+        return delegate.getCount();
+    }
+
+    public void add(Transaction transaction) {
+        synchronized (this) {
+            if (!TransactionOrder.isNew(delegate, transaction)) {
+                return;
+            }
+            delegate.add(transaction);
+            added(transaction, transaction.getStatus());
+        }
+    }
+
+    public void addAll(Collection<Transaction> transactions) {
+        synchronized (this) {
+            List<Transaction> added = TransactionOrder.newTransactions(delegate, transactions);
+            delegate.addAll(added);
+            for (Transaction transaction : added) {
+                added(transaction, transaction.getStatus());
+            }
+        }
+    }
+
+    public boolean contains(Transaction transaction) {
+        return delegate.contains(transaction);
+    }
+
+    public boolean contains(int id) {
+        return delegate.contains(id);
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        synchronized (this) {
+            Transaction transaction = delegate.getById(id);
+            TransactionStatus oldStatus = transaction.getStatus();
+            delegate.changeTransactionStatus(id, newStatus);
+            byStatus.get(oldStatus).remove(transaction.getAmount());
+            decrement(sendersByStatus.get(oldStatus), transaction.getFrom());
+            decrement(receiversByStatus.get(oldStatus), transaction.getTo());
+            byStatus.get(newStatus).add(transaction.getAmount());
+            sendersByStatus.get(newStatus).merge(transaction.getFrom(), 1, Integer::sum);
+            receiversByStatus.get(newStatus).merge(transaction.getTo(), 1, Integer::sum);
+        }
+    }
+
+    public void removeTransactionById(int id) {
+        synchronized (this) {
+            Transaction transaction = delegate.getById(id);
+            TransactionStatus status = transaction.getStatus();
+            delegate.removeTransactionById(id);
+            removed(transaction, status);
+        }
+    }
+
+    public Transaction getById(int id) {
+        return delegate.getById(id);
+    }
+
+    public Transaction tryGetById(int id) {
+        return delegate.tryGetById(id);
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        return delegate.getByTransactionStatus(status);
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        return delegate.getAllSendersWithTransactionStatus(status);
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return delegate.getAllReceiversWithTransactionStatus(status);
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        return delegate.getAllOrderedByAmountDescendingThenById();
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        return delegate.getBySenderOrderedByAmountDescending(sender);
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        return delegate.getByReceiverOrderedByAmountThenById(receiver);
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return delegate.getByTransactionStatusAndMaximumAmount(status, amount);
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return delegate.getBySenderAndMinimumAmountDescending(sender, amount);
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return delegate.getByReceiverAndAmountRange(receiver, lo, hi);
+    }
+
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        return delegate.getAllInAmountRange(lo, hi);
+    }
+
+    public int forEachByTransactionStatus(TransactionStatus status, Consumer<? super Transaction> action) {
+        return delegate.forEachByTransactionStatus(status, action);
+    }
+
+    public int forEachBySender(String sender, Consumer<? super Transaction> action) {
+        return delegate.forEachBySender(sender, action);
+    }
+
+    public int forEachByReceiver(String receiver, Consumer<? super Transaction> action) {
+        return delegate.forEachByReceiver(receiver, action);
+    }
+
+    public int forEachBySenderAndMinimumAmount(String sender, double amount, Consumer<? super Transaction> action) {
+        return delegate.forEachBySenderAndMinimumAmount(sender, amount, action);
+    }
+
+    public int forEachByReceiverAndAmountRange(String receiver, double lo, double hi,
+                                               Consumer<? super Transaction> action) {
+        return delegate.forEachByReceiverAndAmountRange(receiver, lo, hi, action);
+    }
+
+    public Iterable<Transaction> getTopOrderedByAmountDescendingThenById(int count) {
+        return delegate.getTopOrderedByAmountDescendingThenById(count);
+    }
+
+    public Iterable<Transaction> getTopBySenderOrderedByAmountDescending(String sender, int count) {
+        return delegate.getTopBySenderOrderedByAmountDescending(sender, count);
+    }
+
+    public Iterable<Transaction> getTopByTransactionStatus(TransactionStatus status, int count) {
+        return delegate.getTopByTransactionStatus(status, count);
+    }
+
+    public Iterable<Transaction> find(TransactionQuery query) {
+        return delegate.find(query);
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(PageCursor after, int pageSize) {
+        return delegate.getPageOrderedByAmountDescendingThenById(after, pageSize);
+    }
+
+    public Iterable<Transaction> getPageByReceiverOrderedByAmountThenById(String receiver, PageCursor after, int pageSize) {
+        return delegate.getPageByReceiverOrderedByAmountThenById(receiver, after, pageSize);
+    }
+
+    public Iterator<Transaction> iterator() {
+        return delegate.iterator();
+    }
+
+    private void added(Transaction transaction, TransactionStatus status) {
+        double amount = transaction.getAmount();
+        bySender.computeIfAbsent(transaction.getFrom(), p -> new Accumulator()).add(amount);
+        byReceiver.computeIfAbsent(transaction.getTo(), p -> new Accumulator()).add(amount);
+        byStatus.get(status).add(amount);
+        sendersByStatus.get(status).merge(transaction.getFrom(), 1, Integer::sum);
+        receiversByStatus.get(status).merge(transaction.getTo(), 1, Integer::sum);
+    }
+
+    private void removed(Transaction transaction, TransactionStatus status) {
+        double amount = transaction.getAmount();
+        if (bySender.get(transaction.getFrom()).remove(amount)) {
+            bySender.remove(transaction.getFrom());
+        }
+        if (byReceiver.get(transaction.getTo()).remove(amount)) {
+            byReceiver.remove(transaction.getTo());
+        }
+        byStatus.get(status).remove(amount);
+        decrement(sendersByStatus.get(status), transaction.getFrom());
+        decrement(receiversByStatus.get(status), transaction.getTo());
+    }
+
+    private static void decrement(Map<String, Integer> counts, String party) {
+        counts.computeIfPresent(party, (p, count) -> count == 1 ? null : count - 1);
+    }
+
+    private static Aggregate snapshot(Accumulator accumulator) {
+        return accumulator == null ? Aggregate.EMPTY : accumulator.snapshot();
+    }
+
+    /**
+     * Keeps the finite amounts of a group in an exact {@link BigDecimal} sum,
+     * so that removing an amount takes back exactly what adding it put in, and
+     * counts NaN and infinite amounts apart so that they stop affecting the
+     * aggregate once they are removed.
+     */
+    private static final class Accumulator {
+        private final TreeMap<Double, Integer> amounts = new TreeMap<>();
+        private long count;
+        private BigDecimal sum = BigDecimal.ZERO;
+        private long nanCount;
+        private long positiveInfinityCount;
+        private long negativeInfinityCount;
+
+        private void add(double amount) {
+            count++;
+            if (Double.isNaN(amount)) {
+                nanCount++;
+                return;
+            }
+            if (amount == Double.POSITIVE_INFINITY) {
+                positiveInfinityCount++;
+            } else if (amount == Double.NEGATIVE_INFINITY) {
+                negativeInfinityCount++;
+            } else {
+                sum = sum.add(new BigDecimal(amount));
+            }
+            amounts.merge(amount, 1, Integer::sum);
+        }
+
+        /**
+         * Returns whether the group became empty.
+         */
+        private boolean remove(double amount) {
+            count--;
+            if (Double.isNaN(amount)) {
+                nanCount--;
+                return count == 0;
+            }
+            if (amount == Double.POSITIVE_INFINITY) {
+                positiveInfinityCount--;
+            } else if (amount == Double.NEGATIVE_INFINITY) {
+                negativeInfinityCount--;
+            } else {
+                sum = sum.subtract(new BigDecimal(amount));
+            }
+            amounts.computeIfPresent(amount, (a, n) -> n == 1 ? null : n - 1);
+            return count == 0;
+        }
+
+        private Aggregate snapshot() {
+            if (count == 0) {
+                return Aggregate.EMPTY;
+            }
+            if (nanCount > 0) {
+                return new Aggregate(count, Double.NaN, Double.NaN, Double.NaN);
+            }
+            return new Aggregate(count, sum(), amounts.firstKey(), amounts.lastKey());
+        }
+
+        private double sum() {
+            if (positiveInfinityCount > 0) {
+                return negativeInfinityCount > 0 ? Double.NaN : Double.POSITIVE_INFINITY;
+            }
+            return negativeInfinityCount > 0 ? Double.NEGATIVE_INFINITY : sum.doubleValue();
+        }
+    }
+}
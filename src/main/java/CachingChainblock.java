@@ -0,0 +1,303 @@
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * {@link Chainblock} decorator that caches query results in a bounded LRU map.
+ * Every entry depends on one tag: the whole chain, one status, one sender or
+ * one receiver. Each mutation bumps the modification version and stamps the
+ * tags it affects with it; an entry is served only while its tag still carries
+ * the stamp it was filled under, so a write drops just the affected entries
+ * without scanning the cache. Party stamps are kept for at most as many
+ * parties as the cache has entries; a party whose stamp is evicted falls back
+ * to the highest evicted stamp, which can only cause extra misses. Cached
+ * results are unmodifiable lists.
+ */
+public class CachingChainblock implements Chainblock {
+    private static final Object ALL = new Object();
+
+    private final Chainblock delegate;
+    private final Map<List<Object>, Entry> cache;
+    private final long[] statusStamps;
+    private final PartyStamps senderStamps;
+    private final PartyStamps receiverStamps;
+    private long version;
+    private long allStamp;
+    private long hits;
+    private long misses;
+
+    public CachingChainblock(Chainblock delegate, int maximumEntries) {
+        if (maximumEntries < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.delegate = delegate;
+        this.cache = new LinkedHashMap<List<Object>, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, Entry> eldest) {
+                return size() > maximumEntries;
+            }
+        };
+        this.statusStamps = new long[TransactionStatus.values().length];
+        this.senderStamps = new PartyStamps(maximumEntries);
+        this.receiverStamps = new PartyStamps(maximumEntries);
+    }
+
+    public int getCount() {
+        return delegate.getCount();
+    }
+
+    public void add(Transaction transaction) {
+        synchronized (this) {
+            if (delegate.contains(transaction.getId())) {
+                return;
+            }
+            delegate.add(transaction);
+            modified(transaction.getStatus(), transaction.getFrom(), transaction.getTo());
+        }
+    }
+
+    public void addAll(Collection<Transaction> transactions) {
+        synchronized (this) {
+            delegate.addAll(transactions);
+            for (Transaction transaction : transactions) {
+                modified(transaction.getStatus(), transaction.getFrom(), transaction.getTo());
+            }
+        }
+    }
+
+    public boolean contains(Transaction transaction) {
+        return delegate.contains(transaction);
+    }
+
+    public boolean contains(int id) {
+        return delegate.contains(id);
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        synchronized (this) {
+            Transaction transaction = delegate.getById(id);
+            TransactionStatus oldStatus = transaction.getStatus();
+            delegate.changeTransactionStatus(id, newStatus);
+            modified(oldStatus, transaction.getFrom(), transaction.getTo());
+            statusStamps[newStatus.ordinal()] = version;
+        }
+    }
+
+    public void removeTransactionById(int id) {
+        synchronized (this) {
+            Transaction transaction = delegate.getById(id);
+            delegate.removeTransactionById(id);
+            modified(transaction.getStatus(), transaction.getFrom(), transaction.getTo());
+        }
+    }
+
+    public Transaction getById(int id) {
+        return delegate.getById(id);
+    }
+
+    public Transaction tryGetById(int id) {
+        return delegate.tryGetById(id);
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        return cached(status, () -> delegate.getByTransactionStatus(status), "getByTransactionStatus", status);
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        return cached(status, () -> delegate.getAllSendersWithTransactionStatus(status), "getAllSendersWithTransactionStatus", status);
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return cached(status, () -> delegate.getAllReceiversWithTransactionStatus(status), "getAllReceiversWithTransactionStatus", status);
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        return cached(ALL, delegate::getAllOrderedByAmountDescendingThenById, "getAllOrderedByAmountDescendingThenById");
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        return cached(new Sender(sender), () -> delegate.getBySenderOrderedByAmountDescending(sender), "getBySenderOrderedByAmountDescending", sender);
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        return cached(new Receiver(receiver), () -> delegate.getByReceiverOrderedByAmountThenById(receiver), "getByReceiverOrderedByAmountThenById", receiver);
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return cached(status, () -> delegate.getByTransactionStatusAndMaximumAmount(status, amount), "getByTransactionStatusAndMaximumAmount", status, amount);
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return cached(new Sender(sender), () -> delegate.getBySenderAndMinimumAmountDescending(sender, amount), "getBySenderAndMinimumAmountDescending", sender, amount);
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return cached(new Receiver(receiver), () -> delegate.getByReceiverAndAmountRange(receiver, lo, hi), "getByReceiverAndAmountRange", receiver, lo, hi);
+    }
+
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        return cached(ALL, () -> delegate.getAllInAmountRange(lo, hi), "getAllInAmountRange", lo, hi);
+    }
+
+    public int forEachByTransactionStatus(TransactionStatus status, Consumer<? super Transaction> action) {
+        return delegate.forEachByTransactionStatus(status, action);
+    }
+
+    public int forEachBySender(String sender, Consumer<? super Transaction> action) {
+        return delegate.forEachBySender(sender, action);
+    }
+
+    public int forEachByReceiver(String receiver, Consumer<? super Transaction> action) {
+        return delegate.forEachByReceiver(receiver, action);
+    }
+
+    public int forEachBySenderAndMinimumAmount(String sender, double amount, Consumer<? super Transaction> action) {
+        return delegate.forEachBySenderAndMinimumAmount(sender, amount, action);
+    }
+
+    public int forEachByReceiverAndAmountRange(String receiver, double lo, double hi,
+                                               Consumer<? super Transaction> action) {
+        return delegate.forEachByReceiverAndAmountRange(receiver, lo, hi, action);
+    }
+
+    public Iterable<Transaction> getTopOrderedByAmountDescendingThenById(int count) {
+        return cached(ALL, () -> delegate.getTopOrderedByAmountDescendingThenById(count), "getTopOrderedByAmountDescendingThenById", count);
+    }
+
+    public Iterable<Transaction> getTopBySenderOrderedByAmountDescending(String sender, int count) {
+        return cached(new Sender(sender), () -> delegate.getTopBySenderOrderedByAmountDescending(sender, count), "getTopBySenderOrderedByAmountDescending", sender, count);
+    }
+
+    public Iterable<Transaction> getTopByTransactionStatus(TransactionStatus status, int count) {
+        return cached(status, () -> delegate.getTopByTransactionStatus(status, count), "getTopByTransactionStatus", status, count);
+    }
+
+    public Iterable<Transaction> find(TransactionQuery query) {
+        return cached(ALL, () -> delegate.find(query), "find", query);
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(PageCursor after, int pageSize) {
+        return cached(ALL, () -> delegate.getPageOrderedByAmountDescendingThenById(after, pageSize),
+                "getPageOrderedByAmountDescendingThenById", after.isFirst(), after.getAmount(), after.getId(), pageSize);
+    }
+
+    public Iterable<Transaction> getPageByReceiverOrderedByAmountThenById(String receiver, PageCursor after, int pageSize) {
+        return cached(new Receiver(receiver), () -> delegate.getPageByReceiverOrderedByAmountThenById(receiver, after, pageSize),
+                "getPageByReceiverOrderedByAmountThenById", receiver, after.isFirst(), after.getAmount(), after.getId(), pageSize);
+    }
+
+    public Iterator<Transaction> iterator() {
+        return delegate.iterator();
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    private <T> Iterable<T> cached(Object tag, Supplier<Iterable<T>> query, Object... key) {
+        List<Object> cacheKey = Arrays.asList(key);
+        long stamp;
+        synchronized (this) {
+            stamp = stampOf(tag);
+            Entry entry = cache.get(cacheKey);
+            if (entry != null && entry.stamp == stamp) {
+                hits++;
+                @SuppressWarnings("unchecked")
+                List<T> result = (List<T>) entry.result;
+                return result;
+            }
+            misses++;
+        }
+        List<T> result = new ArrayList<>();
+        query.get().forEach(result::add);
+        List<T> unmodifiable = Collections.unmodifiableList(result);
+        synchronized (this) {
+            if (stampOf(tag) == stamp) {
+                cache.put(cacheKey, new Entry(unmodifiable, stamp));
+            }
+        }
+        return unmodifiable;
+    }
+
+    private void modified(TransactionStatus status, String sender, String receiver) {
+        version++;
+        allStamp = version;
+        statusStamps[status.ordinal()] = version;
+        senderStamps.stamp(sender, version);
+        receiverStamps.stamp(receiver, version);
+    }
+
+    private long stampOf(Object tag) {
+        if (tag == ALL) {
+            return allStamp;
+        }
+        if (tag instanceof TransactionStatus) {
+            return statusStamps[((TransactionStatus) tag).ordinal()];
+        }
+        if (tag instanceof Sender) {
+            return senderStamps.stampOf(((Sender) tag).name);
+        }
+        return receiverStamps.stampOf(((Receiver) tag).name);
+    }
+
+    private static final class Entry {
+        private final List<?> result;
+        private final long stamp;
+
+        private Entry(List<?> result, long stamp) {
+            this.result = result;
+            this.stamp = stamp;
+        }
+    }
+
+    private static final class PartyStamps {
+        private final Map<String, Long> stamps;
+        private long evicted;
+
+        private PartyStamps(int maximumParties) {
+            this.stamps = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    if (size() <= maximumParties) {
+                        return false;
+                    }
+                    evicted = Math.max(evicted, eldest.getValue());
+                    return true;
+                }
+            };
+        }
+
+        private void stamp(String party, long version) {
+            stamps.put(party, version);
+        }
+
+        private long stampOf(String party) {
+            Long stamp = stamps.get(party);
+            return stamp == null ? evicted : stamp;
+        }
+    }
+
+    private static final class Sender {
+        private final String name;
+
+        private Sender(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class Receiver {
+        private final String name;
+
+        private Receiver(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -1,9 +1,18 @@
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
 public interface Chainblock extends Iterable<Transaction> {
 
     int getCount();
 
     void add(Transaction transaction);
 
+    default void addAll(Collection<Transaction> transactions) {
+        transactions.forEach(this::add);
+    }
+
     boolean contains(Transaction transaction);
 
     boolean contains(int id);
@@ -14,6 +23,13 @@ public interface Chainblock extends Iterable<Transaction> {
 
     Transaction getById(int id);
 
+    /**
+     * Like {@link #getById} but reports a missing id by returning {@code null}.
+     */
+    default Transaction tryGetById(int id) {
+        return contains(id) ? getById(id) : null;
+    }
+
     Iterable<Transaction> getByTransactionStatus(TransactionStatus status);
 
     Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status);
@@ -34,4 +50,69 @@ public interface Chainblock extends Iterable<Transaction> {
 
     Iterable<Transaction> getAllInAmountRange(double lo, double hi);
 
+    /**
+     * Passes the transactions {@link #getByTransactionStatus} would return to
+     * {@code action}, in the same order, and returns how many there were. No
+     * match is reported as 0 instead of an {@link IllegalArgumentException};
+     * the other {@code forEach} methods work the same way. The defaults scan
+     * the whole chainblock.
+     */
+    default int forEachByTransactionStatus(TransactionStatus status, Consumer<? super Transaction> action) {
+        return TransactionOrder.forEach(TransactionOrder.matching(this, t -> t.getStatus() == status), action);
+    }
+
+    default int forEachBySender(String sender, Consumer<? super Transaction> action) {
+        return TransactionOrder.forEach(TransactionOrder.matching(this, t -> t.getFrom().equals(sender)), action);
+    }
+
+    default int forEachByReceiver(String receiver, Consumer<? super Transaction> action) {
+        return TransactionOrder.forEach(TransactionOrder.matching(this, t -> t.getTo().equals(receiver)), action);
+    }
+
+    default int forEachBySenderAndMinimumAmount(String sender, double amount, Consumer<? super Transaction> action) {
+        return TransactionOrder.forEach(TransactionOrder.matching(this,
+                t -> t.getFrom().equals(sender) && t.getAmount() > amount), action);
+    }
+
+    default int forEachByReceiverAndAmountRange(String receiver, double lo, double hi,
+                                                Consumer<? super Transaction> action) {
+        return TransactionOrder.forEach(TransactionOrder.matching(this,
+                t -> t.getTo().equals(receiver) && t.getAmount() > lo && t.getAmount() < hi), action);
+    }
+
+    default Iterable<Transaction> getTopOrderedByAmountDescendingThenById(int count) {
+        return TransactionOrder.top(this, t -> true, count);
+    }
+
+    default Iterable<Transaction> getTopBySenderOrderedByAmountDescending(String sender, int count) {
+        return TransactionOrder.nonEmpty(TransactionOrder.top(this, t -> t.getFrom().equals(sender), count));
+    }
+
+    default Iterable<Transaction> getTopByTransactionStatus(TransactionStatus status, int count) {
+        return TransactionOrder.nonEmpty(TransactionOrder.top(this, t -> t.getStatus() == status, count));
+    }
+
+    default Iterable<Transaction> find(TransactionQuery query) {
+        return query.scan(this);
+    }
+
+    default Iterable<Transaction> getPageOrderedByAmountDescendingThenById(PageCursor after, int pageSize) {
+        return TransactionOrder.top(this, after::precedes, pageSize);
+    }
+
+    default Iterable<Transaction> getPageByReceiverOrderedByAmountThenById(String receiver, PageCursor after, int pageSize) {
+        boolean[] receiverSeen = new boolean[1];
+        List<Transaction> page = TransactionOrder.top(this, t -> {
+            if (!Objects.equals(t.getTo(), receiver)) {
+                return false;
+            }
+            receiverSeen[0] = true;
+            return after.precedes(t);
+        }, pageSize);
+        if (!receiverSeen[0]) {
+            throw new IllegalArgumentException();
+        }
+        return page;
+    }
+
 }
@@ -0,0 +1,84 @@
+import java.util.function.Predicate;
+
+/**
+ * Immutable record of one change published by {@link ObservableChainblock}.
+ * The transaction's fields are copied when the change happens, so later
+ * status changes do not alter an event already queued.
+ */
+public final class ChainblockEvent {
+
+    public enum Type {
+        ADDED, REMOVED, STATUS_CHANGED
+    }
+
+    private final Type type;
+    private final int id;
+    private final String from;
+    private final String to;
+    private final double amount;
+    private final TransactionStatus oldStatus;
+    private final TransactionStatus newStatus;
+
+    ChainblockEvent(Type type, Transaction transaction, TransactionStatus oldStatus, TransactionStatus newStatus) {
+        this.type = type;
+        this.id = transaction.getId();
+        this.from = transaction.getFrom();
+        this.to = transaction.getTo();
+        this.amount = transaction.getAmount();
+        this.oldStatus = oldStatus;
+        this.newStatus = newStatus;
+    }
+
+    /**
+     * Matches events that move a transaction into or out of {@code status}.
+     */
+    public static Predicate<ChainblockEvent> withStatus(TransactionStatus status) {
+        return event -> event.oldStatus == status || event.newStatus == status;
+    }
+
+    /**
+     * Matches events whose transaction has {@code party} as sender or receiver.
+     */
+    public static Predicate<ChainblockEvent> withParty(String party) {
+        return event -> party.equals(event.from) || party.equals(event.to);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    /**
+     * Status before the change; null for {@link Type#ADDED}.
+     */
+    public TransactionStatus getOldStatus() {
+        return oldStatus;
+    }
+
+    /**
+     * Status after the change; null for {@link Type#REMOVED}.
+     */
+    public TransactionStatus getNewStatus() {
+        return newStatus;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + id + " " + oldStatus + "->" + newStatus;
+    }
+}
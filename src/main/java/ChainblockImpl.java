@@ -1,11 +1,59 @@
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 public class ChainblockImpl implements Chainblock {
-    private Map<Integer, Transaction> transactionMap;
+    private IntTransactionMap transactionMap;
+    private NavigableSet<Transaction> amountIndex;
+    private Map<TransactionStatus, NavigableSet<Transaction>> statusIndex;
+    private Map<String, NavigableSet<Transaction>> senderIndex;
+    private Map<String, NavigableSet<Transaction>> receiverIndex;
+    private boolean lazyResults;
+    private int parallelThreshold;
 
     public ChainblockImpl() {
-        this.transactionMap = new LinkedHashMap<>();
+        this(false);
+    }
+
+    /**
+     * With {@code lazyResults} the query methods return live views over the
+     * indexes instead of copying into a list, so each iteration sees the
+     * chainblock as it is when the iteration starts. Emptiness is still checked
+     * eagerly, when the query is made. Insertion-order views sort their matches
+     * when iteration starts; the others fail fast if the chainblock is modified
+     * while they are being iterated. Sender and receiver views look their party
+     * up again each time iteration starts, so a party whose last transaction is
+     * removed leaves nothing behind in the index.
+     */
+    public ChainblockImpl(boolean lazyResults) {
+        this(0, lazyResults);
+    }
+
+    public ChainblockImpl(int expectedSize, boolean lazyResults) {
+        this(expectedSize, lazyResults, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Queries that restore insertion order sort their matches on the common
+     * fork-join pool once there are at least {@code parallelThreshold} of them;
+     * the result order is the same as on the sequential path.
+     */
+    public ChainblockImpl(int expectedSize, boolean lazyResults, int parallelThreshold) {
+        if (parallelThreshold < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.lazyResults = lazyResults;
+        this.parallelThreshold = parallelThreshold;
+        this.transactionMap = new IntTransactionMap(expectedSize);
+        this.amountIndex = new TreeSet<>(TransactionOrder.AMOUNT_DESCENDING_THEN_ID);
+        this.statusIndex = new EnumMap<>(TransactionStatus.class);
+        for (TransactionStatus status : TransactionStatus.values()) {
+            this.statusIndex.put(status, new TreeSet<>(TransactionOrder.AMOUNT_DESCENDING_THEN_ID));
+        }
+        this.senderIndex = new HashMap<>();
+        this.receiverIndex = new HashMap<>();
     }
 
     public int getCount() {
@@ -13,7 +61,43 @@ public class ChainblockImpl implements Chainblock {
     }
 
     public void add(Transaction transaction) {
-        transactionMap.putIfAbsent(transaction.getId(), transaction);
+        if (transactionMap.putIfAbsent(transaction.getId(), transaction) == null) {
+            amountIndex.add(transaction);
+            statusIndex.get(transaction.getStatus()).add(transaction);
+            addToPartyIndex(senderIndex, transaction.getFrom(), transaction);
+            addToPartyIndex(receiverIndex, transaction.getTo(), transaction);
+        }
+    }
+
+    /**
+     * Stores the new ids in one pass, then sorts them once and feeds each index
+     * an already ordered batch; an index that was empty is built in linear time.
+     */
+    public void addAll(Collection<Transaction> transactions) {
+        transactionMap.ensureCapacity(transactionMap.size() + transactions.size());
+        List<Transaction> added = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            if (transactionMap.putIfAbsent(transaction.getId(), transaction) == null) {
+                added.add(transaction);
+            }
+        }
+        added.sort(TransactionOrder.AMOUNT_DESCENDING_THEN_ID);
+
+        amountIndex.addAll(TransactionOrder.sortedView(added));
+        groupedBy(added, Transaction::getStatus, new EnumMap<>(TransactionStatus.class))
+                .forEach((status, byStatus) -> statusIndex.get(status).addAll(TransactionOrder.sortedView(byStatus)));
+        groupedBy(added, Transaction::getFrom, new HashMap<>())
+                .forEach((sender, bySender) -> addAllToPartyIndex(senderIndex, sender, bySender));
+        groupedBy(added, Transaction::getTo, new HashMap<>())
+                .forEach((receiver, byReceiver) -> addAllToPartyIndex(receiverIndex, receiver, byReceiver));
+    }
+
+    private static <K> Map<K, List<Transaction>> groupedBy(List<Transaction> transactions, Function<Transaction, K> key,
+                                                         Map<K, List<Transaction>> groups) {
+        for (Transaction transaction : transactions) {
+            groups.computeIfAbsent(key.apply(transaction), k -> new ArrayList<>()).add(transaction);
+        }
+        return groups;
     }
 
     public boolean contains(Transaction transaction) {
@@ -26,129 +110,389 @@ public class ChainblockImpl implements Chainblock {
 
     public void changeTransactionStatus(int id, TransactionStatus newStatus) {
         Transaction transaction = getById(id);
+        statusIndex.get(transaction.getStatus()).remove(transaction);
         transaction.setStatus(newStatus);
+        statusIndex.get(newStatus).add(transaction);
     }
 
     public void removeTransactionById(int id) {
         checkForTransactionThrow(id);
-        transactionMap.remove(id);
+        Transaction transaction = transactionMap.remove(id);
+        amountIndex.remove(transaction);
+        statusIndex.get(transaction.getStatus()).remove(transaction);
+        removeFromPartyIndex(senderIndex, transaction.getFrom(), transaction);
+        removeFromPartyIndex(receiverIndex, transaction.getTo(), transaction);
     }
 
     public Transaction getById(int id) {
-        checkForTransactionThrow(id);
+        Transaction transaction = tryGetById(id);
+        if (transaction == null) {
+            throw new IllegalArgumentException();
+        }
+        return transaction;
+    }
+
+    public Transaction tryGetById(int id) {
         return transactionMap.get(id);
     }
 
     public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
-        List<Transaction> transactions = transactionMap.values().stream()
-                .filter(t -> t.getStatus().equals(status))
-                .sorted(Comparator.comparing(Transaction::getAmount).reversed())
-                .collect(Collectors.toList());
+        return nonEmpty(statusIndex.get(status));
+    }
 
-        if (transactions.size() == 0) {
-            throw new IllegalArgumentException();
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        return mapped(nonEmpty(statusIndex.get(status)), Transaction::getFrom);
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return mapped(nonEmpty(statusIndex.get(status)), Transaction::getTo);
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        return results(amountIndex);
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        return partyResults(senderIndex, sender, UnaryOperator.identity());
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        return partyResults(receiverIndex, receiver, UnaryOperator.identity());
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return inInsertionOrder(TransactionOrder.belowAmount(statusIndex.get(status), amount));
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return partyResults(senderIndex, sender, bySender -> TransactionOrder.aboveAmount(bySender, amount));
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return partyResults(receiverIndex, receiver, byReceiver -> TransactionOrder.amountRange(byReceiver, lo, hi));
+    }
+
+    public int forEachByTransactionStatus(TransactionStatus status, Consumer<? super Transaction> action) {
+        return TransactionOrder.forEach(statusIndex.get(status), action);
+    }
+
+    public int forEachBySender(String sender, Consumer<? super Transaction> action) {
+        NavigableSet<Transaction> bySender = senderIndex.get(sender);
+        return bySender == null ? 0 : TransactionOrder.forEach(bySender, action);
+    }
+
+    public int forEachByReceiver(String receiver, Consumer<? super Transaction> action) {
+        NavigableSet<Transaction> byReceiver = receiverIndex.get(receiver);
+        return byReceiver == null ? 0 : TransactionOrder.forEach(byReceiver, action);
+    }
+
+    /**
+     * Walks the sender's index from the top, past the NaN amounts that sort
+     * first, and stops at the first amount not above {@code amount}, so unlike
+     * the view-based query it allocates nothing.
+     */
+    public int forEachBySenderAndMinimumAmount(String sender, double amount, Consumer<? super Transaction> action) {
+        NavigableSet<Transaction> bySender = senderIndex.get(sender);
+        if (bySender == null) {
+            return 0;
+        }
+        int count = 0;
+        for (Transaction transaction : bySender) {
+            if (Double.isNaN(transaction.getAmount())) {
+                continue;
+            }
+            if (!(transaction.getAmount() > amount)) {
+                break;
+            }
+            action.accept(transaction);
+            count++;
         }
-        return transactions;
+        return count;
     }
 
-    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
-        List<Transaction> transactionsByStatus = convertIterableToList(getByTransactionStatus(status));
-        return transactionsByStatus.stream()
-                .map(Transaction::getFrom)
-                .collect(Collectors.toList());
+    /**
+     * Allocates one sub-set view of the receiver's index per call, whatever
+     * the number of matches.
+     */
+    public int forEachByReceiverAndAmountRange(String receiver, double lo, double hi,
+                                               Consumer<? super Transaction> action) {
+        NavigableSet<Transaction> byReceiver = receiverIndex.get(receiver);
+        if (byReceiver == null) {
+            return 0;
+        }
+        return TransactionOrder.forEach(TransactionOrder.amountRange(byReceiver, lo, hi), action);
     }
 
-    private List<Transaction> convertIterableToList(Iterable<Transaction> iterable) {
-        List<Transaction> list = new ArrayList<>();
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        return inInsertionOrder(TransactionOrder.amountRange(amountIndex, lo, hi));
+    }
 
-        iterable.forEach(item -> list.add(item));
-        return list;
+    public Iterable<Transaction> getTopOrderedByAmountDescendingThenById(int count) {
+        return TransactionOrder.first(amountIndex, count);
     }
 
-    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
-        List<Transaction> transactionsByStatus = convertIterableToList(getByTransactionStatus(status));
-        return transactionsByStatus.stream()
-                .map(Transaction::getTo)
-                .collect(Collectors.toList());
+    public Iterable<Transaction> getTopBySenderOrderedByAmountDescending(String sender, int count) {
+        return TransactionOrder.nonEmpty(TransactionOrder.first(bySender(sender), count));
     }
 
-    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
-        return transactionMap.values().stream()
-                .sorted(Comparator.comparing(Transaction::getAmount).reversed().thenComparing(Transaction::getId))
-                .collect(Collectors.toList());
+    public Iterable<Transaction> getTopByTransactionStatus(TransactionStatus status, int count) {
+        return TransactionOrder.nonEmpty(TransactionOrder.first(statusIndex.get(status), count));
+    }
 
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(PageCursor after, int pageSize) {
+        return TransactionOrder.first(TransactionOrder.after(amountIndex, after), pageSize);
     }
 
-    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
-        List<Transaction> result = transactionMap.values()
-                .stream()
-                .filter(t -> t.getFrom().equals(sender))
-                .sorted(Comparator.comparing(Transaction::getAmount).reversed())
-                .collect(Collectors.toList());
-        if (result.size() == 0) {
+    public Iterable<Transaction> getPageByReceiverOrderedByAmountThenById(String receiver, PageCursor after, int pageSize) {
+        TransactionOrder.checkCount(pageSize);
+        NavigableSet<Transaction> byReceiver = byReceiver(receiver);
+        if (byReceiver.isEmpty()) {
             throw new IllegalArgumentException();
         }
+        return TransactionOrder.first(TransactionOrder.after(byReceiver, after), pageSize);
+    }
+
+    /**
+     * Reads only the smallest index that can answer the query, narrowed to its
+     * amount bounds, and checks the remaining predicates while filling the
+     * result. In amount order the scan stops at the limit; in insertion order
+     * the matches are sorted by position unless the whole chain is scanned.
+     */
+    public Iterable<Transaction> find(TransactionQuery query) {
+        TransactionQuery.AccessPath path = plan(query);
+        if (path == TransactionQuery.AccessPath.ID) {
+            Transaction transaction = transactionMap.get(query.getId());
+            List<Transaction> result = new ArrayList<>(1);
+            if (transaction != null && query.matches(transaction)) {
+                result.add(transaction);
+            }
+            return result;
+        }
+        if (query.getOrder() == TransactionQuery.Order.INSERTION
+                && path == TransactionQuery.AccessPath.AMOUNT && !query.hasAmountBounds()) {
+            return query.scan(this);
+        }
+        int limit = query.getOrder() == TransactionQuery.Order.INSERTION ? Integer.MAX_VALUE : query.getLimit();
+        List<Transaction> result = new ArrayList<>();
+        for (Transaction transaction : query.narrow(index(path, query))) {
+            if (result.size() == limit) {
+                break;
+            }
+            if (query.matches(transaction)) {
+                result.add(transaction);
+            }
+        }
+        if (query.getOrder() == TransactionQuery.Order.INSERTION) {
+            result.sort(Comparator.comparingInt(t -> transactionMap.indexOf(t.getId())));
+            if (result.size() > query.getLimit()) {
+                result.subList(query.getLimit(), result.size()).clear();
+            }
+        }
         return result;
     }
 
-    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
-        List<Transaction> sortedTransactions = convertIterableToList(getAllOrderedByAmountDescendingThenById());
-        List<Transaction> result = sortedTransactions.stream()
-                .filter(t -> t.getTo().equals(receiver))
-                .collect(Collectors.toList());
+    TransactionQuery.AccessPath plan(TransactionQuery query) {
+        if (query.getId() != null) {
+            return TransactionQuery.AccessPath.ID;
+        }
+        TransactionQuery.AccessPath best = TransactionQuery.AccessPath.AMOUNT;
+        int bestSize = amountIndex.size();
+        if (query.getStatus() != null && statusIndex.get(query.getStatus()).size() < bestSize) {
+            best = TransactionQuery.AccessPath.STATUS;
+            bestSize = statusIndex.get(query.getStatus()).size();
+        }
+        if (query.getSender() != null && partySize(senderIndex, query.getSender()) < bestSize) {
+            best = TransactionQuery.AccessPath.SENDER;
+            bestSize = partySize(senderIndex, query.getSender());
+        }
+        if (query.getReceiver() != null && partySize(receiverIndex, query.getReceiver()) < bestSize) {
+            best = TransactionQuery.AccessPath.RECEIVER;
+            bestSize = partySize(receiverIndex, query.getReceiver());
+        }
+        if (best != TransactionQuery.AccessPath.AMOUNT && query.hasAmountBounds()
+                && countUpTo(query.narrow(amountIndex), bestSize + 1) <= bestSize) {
+            best = TransactionQuery.AccessPath.AMOUNT;
+        }
+        return best;
+    }
 
-        if (result.size() == 0) {
-            throw new IllegalArgumentException();
+    /**
+     * Counts at most {@code limit} elements, so costing an amount range never
+     * reads more of it than the best index found so far.
+     */
+    private static int countUpTo(Iterable<Transaction> transactions, int limit) {
+        int count = 0;
+        Iterator<Transaction> iterator = transactions.iterator();
+        while (count < limit && iterator.hasNext()) {
+            iterator.next();
+            count++;
         }
-        return result;
+        return count;
     }
 
-    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
-        return transactionMap.values()
-                .stream()
-                .filter(t -> t.getStatus().equals(status) && t.getAmount() < amount).collect(Collectors.toList());
+    private NavigableSet<Transaction> index(TransactionQuery.AccessPath path, TransactionQuery query) {
+        switch (path) {
+            case STATUS:
+                return statusIndex.get(query.getStatus());
+            case SENDER:
+                return bySender(query.getSender());
+            case RECEIVER:
+                return byReceiver(query.getReceiver());
+            default:
+                return amountIndex;
+        }
     }
 
-    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
-        List<Transaction> result = transactionMap.values()
-                .stream()
-                .filter(t -> t.getFrom().equals(sender) && t.getAmount() > amount)
-                .sorted(Comparator.comparing(Transaction::getAmount).reversed())
-                .collect(Collectors.toList());
+    private static int partySize(Map<String, NavigableSet<Transaction>> index, String party) {
+        NavigableSet<Transaction> byParty = index.get(party);
+        return byParty == null ? 0 : byParty.size();
+    }
 
-        if (result.size() == 0) {
+    public Iterator<Transaction> iterator() {
+        return transactionMap.iterator();
+    }
+
+    private NavigableSet<Transaction> bySender(String sender) {
+        return senderIndex.getOrDefault(sender, Collections.emptyNavigableSet());
+    }
+
+    private NavigableSet<Transaction> byReceiver(String receiver) {
+        return receiverIndex.getOrDefault(receiver, Collections.emptyNavigableSet());
+    }
+
+    private void checkForTransactionThrow(int id) {
+        if (!transactionMap.containsKey(id)) {
             throw new IllegalArgumentException();
         }
-        return result;
     }
 
-    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
-        List<Transaction> transactionsByRange = convertIterableToList(getAllInAmountRange(lo, hi));
-        List<Transaction> transactionsByRangeAndReceiver = transactionsByRange.stream()
-                .filter(t -> t.getTo().equals(receiver))
-                .sorted(Comparator.comparing(Transaction::getAmount).reversed())
-                .collect(Collectors.toList());
+    private static void addToPartyIndex(Map<String, NavigableSet<Transaction>> index, String party, Transaction transaction) {
+        index.computeIfAbsent(party, p -> new TreeSet<>(TransactionOrder.AMOUNT_DESCENDING_THEN_ID)).add(transaction);
+    }
+
+    private static void addAllToPartyIndex(Map<String, NavigableSet<Transaction>> index, String party, List<Transaction> sorted) {
+        index.computeIfAbsent(party, p -> new TreeSet<>(TransactionOrder.AMOUNT_DESCENDING_THEN_ID))
+                .addAll(TransactionOrder.sortedView(sorted));
+    }
+
+    private static void removeFromPartyIndex(Map<String, NavigableSet<Transaction>> index, String party, Transaction transaction) {
+        NavigableSet<Transaction> byParty = index.get(party);
+        byParty.remove(transaction);
+        if (byParty.isEmpty()) {
+            index.remove(party);
+        }
+    }
 
-        if (transactionsByRangeAndReceiver.size() == 0) {
+    /**
+     * Applies {@code view} to the party's index set. Under lazy results the set
+     * is looked up again on every iteration, since an emptied set is dropped
+     * from the index and a later transaction of the party starts a new one.
+     */
+    private Iterable<Transaction> partyResults(Map<String, NavigableSet<Transaction>> index, String party,
+                                               UnaryOperator<NavigableSet<Transaction>> view) {
+        NavigableSet<Transaction> current = view.apply(index.getOrDefault(party, Collections.emptyNavigableSet()));
+        if (current.isEmpty()) {
             throw new IllegalArgumentException();
         }
-        return transactionsByRangeAndReceiver;
+        if (!lazyResults) {
+            return new ArrayList<>(current);
+        }
+        return () -> Collections.unmodifiableCollection(
+                view.apply(index.getOrDefault(party, Collections.emptyNavigableSet()))).iterator();
     }
 
-    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
-        return transactionMap.values()
-                .stream()
-                .filter(t -> t.getAmount() < hi && t.getAmount() > lo)
+    private Collection<Transaction> nonEmpty(Collection<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        return results(transactions);
+    }
+
+    private Collection<Transaction> results(Collection<Transaction> transactions) {
+        return lazyResults ? Collections.unmodifiableCollection(transactions) : new ArrayList<>(transactions);
+    }
+
+    private Iterable<String> mapped(Collection<Transaction> transactions, Function<Transaction, String> party) {
+        if (lazyResults) {
+            return () -> transactions.stream().map(party).iterator();
+        }
+        return transactions.stream().map(party).collect(Collectors.toList());
+    }
+
+    /**
+     * Under lazy results {@code transactions} is a live index view, and only
+     * its current matches are sorted each time the result is iterated.
+     */
+    private Iterable<Transaction> inInsertionOrder(Collection<Transaction> transactions) {
+        if (lazyResults) {
+            return () -> sortedByPosition(transactions).iterator();
+        }
+        return sortedByPosition(transactions);
+    }
+
+    private List<Transaction> sortedByPosition(Collection<Transaction> transactions) {
+        if (transactions.size() >= parallelThreshold) {
+            return inInsertionOrderParallel(transactions);
+        }
+        return transactions.stream()
+                .sorted(Comparator.comparingInt(t -> transactionMap.indexOf(t.getId())))
                 .collect(Collectors.toList());
     }
 
-    public Iterator<Transaction> iterator() {
-        return null;
+    private List<Transaction> inInsertionOrderParallel(Collection<Transaction> transactions) {
+        Transaction[] matches = transactions.toArray(new Transaction[0]);
+        int[] positions = new int[matches.length];
+        Arrays.parallelSetAll(positions, i -> transactionMap.indexOf(matches[i].getId()));
+        Arrays.parallelSort(positions);
+        Arrays.parallelSetAll(matches, i -> transactionMap.at(positions[i]));
+        return new ArrayList<>(Arrays.asList(matches));
     }
 
-    private void checkForTransactionThrow(int id) {
-        if (!transactionMap.containsKey(id)) {
-            throw new IllegalArgumentException();
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final List<Transaction> transactions;
+        private int expectedSize;
+        private boolean lazyResults;
+        private int parallelThreshold;
+
+        private Builder() {
+            this.transactions = new ArrayList<>();
+            this.parallelThreshold = Integer.MAX_VALUE;
+        }
+
+        public Builder expectedSize(int expectedSize) {
+            this.expectedSize = expectedSize;
+            return this;
+        }
+
+        public Builder lazyResults(boolean lazyResults) {
+            this.lazyResults = lazyResults;
+            return this;
+        }
+
+        public Builder parallelThreshold(int parallelThreshold) {
+            this.parallelThreshold = parallelThreshold;
+            return this;
+        }
+
+        public Builder add(Transaction transaction) {
+            transactions.add(transaction);
+            return this;
+        }
+
+        public Builder addAll(Collection<Transaction> transactions) {
+            this.transactions.addAll(transactions);
+            return this;
+        }
+
+        public ChainblockImpl build() {
+            ChainblockImpl chainblock = new ChainblockImpl(Math.max(expectedSize, transactions.size()), lazyResults,
+                    parallelThreshold);
+            chainblock.addAll(transactions);
+            return chainblock;
         }
     }
 }
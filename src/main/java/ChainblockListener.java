@@ -0,0 +1,18 @@
+import java.util.List;
+
+/**
+ * Receives the events of an {@link ObservableChainblock} subscription on the
+ * subscription's delivery thread, in the order the changes were applied.
+ */
+public interface ChainblockListener {
+
+    void onEvents(List<ChainblockEvent> batch);
+
+    /**
+     * Called before the next batch when the subscription's buffer was full and
+     * {@code droppedEvents} events were discarded since the last call. A
+     * listener that needs every change should re-read the chainblock.
+     */
+    default void onOverflow(long droppedEvents) {
+    }
+}
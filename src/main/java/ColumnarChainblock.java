@@ -0,0 +1,474 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * {@link Chainblock} that stores transactions column by column: ids, amounts,
+ * status ordinals and dictionary codes of the parties each live in their own
+ * contiguous buffer, on the heap or off-heap. Filters run as primitive loops
+ * over the columns and {@link Transaction} objects are only created for the
+ * rows that are returned. Returned transactions are copies; change a status
+ * through {@link #changeTransactionStatus(int, TransactionStatus)}.
+ */
+public class ColumnarChainblock implements Chainblock {
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    private static final byte REMOVED = -1;
+    private static final int ROW_ANY = -1;
+    private static final int EMPTY = 0;
+    private static final int DELETED = -1;
+    private static final int MINIMUM_CAPACITY = 16;
+    private static final int MAXIMUM_CAPACITY = Integer.MAX_VALUE / Double.BYTES;
+
+    private final StringDictionary parties;
+    private final boolean offHeap;
+
+    private IntBuffer ids;
+    private DoubleBuffer amounts;
+    private ByteBuffer statuses;
+    private IntBuffer senders;
+    private IntBuffer receivers;
+    private int[] slots;
+    private int rows;
+    private int count;
+
+    public ColumnarChainblock() {
+        this(new StringDictionary(), false);
+    }
+
+    public ColumnarChainblock(StringDictionary parties, boolean offHeap) {
+        this.parties = parties;
+        this.offHeap = offHeap;
+        allocate(MINIMUM_CAPACITY);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void add(Transaction transaction) {
+        if (findSlot(transaction.getId()) >= 0) {
+            return;
+        }
+        if (rows == ids.capacity()) {
+            resize(count < rows / 2 ? ids.capacity() : grownCapacity(rows + 1L));
+        }
+        ids.put(rows, transaction.getId());
+        amounts.put(rows, transaction.getAmount());
+        statuses.put(rows, (byte) transaction.getStatus().ordinal());
+        senders.put(rows, parties.encode(transaction.getFrom()));
+        receivers.put(rows, parties.encode(transaction.getTo()));
+        rows++;
+        count++;
+        insertSlot(transaction.getId(), rows);
+    }
+
+    public void addAll(Collection<Transaction> transactions) {
+        long needed = (long) rows + transactions.size();
+        if (needed > ids.capacity()) {
+            resize(grownCapacity(needed));
+        }
+        transactions.forEach(this::add);
+    }
+
+    public boolean contains(Transaction transaction) {
+        return contains(transaction.getId());
+    }
+
+    public boolean contains(int id) {
+        return findSlot(id) >= 0;
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        statuses.put(rowOf(id), (byte) newStatus.ordinal());
+    }
+
+    public void removeTransactionById(int id) {
+        int slot = findSlot(id);
+        if (slot < 0) {
+            throw new IllegalArgumentException();
+        }
+        statuses.put(slots[slot] - 1, REMOVED);
+        slots[slot] = DELETED;
+        count--;
+    }
+
+    public Transaction getById(int id) {
+        return materialize(rowOf(id));
+    }
+
+    public Transaction tryGetById(int id) {
+        int slot = findSlot(id);
+        return slot < 0 ? null : materialize(slots[slot] - 1);
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        return nonEmpty(materialize(sortedByAmount(rowsWithStatus(status))));
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        return nonEmpty(partiesWithStatus(status, senders));
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return nonEmpty(partiesWithStatus(status, receivers));
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        int[] all = new int[count];
+        int matched = 0;
+        for (int row = 0; row < rows; row++) {
+            if (statuses.get(row) != REMOVED) {
+                all[matched++] = row;
+            }
+        }
+        return materialize(sortedByAmount(all));
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        return getBySenderAndMinimumAmountDescending(sender, Double.NEGATIVE_INFINITY);
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        return getByReceiverAndAmountRange(receiver, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        byte code = (byte) status.ordinal();
+        List<Transaction> result = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            if (statuses.get(row) == code && amounts.get(row) < amount) {
+                result.add(materialize(row));
+            }
+        }
+        return result;
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return nonEmpty(materialize(bySenderAbove(sender, amount)));
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return nonEmpty(materialize(byReceiverBetween(receiver, lo, hi)));
+    }
+
+    public int forEachByTransactionStatus(TransactionStatus status, Consumer<? super Transaction> action) {
+        return visit(sortedByAmount(rowsWithStatus(status)), action);
+    }
+
+    public int forEachBySender(String sender, Consumer<? super Transaction> action) {
+        return forEachBySenderAndMinimumAmount(sender, Double.NEGATIVE_INFINITY, action);
+    }
+
+    public int forEachByReceiver(String receiver, Consumer<? super Transaction> action) {
+        return forEachByReceiverAndAmountRange(receiver, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, action);
+    }
+
+    public int forEachBySenderAndMinimumAmount(String sender, double amount, Consumer<? super Transaction> action) {
+        return visit(bySenderAbove(sender, amount), action);
+    }
+
+    public int forEachByReceiverAndAmountRange(String receiver, double lo, double hi,
+                                               Consumer<? super Transaction> action) {
+        return visit(byReceiverBetween(receiver, lo, hi), action);
+    }
+
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        List<Transaction> result = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            double amount = amounts.get(row);
+            if (amount > lo && amount < hi && statuses.get(row) != REMOVED) {
+                result.add(materialize(row));
+            }
+        }
+        return result;
+    }
+
+    public Iterable<Transaction> getTopOrderedByAmountDescendingThenById(int count) {
+        return materialize(topRows(ROW_ANY, ROW_ANY, count));
+    }
+
+    public Iterable<Transaction> getTopBySenderOrderedByAmountDescending(String sender, int count) {
+        int code = parties.find(sender);
+        TransactionOrder.checkCount(count);
+        return nonEmpty(code < 0 ? Collections.emptyList() : materialize(topRows(ROW_ANY, code, count)));
+    }
+
+    public Iterable<Transaction> getTopByTransactionStatus(TransactionStatus status, int count) {
+        return nonEmpty(materialize(topRows(status.ordinal(), ROW_ANY, count)));
+    }
+
+    public Iterator<Transaction> iterator() {
+        List<Transaction> all = new ArrayList<>(count);
+        for (int row = 0; row < rows; row++) {
+            if (statuses.get(row) != REMOVED) {
+                all.add(materialize(row));
+            }
+        }
+        return all.iterator();
+    }
+
+    private int[] rowsWithStatus(TransactionStatus status) {
+        byte code = (byte) status.ordinal();
+        int[] matching = new int[count];
+        int matched = 0;
+        for (int row = 0; row < rows; row++) {
+            if (statuses.get(row) == code) {
+                matching[matched++] = row;
+            }
+        }
+        return Arrays.copyOf(matching, matched);
+    }
+
+    private List<String> partiesWithStatus(TransactionStatus status, IntBuffer column) {
+        int[] matching = sortedByAmount(rowsWithStatus(status));
+        List<String> names = new ArrayList<>(matching.length);
+        for (int row : matching) {
+            names.add(parties.decode(column.get(row)));
+        }
+        return names;
+    }
+
+    private int[] bySenderAbove(String sender, double amount) {
+        int code = parties.find(sender);
+        if (code < 0) {
+            return new int[0];
+        }
+        int[] matching = new int[count];
+        int matched = 0;
+        for (int row = 0; row < rows; row++) {
+            if (senders.get(row) == code && amounts.get(row) > amount && statuses.get(row) != REMOVED) {
+                matching[matched++] = row;
+            }
+        }
+        return sortedByAmount(Arrays.copyOf(matching, matched));
+    }
+
+    private int[] byReceiverBetween(String receiver, double lo, double hi) {
+        int code = parties.find(receiver);
+        if (code < 0) {
+            return new int[0];
+        }
+        int[] matching = new int[count];
+        int matched = 0;
+        for (int row = 0; row < rows; row++) {
+            double amount = amounts.get(row);
+            if (receivers.get(row) == code && amount > lo && amount < hi && statuses.get(row) != REMOVED) {
+                matching[matched++] = row;
+            }
+        }
+        return sortedByAmount(Arrays.copyOf(matching, matched));
+    }
+
+    /**
+     * Selects the first {@code limit} matching rows in amount order with a
+     * bounded heap of row numbers whose root is the row that sorts last.
+     */
+    private int[] topRows(int statusCode, int senderCode, int limit) {
+        TransactionOrder.checkCount(limit);
+        int[] heap = new int[Math.min(limit, count)];
+        int size = 0;
+        for (int row = 0; row < rows; row++) {
+            byte status = statuses.get(row);
+            if (status == REMOVED
+                    || statusCode != ROW_ANY && status != statusCode
+                    || senderCode != ROW_ANY && senders.get(row) != senderCode) {
+                continue;
+            }
+            if (size < heap.length) {
+                heap[size] = row;
+                siftUp(heap, size++);
+            } else if (size > 0 && compareRows(row, heap[0]) < 0) {
+                heap[0] = row;
+                siftDown(heap, size);
+            }
+        }
+        return sortedByAmount(Arrays.copyOf(heap, size));
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (compareRows(heap[index], heap[parent]) <= 0) {
+                return;
+            }
+            swap(heap, index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && compareRows(heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+            if (compareRows(heap[child], heap[index]) <= 0) {
+                return;
+            }
+            swap(heap, index, child);
+            index = child;
+        }
+    }
+
+    private static void swap(int[] rows, int i, int j) {
+        int row = rows[i];
+        rows[i] = rows[j];
+        rows[j] = row;
+    }
+
+    /**
+     * Sorts row numbers in place into amount-descending-then-id order with a
+     * merge sort over the columns, so no row is boxed or materialized.
+     */
+    private int[] sortedByAmount(int[] matching) {
+        if (matching.length > 1) {
+            mergeSort(matching, matching.clone(), 0, matching.length);
+        }
+        return matching;
+    }
+
+    private void mergeSort(int[] rows, int[] buffer, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(rows, buffer, from, middle);
+        mergeSort(rows, buffer, middle, to);
+        if (compareRows(rows[middle - 1], rows[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(rows, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || left < middle && compareRows(buffer[left], buffer[right]) <= 0) {
+                rows[i] = buffer[left++];
+            } else {
+                rows[i] = buffer[right++];
+            }
+        }
+    }
+
+    private int compareRows(int first, int second) {
+        int byAmount = Double.compare(amounts.get(second), amounts.get(first));
+        return byAmount != 0 ? byAmount : Integer.compare(ids.get(first), ids.get(second));
+    }
+
+    private int visit(int[] matching, Consumer<? super Transaction> action) {
+        for (int row : matching) {
+            action.accept(materialize(row));
+        }
+        return matching.length;
+    }
+
+    private List<Transaction> materialize(int[] matching) {
+        List<Transaction> result = new ArrayList<>(matching.length);
+        for (int row : matching) {
+            result.add(materialize(row));
+        }
+        return result;
+    }
+
+    private Transaction materialize(int row) {
+        return new TransactionImpl(ids.get(row), STATUSES[statuses.get(row)],
+                parties.decode(senders.get(row)), parties.decode(receivers.get(row)), amounts.get(row));
+    }
+
+    private int rowOf(int id) {
+        int slot = findSlot(id);
+        if (slot < 0) {
+            throw new IllegalArgumentException();
+        }
+        return slots[slot] - 1;
+    }
+
+    private int findSlot(int id) {
+        int mask = slots.length - 1;
+        int slot = mix(id) & mask;
+        int rowPlusOne;
+        while ((rowPlusOne = slots[slot]) != EMPTY) {
+            if (rowPlusOne != DELETED && ids.get(rowPlusOne - 1) == id) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insertSlot(int id, int rowPlusOne) {
+        int mask = slots.length - 1;
+        int slot = mix(id) & mask;
+        while (slots[slot] > 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = rowPlusOne;
+    }
+
+    private void resize(int capacity) {
+        IntBuffer oldIds = ids;
+        DoubleBuffer oldAmounts = amounts;
+        ByteBuffer oldStatuses = statuses;
+        IntBuffer oldSenders = senders;
+        IntBuffer oldReceivers = receivers;
+        int oldRows = rows;
+        allocate(capacity);
+        for (int row = 0; row < oldRows; row++) {
+            if (oldStatuses.get(row) != REMOVED) {
+                ids.put(rows, oldIds.get(row));
+                amounts.put(rows, oldAmounts.get(row));
+                statuses.put(rows, oldStatuses.get(row));
+                senders.put(rows, oldSenders.get(row));
+                receivers.put(rows, oldReceivers.get(row));
+                rows++;
+                insertSlot(oldIds.get(row), rows);
+            }
+        }
+        count = rows;
+    }
+
+    /**
+     * Doubles the capacity, capped so that the widest column still fits in a
+     * buffer of at most {@link Integer#MAX_VALUE} bytes.
+     */
+    private int grownCapacity(long needed) {
+        if (needed > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("Columnar chainblock cannot hold more than " + MAXIMUM_CAPACITY + " rows");
+        }
+        return (int) Math.min(Math.max(needed, 2L * ids.capacity()), MAXIMUM_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        this.ids = intColumn(capacity);
+        this.amounts = offHeap
+                ? ByteBuffer.allocateDirect(capacity * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer()
+                : DoubleBuffer.allocate(capacity);
+        this.statuses = offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        this.senders = intColumn(capacity);
+        this.receivers = intColumn(capacity);
+        this.slots = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+        this.rows = 0;
+        this.count = 0;
+    }
+
+    private IntBuffer intColumn(int capacity) {
+        return offHeap
+                ? ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer()
+                : IntBuffer.allocate(capacity);
+    }
+
+    private static int mix(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static <T> List<T> nonEmpty(List<T> result) {
+        return TransactionOrder.nonEmpty(result);
+    }
+}
@@ -0,0 +1,338 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Thread-safe {@link Chainblock}. {@code getById} and {@code contains} read a
+ * {@link ConcurrentHashMap} and never block. Writers lock only the stripe of the
+ * id they touch, so writes to different ids run in parallel. Multi-row queries
+ * run optimistically against the concurrent indexes and are retried, or finally
+ * run with writers excluded, if a write overlapped them. A query that finds a
+ * transaction whose insertion sequence is missing has read a half-applied add
+ * or remove and is retried the same way.
+ */
+public class ConcurrentChainblock implements Chainblock {
+    private static final int STRIPES = 64;
+    private static final int OPTIMISTIC_ATTEMPTS = 3;
+
+    private final ConcurrentMap<Integer, Transaction> transactionMap;
+    private final ConcurrentMap<Integer, Long> insertionOrder;
+    private final NavigableSet<Transaction> amountIndex;
+    private final Map<TransactionStatus, NavigableSet<Transaction>> statusIndex;
+    private final ConcurrentMap<String, NavigableSet<Transaction>> senderIndex;
+    private final ConcurrentMap<String, NavigableSet<Transaction>> receiverIndex;
+    private final ReentrantLock[] stripes;
+    private final ReadWriteLock writersLock;
+    private final AtomicLong writesStarted;
+    private final AtomicLong writesFinished;
+    private final AtomicLong nextInsertion;
+
+    public ConcurrentChainblock() {
+        this.transactionMap = new ConcurrentHashMap<>();
+        this.insertionOrder = new ConcurrentHashMap<>();
+        this.amountIndex = new ConcurrentSkipListSet<>(TransactionOrder.AMOUNT_DESCENDING_THEN_ID);
+        this.statusIndex = new EnumMap<>(TransactionStatus.class);
+        for (TransactionStatus status : TransactionStatus.values()) {
+            this.statusIndex.put(status, new ConcurrentSkipListSet<>(TransactionOrder.AMOUNT_DESCENDING_THEN_ID));
+        }
+        this.senderIndex = new ConcurrentHashMap<>();
+        this.receiverIndex = new ConcurrentHashMap<>();
+        this.stripes = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.writersLock = new ReentrantReadWriteLock();
+        this.writesStarted = new AtomicLong();
+        this.writesFinished = new AtomicLong();
+        this.nextInsertion = new AtomicLong();
+    }
+
+    public int getCount() {
+        return transactionMap.size();
+    }
+
+    public void add(Transaction transaction) {
+        write(transaction.getId(), () -> {
+            if (transactionMap.putIfAbsent(transaction.getId(), transaction) == null) {
+                insertionOrder.put(transaction.getId(), nextInsertion.getAndIncrement());
+                amountIndex.add(transaction);
+                statusIndex.get(transaction.getStatus()).add(transaction);
+                addToPartyIndex(senderIndex, transaction.getFrom(), transaction);
+                addToPartyIndex(receiverIndex, transaction.getTo(), transaction);
+            }
+        });
+    }
+
+    public boolean contains(Transaction transaction) {
+        return contains(transaction.getId());
+    }
+
+    public boolean contains(int id) {
+        return transactionMap.containsKey(id);
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        write(id, () -> {
+            Transaction transaction = getById(id);
+            statusIndex.get(transaction.getStatus()).remove(transaction);
+            transaction.setStatus(newStatus);
+            statusIndex.get(newStatus).add(transaction);
+        });
+    }
+
+    public void removeTransactionById(int id) {
+        write(id, () -> {
+            Transaction transaction = transactionMap.remove(id);
+            if (transaction == null) {
+                throw new IllegalArgumentException();
+            }
+            insertionOrder.remove(id);
+            amountIndex.remove(transaction);
+            statusIndex.get(transaction.getStatus()).remove(transaction);
+            removeFromPartyIndex(receiverIndex, transaction.getTo(), transaction);
+            removeFromPartyIndex(senderIndex, transaction.getFrom(), transaction);
+        });
+    }
+
+    public Transaction getById(int id) {
+        Transaction transaction = tryGetById(id);
+        if (transaction == null) {
+            throw new IllegalArgumentException();
+        }
+        return transaction;
+    }
+
+    public Transaction tryGetById(int id) {
+        return transactionMap.get(id);
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        return nonEmpty(byStatus(status));
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        return nonEmpty(read(() -> statusIndex.get(status).stream()
+                .map(Transaction::getFrom)
+                .collect(Collectors.toList())));
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return nonEmpty(read(() -> statusIndex.get(status).stream()
+                .map(Transaction::getTo)
+                .collect(Collectors.toList())));
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        return read(() -> new ArrayList<>(amountIndex));
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        return nonEmpty(byParty(senderIndex, sender));
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        return nonEmpty(byParty(receiverIndex, receiver));
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return read(() -> inInsertionOrder(TransactionOrder.belowAmount(statusIndex.get(status), amount)));
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return nonEmpty(bySenderAbove(sender, amount));
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return nonEmpty(byReceiverBetween(receiver, lo, hi));
+    }
+
+    /**
+     * The visitors pass on the same snapshot the throwing queries return, so
+     * {@code action} never runs inside a read that may be retried.
+     */
+    public int forEachByTransactionStatus(TransactionStatus status, Consumer<? super Transaction> action) {
+        return TransactionOrder.forEach(byStatus(status), action);
+    }
+
+    public int forEachBySender(String sender, Consumer<? super Transaction> action) {
+        return TransactionOrder.forEach(byParty(senderIndex, sender), action);
+    }
+
+    public int forEachByReceiver(String receiver, Consumer<? super Transaction> action) {
+        return TransactionOrder.forEach(byParty(receiverIndex, receiver), action);
+    }
+
+    public int forEachBySenderAndMinimumAmount(String sender, double amount, Consumer<? super Transaction> action) {
+        return TransactionOrder.forEach(bySenderAbove(sender, amount), action);
+    }
+
+    public int forEachByReceiverAndAmountRange(String receiver, double lo, double hi,
+                                               Consumer<? super Transaction> action) {
+        return TransactionOrder.forEach(byReceiverBetween(receiver, lo, hi), action);
+    }
+
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        return read(() -> inInsertionOrder(TransactionOrder.amountRange(amountIndex, lo, hi)));
+    }
+
+    public Iterable<Transaction> getTopOrderedByAmountDescendingThenById(int count) {
+        return read(() -> TransactionOrder.first(amountIndex, count));
+    }
+
+    public Iterable<Transaction> getTopBySenderOrderedByAmountDescending(String sender, int count) {
+        return nonEmpty(read(() -> TransactionOrder.first(partyIndex(senderIndex, sender), count)));
+    }
+
+    public Iterable<Transaction> getTopByTransactionStatus(TransactionStatus status, int count) {
+        return nonEmpty(read(() -> TransactionOrder.first(statusIndex.get(status), count)));
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(PageCursor after, int pageSize) {
+        return read(() -> TransactionOrder.first(TransactionOrder.after(amountIndex, after), pageSize));
+    }
+
+    public Iterable<Transaction> getPageByReceiverOrderedByAmountThenById(String receiver, PageCursor after, int pageSize) {
+        List<Transaction> page = read(() ->
+                TransactionOrder.first(TransactionOrder.after(partyIndex(receiverIndex, receiver), after), pageSize));
+        if (page.isEmpty() && !receiverIndex.containsKey(receiver)) {
+            throw new IllegalArgumentException();
+        }
+        return page;
+    }
+
+    public Iterator<Transaction> iterator() {
+        return read(() -> inInsertionOrder(transactionMap.values())).iterator();
+    }
+
+    private void write(int id, Runnable mutation) {
+        ReentrantLock stripe = stripes[Math.floorMod(id, STRIPES)];
+        writersLock.readLock().lock();
+        stripe.lock();
+        writesStarted.incrementAndGet();
+        try {
+            mutation.run();
+        } finally {
+            writesFinished.incrementAndGet();
+            stripe.unlock();
+            writersLock.readLock().unlock();
+        }
+    }
+
+    private <T> T read(Supplier<T> query) {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            long finished = writesFinished.get();
+            long started = writesStarted.get();
+            if (started != finished) {
+                Thread.yield();
+                continue;
+            }
+            T result;
+            try {
+                result = query.get();
+            } catch (ReadConflict e) {
+                continue;
+            }
+            if (writesStarted.get() == started) {
+                return result;
+            }
+        }
+        writersLock.writeLock().lock();
+        try {
+            return query.get();
+        } finally {
+            writersLock.writeLock().unlock();
+        }
+    }
+
+    private static void addToPartyIndex(ConcurrentMap<String, NavigableSet<Transaction>> index, String party, Transaction transaction) {
+        index.compute(party, (p, byParty) -> {
+            if (byParty == null) {
+                byParty = new ConcurrentSkipListSet<>(TransactionOrder.AMOUNT_DESCENDING_THEN_ID);
+            }
+            byParty.add(transaction);
+            return byParty;
+        });
+    }
+
+    private static void removeFromPartyIndex(ConcurrentMap<String, NavigableSet<Transaction>> index, String party, Transaction transaction) {
+        index.computeIfPresent(party, (p, byParty) -> {
+            byParty.remove(transaction);
+            return byParty.isEmpty() ? null : byParty;
+        });
+    }
+
+    private List<Transaction> byStatus(TransactionStatus status) {
+        return read(() -> new ArrayList<>(statusIndex.get(status)));
+    }
+
+    private List<Transaction> byParty(Map<String, NavigableSet<Transaction>> index, String party) {
+        return read(() -> new ArrayList<>(partyIndex(index, party)));
+    }
+
+    private List<Transaction> bySenderAbove(String sender, double amount) {
+        return read(() -> new ArrayList<>(TransactionOrder.aboveAmount(partyIndex(senderIndex, sender), amount)));
+    }
+
+    private List<Transaction> byReceiverBetween(String receiver, double lo, double hi) {
+        return read(() -> new ArrayList<>(TransactionOrder.amountRange(partyIndex(receiverIndex, receiver), lo, hi)));
+    }
+
+    private static NavigableSet<Transaction> partyIndex(Map<String, NavigableSet<Transaction>> index, String party) {
+        return index.getOrDefault(party, Collections.emptyNavigableSet());
+    }
+
+    private static <T> List<T> nonEmpty(List<T> result) {
+        return TransactionOrder.nonEmpty(result);
+    }
+
+    /**
+     * Sorts by the insertion sequences read once up front, so a write that
+     * lands during the sort cannot change the order it sees.
+     */
+    private List<Transaction> inInsertionOrder(Collection<Transaction> transactions) {
+        List<Sequenced> sequenced = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            Long sequence = insertionOrder.get(transaction.getId());
+            if (sequence == null) {
+                throw new ReadConflict();
+            }
+            sequenced.add(new Sequenced(sequence, transaction));
+        }
+        sequenced.sort(Comparator.comparingLong(s -> s.sequence));
+        List<Transaction> result = new ArrayList<>(sequenced.size());
+        for (Sequenced s : sequenced) {
+            result.add(s.transaction);
+        }
+        return result;
+    }
+
+    private static final class Sequenced {
+        private final long sequence;
+        private final Transaction transaction;
+
+        private Sequenced(long sequence, Transaction transaction) {
+            this.sequence = sequence;
+            this.transaction = transaction;
+        }
+    }
+
+    /**
+     * Thrown inside {@link #read} when an optimistic query sees an add or
+     * remove that is only partly applied.
+     */
+    private static final class ReadConflict extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private ReadConflict() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * {@link Chainblock} decorator that records every successful {@code add},
+ * {@code removeTransactionById} and {@code changeTransactionStatus} in an
+ * append-only {@link TransactionLog} and returns only once the record is on
+ * disk. Opening an existing log replays it into the delegate. Each mutation
+ * is validated, appended to the log and only then applied to the delegate, all
+ * in one critical section so the log order matches the delegate; a mutation
+ * the log rejects, for instance after a failed write, leaves the delegate
+ * untouched. The fsync happens outside the critical section and is shared
+ * between writers, so until it returns other threads can already read a
+ * mutation that is not yet on disk. If the fsync fails, the log no longer
+ * matches the delegate and every later read or write throws
+ * {@link UncheckedIOException}; reopening the log recovers what reached disk.
+ */
+public class DurableChainblock implements Chainblock, Closeable {
+    private final Chainblock delegate;
+    private final TransactionLog log;
+
+    public DurableChainblock(Chainblock delegate, Path logFile) throws IOException {
+        this.delegate = delegate;
+        this.log = TransactionLog.open(logFile, delegate);
+    }
+
+    public int getCount() {
+        return read(delegate::getCount);
+    }
+
+    public void add(Transaction transaction) {
+        long sequence;
+        synchronized (this) {
+            if (!TransactionOrder.isNew(delegate, transaction)) {
+                return;
+            }
+            sequence = log.appendAdd(transaction);
+            delegate.add(transaction);
+        }
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Logs the new transactions one by one and hands the ones that made it into
+     * the log to the delegate's bulk {@code addAll}, also when a later record is
+     * rejected.
+     */
+    public void addAll(Collection<Transaction> transactions) {
+        long sequence = 0;
+        synchronized (this) {
+            List<Transaction> added = TransactionOrder.newTransactions(delegate, transactions);
+            List<Transaction> logged = new ArrayList<>(added.size());
+            try {
+                for (Transaction transaction : added) {
+                    sequence = log.appendAdd(transaction);
+                    logged.add(transaction);
+                }
+            } finally {
+                delegate.addAll(logged);
+            }
+        }
+        awaitDurable(sequence);
+    }
+
+    public boolean contains(Transaction transaction) {
+        return read(() -> delegate.contains(transaction));
+    }
+
+    public boolean contains(int id) {
+        return read(() -> delegate.contains(id));
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        long sequence;
+        synchronized (this) {
+            checkContains(id);
+            sequence = log.appendChangeStatus(id, newStatus);
+            delegate.changeTransactionStatus(id, newStatus);
+        }
+        awaitDurable(sequence);
+    }
+
+    public void removeTransactionById(int id) {
+        long sequence;
+        synchronized (this) {
+            checkContains(id);
+            sequence = log.appendRemove(id);
+            delegate.removeTransactionById(id);
+        }
+        awaitDurable(sequence);
+    }
+
+    public Transaction getById(int id) {
+        return read(() -> delegate.getById(id));
+    }
+
+    public Transaction tryGetById(int id) {
+        return read(() -> delegate.tryGetById(id));
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        return read(() -> delegate.getByTransactionStatus(status));
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        return read(() -> delegate.getAllSendersWithTransactionStatus(status));
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return read(() -> delegate.getAllReceiversWithTransactionStatus(status));
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        return read(delegate::getAllOrderedByAmountDescendingThenById);
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        return read(() -> delegate.getBySenderOrderedByAmountDescending(sender));
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        return read(() -> delegate.getByReceiverOrderedByAmountThenById(receiver));
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return read(() -> delegate.getByTransactionStatusAndMaximumAmount(status, amount));
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return read(() -> delegate.getBySenderAndMinimumAmountDescending(sender, amount));
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return read(() -> delegate.getByReceiverAndAmountRange(receiver, lo, hi));
+    }
+
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        return read(() -> delegate.getAllInAmountRange(lo, hi));
+    }
+
+    public int forEachByTransactionStatus(TransactionStatus status, Consumer<? super Transaction> action) {
+        return read(() -> delegate.forEachByTransactionStatus(status, action));
+    }
+
+    public int forEachBySender(String sender, Consumer<? super Transaction> action) {
+        return read(() -> delegate.forEachBySender(sender, action));
+    }
+
+    public int forEachByReceiver(String receiver, Consumer<? super Transaction> action) {
+        return read(() -> delegate.forEachByReceiver(receiver, action));
+    }
+
+    public int forEachBySenderAndMinimumAmount(String sender, double amount, Consumer<? super Transaction> action) {
+        return read(() -> delegate.forEachBySenderAndMinimumAmount(sender, amount, action));
+    }
+
+    public int forEachByReceiverAndAmountRange(String receiver, double lo, double hi,
+                                               Consumer<? super Transaction> action) {
+        return read(() -> delegate.forEachByReceiverAndAmountRange(receiver, lo, hi, action));
+    }
+
+    public Iterable<Transaction> getTopOrderedByAmountDescendingThenById(int count) {
+        return read(() -> delegate.getTopOrderedByAmountDescendingThenById(count));
+    }
+
+    public Iterable<Transaction> getTopBySenderOrderedByAmountDescending(String sender, int count) {
+        return read(() -> delegate.getTopBySenderOrderedByAmountDescending(sender, count));
+    }
+
+    public Iterable<Transaction> getTopByTransactionStatus(TransactionStatus status, int count) {
+        return read(() -> delegate.getTopByTransactionStatus(status, count));
+    }
+
+    public Iterable<Transaction> find(TransactionQuery query) {
+        return read(() -> delegate.find(query));
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(PageCursor after, int pageSize) {
+        return read(() -> delegate.getPageOrderedByAmountDescendingThenById(after, pageSize));
+    }
+
+    public Iterable<Transaction> getPageByReceiverOrderedByAmountThenById(String receiver, PageCursor after, int pageSize) {
+        return read(() -> delegate.getPageByReceiverOrderedByAmountThenById(receiver, after, pageSize));
+    }
+
+    public Iterator<Transaction> iterator() {
+        return read(delegate::iterator);
+    }
+
+    public void close() throws IOException {
+        log.close();
+    }
+
+    long syncCount() {
+        return log.syncCount();
+    }
+
+    private void checkContains(int id) {
+        if (!delegate.contains(id)) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    private void awaitDurable(long sequence) {
+        try {
+            log.awaitDurable(sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <T> T read(Supplier<T> query) {
+        log.checkUsable();
+        return query.get();
+    }
+}
@@ -0,0 +1,511 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ * {@link Chainblock} decorator that records, per method, the call count, the
+ * size of list results, the number of {@link IllegalArgumentException}s
+ * and a latency histogram. Recording is lock-free and allocates nothing per
+ * call. The numbers are available as {@link OperationStats}, as JMX MXBeans
+ * after {@link #registerMBeans(String)}, and as text from {@link #snapshot()}.
+ */
+public class InstrumentedChainblock implements Chainblock {
+    enum Operation {
+        GET_COUNT("getCount"),
+        ADD("add"),
+        ADD_ALL("addAll"),
+        CONTAINS_TRANSACTION("contains(Transaction)"),
+        CONTAINS_ID("contains(int)"),
+        CHANGE_TRANSACTION_STATUS("changeTransactionStatus"),
+        REMOVE_TRANSACTION_BY_ID("removeTransactionById"),
+        GET_BY_ID("getById"),
+        TRY_GET_BY_ID("tryGetById"),
+        GET_BY_TRANSACTION_STATUS("getByTransactionStatus"),
+        GET_ALL_SENDERS_WITH_TRANSACTION_STATUS("getAllSendersWithTransactionStatus"),
+        GET_ALL_RECEIVERS_WITH_TRANSACTION_STATUS("getAllReceiversWithTransactionStatus"),
+        GET_ALL_ORDERED_BY_AMOUNT_DESCENDING_THEN_BY_ID("getAllOrderedByAmountDescendingThenById"),
+        GET_BY_SENDER_ORDERED_BY_AMOUNT_DESCENDING("getBySenderOrderedByAmountDescending"),
+        GET_BY_RECEIVER_ORDERED_BY_AMOUNT_THEN_BY_ID("getByReceiverOrderedByAmountThenById"),
+        GET_BY_TRANSACTION_STATUS_AND_MAXIMUM_AMOUNT("getByTransactionStatusAndMaximumAmount"),
+        GET_BY_SENDER_AND_MINIMUM_AMOUNT_DESCENDING("getBySenderAndMinimumAmountDescending"),
+        GET_BY_RECEIVER_AND_AMOUNT_RANGE("getByReceiverAndAmountRange"),
+        GET_ALL_IN_AMOUNT_RANGE("getAllInAmountRange"),
+        FOR_EACH_BY_TRANSACTION_STATUS("forEachByTransactionStatus"),
+        FOR_EACH_BY_SENDER("forEachBySender"),
+        FOR_EACH_BY_RECEIVER("forEachByReceiver"),
+        FOR_EACH_BY_SENDER_AND_MINIMUM_AMOUNT("forEachBySenderAndMinimumAmount"),
+        FOR_EACH_BY_RECEIVER_AND_AMOUNT_RANGE("forEachByReceiverAndAmountRange"),
+        GET_TOP_ORDERED_BY_AMOUNT_DESCENDING_THEN_BY_ID("getTopOrderedByAmountDescendingThenById"),
+        GET_TOP_BY_SENDER_ORDERED_BY_AMOUNT_DESCENDING("getTopBySenderOrderedByAmountDescending"),
+        GET_TOP_BY_TRANSACTION_STATUS("getTopByTransactionStatus"),
+        FIND("find"),
+        GET_PAGE_ORDERED_BY_AMOUNT_DESCENDING_THEN_BY_ID("getPageOrderedByAmountDescendingThenById"),
+        GET_PAGE_BY_RECEIVER_ORDERED_BY_AMOUNT_THEN_BY_ID("getPageByReceiverOrderedByAmountThenById"),
+        ITERATOR("iterator");
+
+        private final String methodName;
+
+        Operation(String methodName) {
+            this.methodName = methodName;
+        }
+    }
+
+    private final Chainblock delegate;
+    private final OperationStats[] stats;
+    private final List<ObjectName> registered;
+
+    public InstrumentedChainblock(Chainblock delegate) {
+        this.delegate = delegate;
+        this.stats = new OperationStats[Operation.values().length];
+        for (Operation operation : Operation.values()) {
+            this.stats[operation.ordinal()] = new OperationStats(operation.methodName);
+        }
+        this.registered = new ArrayList<>();
+    }
+
+    public int getCount() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getCount();
+        } catch (IllegalArgumentException e) {
+            stats(Operation.GET_COUNT).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.GET_COUNT).record(System.nanoTime() - start);
+        }
+    }
+
+    public void add(Transaction transaction) {
+        long start = System.nanoTime();
+        try {
+            delegate.add(transaction);
+        } catch (IllegalArgumentException e) {
+            stats(Operation.ADD).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.ADD).record(System.nanoTime() - start);
+        }
+    }
+
+    public void addAll(Collection<Transaction> transactions) {
+        long start = System.nanoTime();
+        try {
+            delegate.addAll(transactions);
+        } catch (IllegalArgumentException e) {
+            stats(Operation.ADD_ALL).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.ADD_ALL).record(System.nanoTime() - start);
+        }
+    }
+
+    public boolean contains(Transaction transaction) {
+        long start = System.nanoTime();
+        try {
+            return delegate.contains(transaction);
+        } catch (IllegalArgumentException e) {
+            stats(Operation.CONTAINS_TRANSACTION).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.CONTAINS_TRANSACTION).record(System.nanoTime() - start);
+        }
+    }
+
+    public boolean contains(int id) {
+        long start = System.nanoTime();
+        try {
+            return delegate.contains(id);
+        } catch (IllegalArgumentException e) {
+            stats(Operation.CONTAINS_ID).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.CONTAINS_ID).record(System.nanoTime() - start);
+        }
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        long start = System.nanoTime();
+        try {
+            delegate.changeTransactionStatus(id, newStatus);
+        } catch (IllegalArgumentException e) {
+            stats(Operation.CHANGE_TRANSACTION_STATUS).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.CHANGE_TRANSACTION_STATUS).record(System.nanoTime() - start);
+        }
+    }
+
+    public void removeTransactionById(int id) {
+        long start = System.nanoTime();
+        try {
+            delegate.removeTransactionById(id);
+        } catch (IllegalArgumentException e) {
+            stats(Operation.REMOVE_TRANSACTION_BY_ID).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.REMOVE_TRANSACTION_BY_ID).record(System.nanoTime() - start);
+        }
+    }
+
+    public Transaction getById(int id) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getById(id);
+        } catch (IllegalArgumentException e) {
+            stats(Operation.GET_BY_ID).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.GET_BY_ID).record(System.nanoTime() - start);
+        }
+    }
+
+    public Transaction tryGetById(int id) {
+        long start = System.nanoTime();
+        try {
+            return delegate.tryGetById(id);
+        } catch (IllegalArgumentException e) {
+            stats(Operation.TRY_GET_BY_ID).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.TRY_GET_BY_ID).record(System.nanoTime() - start);
+        }
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        long start = System.nanoTime();
+        try {
+            return sized(Operation.GET_BY_TRANSACTION_STATUS, delegate.getByTransactionStatus(status));
+        } catch (IllegalArgumentException e) {
+            stats(Operation.GET_BY_TRANSACTION_STATUS).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.GET_BY_TRANSACTION_STATUS).record(System.nanoTime() - start);
+        }
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        long start = System.nanoTime();
+        try {
+            return sized(Operation.GET_ALL_SENDERS_WITH_TRANSACTION_STATUS, delegate.getAllSendersWithTransactionStatus(status));
+        } catch (IllegalArgumentException e) {
+            stats(Operation.GET_ALL_SENDERS_WITH_TRANSACTION_STATUS).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.GET_ALL_SENDERS_WITH_TRANSACTION_STATUS).record(System.nanoTime() - start);
+        }
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        long start = System.nanoTime();
+        try {
+            return sized(Operation.GET_ALL_RECEIVERS_WITH_TRANSACTION_STATUS, delegate.getAllReceiversWithTransactionStatus(status));
+        } catch (IllegalArgumentException e) {
+            stats(Operation.GET_ALL_RECEIVERS_WITH_TRANSACTION_STATUS).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.GET_ALL_RECEIVERS_WITH_TRANSACTION_STATUS).record(System.nanoTime() - start);
+        }
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        long start = System.nanoTime();
+        try {
+            return sized(Operation.GET_ALL_ORDERED_BY_AMOUNT_DESCENDING_THEN_BY_ID, delegate.getAllOrderedByAmountDescendingThenById());
+        } catch (IllegalArgumentException e) {
+            stats(Operation.GET_ALL_ORDERED_BY_AMOUNT_DESCENDING_THEN_BY_ID).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.GET_ALL_ORDERED_BY_AMOUNT_DESCENDING_THEN_BY_ID).record(System.nanoTime() - start);
+        }
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        long start = System.nanoTime();
+        try {
+            return sized(Operation.GET_BY_SENDER_ORDERED_BY_AMOUNT_DESCENDING, delegate.getBySenderOrderedByAmountDescending(sender));
+        } catch (IllegalArgumentException e) {
+            stats(Operation.GET_BY_SENDER_ORDERED_BY_AMOUNT_DESCENDING).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.GET_BY_SENDER_ORDERED_BY_AMOUNT_DESCENDING).record(System.nanoTime() - start);
+        }
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        long start = System.nanoTime();
+        try {
+            return sized(Operation.GET_BY_RECEIVER_ORDERED_BY_AMOUNT_THEN_BY_ID, delegate.getByReceiverOrderedByAmountThenById(receiver));
+        } catch (IllegalArgumentException e) {
+            stats(Operation.GET_BY_RECEIVER_ORDERED_BY_AMOUNT_THEN_BY_ID).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.GET_BY_RECEIVER_ORDERED_BY_AMOUNT_THEN_BY_ID).record(System.nanoTime() - start);
+        }
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        long start = System.nanoTime();
+        try {
+            return sized(Operation.GET_BY_TRANSACTION_STATUS_AND_MAXIMUM_AMOUNT, delegate.getByTransactionStatusAndMaximumAmount(status, amount));
+        } catch (IllegalArgumentException e) {
+            stats(Operation.GET_BY_TRANSACTION_STATUS_AND_MAXIMUM_AMOUNT).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.GET_BY_TRANSACTION_STATUS_AND_MAXIMUM_AMOUNT).record(System.nanoTime() - start);
+        }
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        long start = System.nanoTime();
+        try {
+            return sized(Operation.GET_BY_SENDER_AND_MINIMUM_AMOUNT_DESCENDING, delegate.getBySenderAndMinimumAmountDescending(sender, amount));
+        } catch (IllegalArgumentException e) {
+            stats(Operation.GET_BY_SENDER_AND_MINIMUM_AMOUNT_DESCENDING).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.GET_BY_SENDER_AND_MINIMUM_AMOUNT_DESCENDING).record(System.nanoTime() - start);
+        }
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        long start = System.nanoTime();
+        try {
+            return sized(Operation.GET_BY_RECEIVER_AND_AMOUNT_RANGE, delegate.getByReceiverAndAmountRange(receiver, lo, hi));
+        } catch (IllegalArgumentException e) {
+            stats(Operation.GET_BY_RECEIVER_AND_AMOUNT_RANGE).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.GET_BY_RECEIVER_AND_AMOUNT_RANGE).record(System.nanoTime() - start);
+        }
+    }
+
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        long start = System.nanoTime();
+        try {
+            return sized(Operation.GET_ALL_IN_AMOUNT_RANGE, delegate.getAllInAmountRange(lo, hi));
+        } catch (IllegalArgumentException e) {
+            stats(Operation.GET_ALL_IN_AMOUNT_RANGE).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.GET_ALL_IN_AMOUNT_RANGE).record(System.nanoTime() - start);
+        }
+    }
+
+    public int forEachByTransactionStatus(TransactionStatus status, Consumer<? super Transaction> action) {
+        long start = System.nanoTime();
+        try {
+            return counted(Operation.FOR_EACH_BY_TRANSACTION_STATUS, delegate.forEachByTransactionStatus(status, action));
+        } catch (IllegalArgumentException e) {
+            stats(Operation.FOR_EACH_BY_TRANSACTION_STATUS).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.FOR_EACH_BY_TRANSACTION_STATUS).record(System.nanoTime() - start);
+        }
+    }
+
+    public int forEachBySender(String sender, Consumer<? super Transaction> action) {
+        long start = System.nanoTime();
+        try {
+            return counted(Operation.FOR_EACH_BY_SENDER, delegate.forEachBySender(sender, action));
+        } catch (IllegalArgumentException e) {
+            stats(Operation.FOR_EACH_BY_SENDER).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.FOR_EACH_BY_SENDER).record(System.nanoTime() - start);
+        }
+    }
+
+    public int forEachByReceiver(String receiver, Consumer<? super Transaction> action) {
+        long start = System.nanoTime();
+        try {
+            return counted(Operation.FOR_EACH_BY_RECEIVER, delegate.forEachByReceiver(receiver, action));
+        } catch (IllegalArgumentException e) {
+            stats(Operation.FOR_EACH_BY_RECEIVER).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.FOR_EACH_BY_RECEIVER).record(System.nanoTime() - start);
+        }
+    }
+
+    public int forEachBySenderAndMinimumAmount(String sender, double amount, Consumer<? super Transaction> action) {
+        long start = System.nanoTime();
+        try {
+            return counted(Operation.FOR_EACH_BY_SENDER_AND_MINIMUM_AMOUNT, delegate.forEachBySenderAndMinimumAmount(sender, amount, action));
+        } catch (IllegalArgumentException e) {
+            stats(Operation.FOR_EACH_BY_SENDER_AND_MINIMUM_AMOUNT).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.FOR_EACH_BY_SENDER_AND_MINIMUM_AMOUNT).record(System.nanoTime() - start);
+        }
+    }
+
+    public int forEachByReceiverAndAmountRange(String receiver, double lo, double hi,
+                                               Consumer<? super Transaction> action) {
+        long start = System.nanoTime();
+        try {
+            return counted(Operation.FOR_EACH_BY_RECEIVER_AND_AMOUNT_RANGE, delegate.forEachByReceiverAndAmountRange(receiver, lo, hi, action));
+        } catch (IllegalArgumentException e) {
+            stats(Operation.FOR_EACH_BY_RECEIVER_AND_AMOUNT_RANGE).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.FOR_EACH_BY_RECEIVER_AND_AMOUNT_RANGE).record(System.nanoTime() - start);
+        }
+    }
+
+    public Iterable<Transaction> getTopOrderedByAmountDescendingThenById(int count) {
+        long start = System.nanoTime();
+        try {
+            return sized(Operation.GET_TOP_ORDERED_BY_AMOUNT_DESCENDING_THEN_BY_ID, delegate.getTopOrderedByAmountDescendingThenById(count));
+        } catch (IllegalArgumentException e) {
+            stats(Operation.GET_TOP_ORDERED_BY_AMOUNT_DESCENDING_THEN_BY_ID).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.GET_TOP_ORDERED_BY_AMOUNT_DESCENDING_THEN_BY_ID).record(System.nanoTime() - start);
+        }
+    }
+
+    public Iterable<Transaction> getTopBySenderOrderedByAmountDescending(String sender, int count) {
+        long start = System.nanoTime();
+        try {
+            return sized(Operation.GET_TOP_BY_SENDER_ORDERED_BY_AMOUNT_DESCENDING, delegate.getTopBySenderOrderedByAmountDescending(sender, count));
+        } catch (IllegalArgumentException e) {
+            stats(Operation.GET_TOP_BY_SENDER_ORDERED_BY_AMOUNT_DESCENDING).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.GET_TOP_BY_SENDER_ORDERED_BY_AMOUNT_DESCENDING).record(System.nanoTime() - start);
+        }
+    }
+
+    public Iterable<Transaction> getTopByTransactionStatus(TransactionStatus status, int count) {
+        long start = System.nanoTime();
+        try {
+            return sized(Operation.GET_TOP_BY_TRANSACTION_STATUS, delegate.getTopByTransactionStatus(status, count));
+        } catch (IllegalArgumentException e) {
+            stats(Operation.GET_TOP_BY_TRANSACTION_STATUS).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.GET_TOP_BY_TRANSACTION_STATUS).record(System.nanoTime() - start);
+        }
+    }
+
+    public Iterable<Transaction> find(TransactionQuery query) {
+        long start = System.nanoTime();
+        try {
+            return sized(Operation.FIND, delegate.find(query));
+        } catch (IllegalArgumentException e) {
+            stats(Operation.FIND).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.FIND).record(System.nanoTime() - start);
+        }
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(PageCursor after, int pageSize) {
+        long start = System.nanoTime();
+        try {
+            return sized(Operation.GET_PAGE_ORDERED_BY_AMOUNT_DESCENDING_THEN_BY_ID, delegate.getPageOrderedByAmountDescendingThenById(after, pageSize));
+        } catch (IllegalArgumentException e) {
+            stats(Operation.GET_PAGE_ORDERED_BY_AMOUNT_DESCENDING_THEN_BY_ID).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.GET_PAGE_ORDERED_BY_AMOUNT_DESCENDING_THEN_BY_ID).record(System.nanoTime() - start);
+        }
+    }
+
+    public Iterable<Transaction> getPageByReceiverOrderedByAmountThenById(String receiver, PageCursor after, int pageSize) {
+        long start = System.nanoTime();
+        try {
+            return sized(Operation.GET_PAGE_BY_RECEIVER_ORDERED_BY_AMOUNT_THEN_BY_ID, delegate.getPageByReceiverOrderedByAmountThenById(receiver, after, pageSize));
+        } catch (IllegalArgumentException e) {
+            stats(Operation.GET_PAGE_BY_RECEIVER_ORDERED_BY_AMOUNT_THEN_BY_ID).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.GET_PAGE_BY_RECEIVER_ORDERED_BY_AMOUNT_THEN_BY_ID).record(System.nanoTime() - start);
+        }
+    }
+
+    public Iterator<Transaction> iterator() {
+        long start = System.nanoTime();
+        try {
+            return delegate.iterator();
+        } catch (IllegalArgumentException e) {
+            stats(Operation.ITERATOR).recordIllegalArgument();
+            throw e;
+        } finally {
+            stats(Operation.ITERATOR).record(System.nanoTime() - start);
+        }
+    }
+
+    public OperationStats getStats(String methodName) {
+        for (Operation operation : Operation.values()) {
+            if (operation.methodName.equals(methodName)) {
+                return stats(operation);
+            }
+        }
+        throw new IllegalArgumentException();
+    }
+
+    /**
+     * Registers one MXBean per operation as
+     * {@code Chainblock:type=Operation,name=<name>,operation=<method>}.
+     */
+    public synchronized void registerMBeans(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (Operation operation : Operation.values()) {
+            ObjectName objectName = new ObjectName("Chainblock:type=Operation,name=" + ObjectName.quote(name)
+                    + ",operation=" + ObjectName.quote(operation.methodName));
+            server.registerMBean(stats(operation), objectName);
+            registered.add(objectName);
+        }
+    }
+
+    public synchronized void unregisterMBeans() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : registered) {
+            server.unregisterMBean(objectName);
+        }
+        registered.clear();
+    }
+
+    /**
+     * One line per operation that has been called, latencies in microseconds.
+     */
+    public String snapshot() {
+        StringBuilder text = new StringBuilder(String.format("%-40s %10s %8s %10s %10s %10s %10s %10s%n",
+                "operation", "calls", "iae%", "avgSize", "mean", "p50", "p99", "max"));
+        for (OperationStats operation : stats) {
+            if (operation.getCalls() == 0) {
+                continue;
+            }
+            text.append(String.format("%-40s %10d %8.2f %10.1f %10.2f %10.2f %10.2f %10.2f%n",
+                    operation.getOperation(), operation.getCalls(),
+                    operation.getIllegalArgumentExceptionRate() * 100, operation.getMeanResultSize(),
+                    operation.getMeanLatencyNanos() / 1000, operation.getP50LatencyNanos() / 1000.0,
+                    operation.getP99LatencyNanos() / 1000.0, operation.getMaxLatencyNanos() / 1000.0));
+        }
+        return text.toString();
+    }
+
+    private OperationStats stats(Operation operation) {
+        return stats[operation.ordinal()];
+    }
+
+    private int counted(Operation operation, int count) {
+        stats(operation).recordResultSize(count);
+        return count;
+    }
+
+    private <T extends Iterable<?>> T sized(Operation operation, T result) {
+        if (result instanceof Collection && result instanceof RandomAccess) {
+            stats(operation).recordResultSize(((Collection<?>) result).size());
+        }
+        return result;
+    }
+}
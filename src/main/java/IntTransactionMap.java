@@ -0,0 +1,204 @@
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Open-addressing map from primitive transaction id to transaction that keeps
+ * insertion order. Entries live in dense, insertion-ordered arrays and the hash
+ * table only holds positions into them, so lookups never box the id.
+ */
+final class IntTransactionMap {
+    private static final int EMPTY = 0;
+    private static final int DELETED = -1;
+    private static final int MINIMUM_CAPACITY = 16;
+
+    private int[] slots;
+    private int[] ids;
+    private Transaction[] values;
+    private int used;
+    private int size;
+    private int modCount;
+
+    IntTransactionMap() {
+        this(MINIMUM_CAPACITY);
+    }
+
+    IntTransactionMap(int expectedSize) {
+        allocate(Math.max(MINIMUM_CAPACITY, expectedSize));
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean containsKey(int id) {
+        return findSlot(id) >= 0;
+    }
+
+    Transaction get(int id) {
+        int slot = findSlot(id);
+        return slot < 0 ? null : values[slots[slot] - 1];
+    }
+
+    /**
+     * Position of the id in insertion order, or -1 if absent. Positions of live
+     * entries keep their relative order across removals and resizes.
+     */
+    int indexOf(int id) {
+        int slot = findSlot(id);
+        return slot < 0 ? -1 : slots[slot] - 1;
+    }
+
+    /**
+     * Live transaction at an insertion position returned by {@link #indexOf}.
+     */
+    Transaction at(int position) {
+        return values[position];
+    }
+
+    Transaction putIfAbsent(int id, Transaction transaction) {
+        Transaction existing = get(id);
+        if (existing != null) {
+            return existing;
+        }
+        if (used == ids.length) {
+            resize(size < used / 2 ? ids.length : ids.length * 2);
+        }
+        ids[used] = id;
+        values[used] = transaction;
+        used++;
+        size++;
+        modCount++;
+        insertSlot(id, used);
+        return null;
+    }
+
+    void ensureCapacity(int expectedSize) {
+        if (expectedSize > ids.length) {
+            resize(expectedSize);
+        }
+    }
+
+    Transaction remove(int id) {
+        int slot = findSlot(id);
+        if (slot < 0) {
+            return null;
+        }
+        int position = slots[slot] - 1;
+        Transaction removed = values[position];
+        values[position] = null;
+        slots[slot] = DELETED;
+        size--;
+        modCount++;
+        return removed;
+    }
+
+    void forEach(Consumer<? super Transaction> action) {
+        for (int i = 0; i < used; i++) {
+            if (values[i] != null) {
+                action.accept(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Fail-fast iterator in insertion order; adding or removing an id while it
+     * is in use makes it throw {@link ConcurrentModificationException}.
+     */
+    Iterator<Transaction> iterator() {
+        return new Iterator<Transaction>() {
+            private final int expectedModCount = modCount;
+            private int next = advance(0);
+
+            public boolean hasNext() {
+                checkForComodification();
+                return next < used;
+            }
+
+            public Transaction next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Transaction transaction = values[next];
+                next = advance(next + 1);
+                return transaction;
+            }
+
+            private int advance(int from) {
+                while (from < used && values[from] == null) {
+                    from++;
+                }
+                return from;
+            }
+
+            private void checkForComodification() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+        };
+    }
+
+    Stream<Transaction> stream() {
+        return StreamSupport.stream(Spliterators.spliterator(iterator(), size,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    private int findSlot(int id) {
+        int mask = slots.length - 1;
+        int slot = mix(id) & mask;
+        int position;
+        while ((position = slots[slot]) != EMPTY) {
+            if (position != DELETED && ids[position - 1] == id) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insertSlot(int id, int positionPlusOne) {
+        int mask = slots.length - 1;
+        int slot = mix(id) & mask;
+        while (slots[slot] > 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = positionPlusOne;
+    }
+
+    private void resize(int capacity) {
+        int[] oldIds = ids;
+        Transaction[] oldValues = values;
+        int oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldUsed; i++) {
+            if (oldValues[i] != null) {
+                ids[used] = oldIds[i];
+                values[used] = oldValues[i];
+                used++;
+                insertSlot(oldIds[i], used);
+            }
+        }
+        size = used;
+        modCount++;
+    }
+
+    private void allocate(int capacity) {
+        int tableSize = Integer.highestOneBit(Math.max(capacity * 2 - 1, 1)) << 1;
+        this.slots = new int[tableSize];
+        this.ids = new int[capacity];
+        this.values = new Transaction[capacity];
+        this.used = 0;
+        this.size = 0;
+    }
+
+    private static int mix(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,638 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.zip.CRC32;
+
+/**
+ * Read-only {@link Chainblock} served straight from a memory-mapped snapshot
+ * file written by {@link #save(Chainblock, Path)}. Opening a snapshot only
+ * checks its header; rows are read from the mapping when a query touches them
+ * and {@link Transaction} copies are created only for returned rows.
+ *
+ * <p>Layout, big-endian: a 64-byte header with a CRC32 of its own fields, the
+ * rows in insertion order ({@value #ROW_BYTES} bytes each), an (id, row) index
+ * sorted by id, a row index in amount-descending-then-id order, and a string
+ * table holding every sender and receiver once.
+ */
+public class MappedChainblock implements Chainblock {
+    private static final int MAGIC = 0x43484B53;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int ROW_BYTES = 24;
+    private static final int ID_ENTRY_BYTES = 8;
+    private static final int NULL_STRING = -1;
+    private static final int UNKNOWN_STRING = -2;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private final ByteBuffer mapping;
+    private final int count;
+    private final int stringCount;
+    private final int rowsOffset;
+    private final int idIndexOffset;
+    private final int amountIndexOffset;
+    private final int stringsOffset;
+    private final int bodyChecksum;
+    private final String[] strings;
+    private volatile Map<String, Integer> codes;
+
+    private MappedChainblock(ByteBuffer mapping) {
+        this.mapping = mapping;
+        if (mapping.capacity() < HEADER_BYTES || mapping.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a chainblock snapshot");
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer header = mapping.duplicate();
+        header.position(0).limit(HEADER_BYTES - Integer.BYTES);
+        crc.update(header);
+        if ((int) crc.getValue() != mapping.getInt(HEADER_BYTES - Integer.BYTES)) {
+            throw new IllegalArgumentException("Corrupt chainblock snapshot header");
+        }
+        if (mapping.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported chainblock snapshot version " + mapping.getInt(4));
+        }
+        this.count = mapping.getInt(8);
+        this.stringCount = mapping.getInt(12);
+        this.rowsOffset = mapping.getInt(16);
+        this.idIndexOffset = mapping.getInt(20);
+        this.amountIndexOffset = mapping.getInt(24);
+        this.stringsOffset = mapping.getInt(28);
+        this.bodyChecksum = mapping.getInt(32);
+        this.strings = new String[stringCount];
+    }
+
+    public static MappedChainblock load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Snapshot larger than 2 GiB");
+            }
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedChainblock(mapping);
+        }
+    }
+
+    /**
+     * Writes {@code source} to {@code file} in insertion order, replacing any
+     * existing file. The snapshot is written to a temporary file next to
+     * {@code file}, forced to disk and then moved over it atomically, so a
+     * crash leaves either the old snapshot or the new one.
+     */
+    public static void save(Chainblock source, Path file) throws IOException {
+        List<Transaction> rows = new ArrayList<>(source.getCount());
+        source.forEach(rows::add);
+        Map<String, Integer> codes = new LinkedHashMap<>();
+        long[] idToRow = new long[rows.size()];
+        for (int row = 0; row < rows.size(); row++) {
+            Transaction transaction = rows.get(row);
+            addCode(codes, transaction.getFrom());
+            addCode(codes, transaction.getTo());
+            idToRow[row] = (long) transaction.getId() << 32 | row;
+        }
+        Arrays.sort(idToRow);
+        List<byte[]> encoded = new ArrayList<>(codes.size());
+        long stringBytes = 0;
+        for (String value : codes.keySet()) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            stringBytes += bytes.length;
+        }
+        long size = HEADER_BYTES + (long) rows.size() * (ROW_BYTES + ID_ENTRY_BYTES + Integer.BYTES)
+                + (codes.size() + 1L) * Integer.BYTES + stringBytes;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Snapshot larger than 2 GiB");
+        }
+
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                write(channel, rows, codes, encoded, idToRow, source);
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void write(FileChannel channel, List<Transaction> rows, Map<String, Integer> codes,
+                              List<byte[]> encoded, long[] idToRow, Chainblock source) throws IOException {
+        SnapshotWriter out = new SnapshotWriter(channel);
+        int rowsOffset = HEADER_BYTES;
+        for (Transaction transaction : rows) {
+            out.putInt(transaction.getId());
+            out.putInt(codeOf(codes, transaction.getFrom()));
+            out.putInt(codeOf(codes, transaction.getTo()));
+            out.putInt(transaction.getStatus().ordinal() << 24);
+            out.putDouble(transaction.getAmount());
+        }
+        int idIndexOffset = rowsOffset + rows.size() * ROW_BYTES;
+        for (long entry : idToRow) {
+            out.putInt((int) (entry >> 32));
+            out.putInt((int) entry);
+        }
+        int amountIndexOffset = idIndexOffset + rows.size() * ID_ENTRY_BYTES;
+        for (Transaction transaction : source.getAllOrderedByAmountDescendingThenById()) {
+            out.putInt((int) idToRow[binarySearch(idToRow, transaction.getId())]);
+        }
+        int stringsOffset = amountIndexOffset + rows.size() * Integer.BYTES;
+        int stringBytes = 0;
+        out.putInt(0);
+        for (byte[] bytes : encoded) {
+            stringBytes += bytes.length;
+            out.putInt(stringBytes);
+        }
+        for (byte[] bytes : encoded) {
+            out.put(bytes);
+        }
+        int bodyChecksum = out.finish();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putInt(rows.size()).putInt(codes.size())
+                .putInt(rowsOffset).putInt(idIndexOffset).putInt(amountIndexOffset).putInt(stringsOffset)
+                .putInt(bodyChecksum);
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, HEADER_BYTES - Integer.BYTES);
+        header.putInt(HEADER_BYTES - Integer.BYTES, (int) crc.getValue());
+        header.rewind();
+        channel.position(0);
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    /**
+     * Checks the CRC32 of everything after the header; unlike opening the
+     * snapshot, this reads the whole file.
+     */
+    public boolean verify() {
+        CRC32 crc = new CRC32();
+        ByteBuffer body = mapping.duplicate();
+        body.position(HEADER_BYTES);
+        crc.update(body);
+        return (int) crc.getValue() == bodyChecksum;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void add(Transaction transaction) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean contains(Transaction transaction) {
+        return contains(transaction.getId());
+    }
+
+    public boolean contains(int id) {
+        return rowOf(id) >= 0;
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void removeTransactionById(int id) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Transaction getById(int id) {
+        Transaction transaction = tryGetById(id);
+        if (transaction == null) {
+            throw new IllegalArgumentException();
+        }
+        return transaction;
+    }
+
+    public Transaction tryGetById(int id) {
+        int row = rowOf(id);
+        return row < 0 ? null : materialize(row);
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        return TransactionOrder.nonEmpty(TransactionOrder.collect(action -> forEachByTransactionStatus(status, action)));
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        List<String> senders = new ArrayList<>();
+        for (Transaction transaction : getByTransactionStatus(status)) {
+            senders.add(transaction.getFrom());
+        }
+        return senders;
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        List<String> receivers = new ArrayList<>();
+        for (Transaction transaction : getByTransactionStatus(status)) {
+            receivers.add(transaction.getTo());
+        }
+        return receivers;
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        return ordered(0, count, row -> true, Integer.MAX_VALUE);
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        return TransactionOrder.nonEmpty(TransactionOrder.collect(action -> forEachBySender(sender, action)));
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        return TransactionOrder.nonEmpty(TransactionOrder.collect(action -> forEachByReceiver(receiver, action)));
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return inInsertionOrder(firstBelow(amount), count, statusIs(status));
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return TransactionOrder.nonEmpty(TransactionOrder.collect(
+                action -> forEachBySenderAndMinimumAmount(sender, amount, action)));
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return TransactionOrder.nonEmpty(TransactionOrder.collect(
+                action -> forEachByReceiverAndAmountRange(receiver, lo, hi, action)));
+    }
+
+    public int forEachByTransactionStatus(TransactionStatus status, Consumer<? super Transaction> action) {
+        return visit(0, count, statusIs(status), action);
+    }
+
+    public int forEachBySender(String sender, Consumer<? super Transaction> action) {
+        return visit(0, count, senderIs(sender), action);
+    }
+
+    public int forEachByReceiver(String receiver, Consumer<? super Transaction> action) {
+        return visit(0, count, receiverIs(receiver), action);
+    }
+
+    public int forEachBySenderAndMinimumAmount(String sender, double amount, Consumer<? super Transaction> action) {
+        return visit(firstNumber(), firstNotAbove(amount), senderIs(sender), action);
+    }
+
+    public int forEachByReceiverAndAmountRange(String receiver, double lo, double hi,
+                                               Consumer<? super Transaction> action) {
+        if (!(lo < hi)) {
+            return 0;
+        }
+        return visit(firstBelow(hi), firstNotAbove(lo), receiverIs(receiver), action);
+    }
+
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        if (!(lo < hi)) {
+            return Collections.emptyList();
+        }
+        return inInsertionOrder(firstBelow(hi), firstNotAbove(lo), row -> true);
+    }
+
+    public Iterable<Transaction> getTopOrderedByAmountDescendingThenById(int count) {
+        TransactionOrder.checkCount(count);
+        return ordered(0, this.count, row -> true, count);
+    }
+
+    public Iterable<Transaction> getTopBySenderOrderedByAmountDescending(String sender, int count) {
+        TransactionOrder.checkCount(count);
+        return TransactionOrder.nonEmpty(ordered(0, this.count, senderIs(sender), count));
+    }
+
+    public Iterable<Transaction> getTopByTransactionStatus(TransactionStatus status, int count) {
+        TransactionOrder.checkCount(count);
+        return TransactionOrder.nonEmpty(ordered(0, this.count, statusIs(status), count));
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(PageCursor after, int pageSize) {
+        TransactionOrder.checkCount(pageSize);
+        return ordered(firstAfter(after), count, row -> true, pageSize);
+    }
+
+    public Iterable<Transaction> getPageByReceiverOrderedByAmountThenById(String receiver, PageCursor after, int pageSize) {
+        TransactionOrder.checkCount(pageSize);
+        IntPredicate toReceiver = receiverIs(receiver);
+        List<Transaction> page = ordered(firstAfter(after), count, toReceiver, pageSize);
+        if (page.isEmpty() && ordered(0, count, toReceiver, 1).isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        return page;
+    }
+
+    public Iterator<Transaction> iterator() {
+        return new Iterator<Transaction>() {
+            private int next;
+
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            public Transaction next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return materialize(next++);
+            }
+        };
+    }
+
+    private List<Transaction> ordered(int from, int to, IntPredicate filter, int limit) {
+        List<Transaction> result = new ArrayList<>();
+        for (int position = from; position < to && result.size() < limit; position++) {
+            int row = amountOrderedRow(position);
+            if (filter.test(row)) {
+                result.add(materialize(row));
+            }
+        }
+        return result;
+    }
+
+    private int visit(int from, int to, IntPredicate filter, Consumer<? super Transaction> action) {
+        int visited = 0;
+        for (int position = from; position < to; position++) {
+            int row = amountOrderedRow(position);
+            if (filter.test(row)) {
+                action.accept(materialize(row));
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    private List<Transaction> inInsertionOrder(int from, int to, IntPredicate filter) {
+        int[] rows = new int[Math.max(0, to - from)];
+        int matched = 0;
+        for (int position = from; position < to; position++) {
+            int row = amountOrderedRow(position);
+            if (filter.test(row)) {
+                rows[matched++] = row;
+            }
+        }
+        Arrays.sort(rows, 0, matched);
+        List<Transaction> result = new ArrayList<>(matched);
+        for (int i = 0; i < matched; i++) {
+            result.add(materialize(rows[i]));
+        }
+        return result;
+    }
+
+    private IntPredicate statusIs(TransactionStatus status) {
+        int ordinal = status.ordinal();
+        return row -> status(row) == ordinal;
+    }
+
+    private IntPredicate senderIs(String sender) {
+        int code = codeOf(sender);
+        return row -> mapping.getInt(rowsOffset + row * ROW_BYTES + 4) == code;
+    }
+
+    private IntPredicate receiverIs(String receiver) {
+        int code = codeOf(receiver);
+        return row -> mapping.getInt(rowsOffset + row * ROW_BYTES + 8) == code;
+    }
+
+    /**
+     * First position in amount order whose amount is not NaN; NaN amounts
+     * sort first and are above no bound.
+     */
+    private int firstNumber() {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Double.isNaN(amount(amountOrderedRow(mid)))) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * First position in amount order whose amount is strictly below
+     * {@code amount}, with {@code <} semantics: none for a NaN bound, and
+     * neither zero below the other.
+     */
+    private int firstBelow(double amount) {
+        if (Double.isNaN(amount)) {
+            return count;
+        }
+        amount = TransactionOrder.upperBound(amount);
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Double.compare(amount(amountOrderedRow(mid)), amount) >= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * First position in amount order whose amount is not strictly above
+     * {@code amount}, with {@code >} semantics: none is above a NaN bound,
+     * and neither zero above the other.
+     */
+    private int firstNotAbove(double amount) {
+        if (Double.isNaN(amount)) {
+            return 0;
+        }
+        amount = TransactionOrder.lowerBound(amount);
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Double.compare(amount(amountOrderedRow(mid)), amount) > 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * First position in amount order that comes after {@code cursor}.
+     */
+    private int firstAfter(PageCursor cursor) {
+        if (cursor.isFirst()) {
+            return 0;
+        }
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int row = amountOrderedRow(mid);
+            if (cursor.follows(amount(row), id(row))) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    private int rowOf(int id) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int midId = mapping.getInt(idIndexOffset + mid * ID_ENTRY_BYTES);
+            if (midId < id) {
+                lo = mid + 1;
+            } else if (midId > id) {
+                hi = mid - 1;
+            } else {
+                return mapping.getInt(idIndexOffset + mid * ID_ENTRY_BYTES + 4);
+            }
+        }
+        return -1;
+    }
+
+    private int amountOrderedRow(int position) {
+        return mapping.getInt(amountIndexOffset + position * Integer.BYTES);
+    }
+
+    private int id(int row) {
+        return mapping.getInt(rowsOffset + row * ROW_BYTES);
+    }
+
+    private double amount(int row) {
+        return mapping.getDouble(rowsOffset + row * ROW_BYTES + 16);
+    }
+
+    private int status(int row) {
+        return mapping.get(rowsOffset + row * ROW_BYTES + 12);
+    }
+
+    private Transaction materialize(int row) {
+        int offset = rowsOffset + row * ROW_BYTES;
+        return new TransactionImpl(mapping.getInt(offset), STATUSES[mapping.get(offset + 12)],
+                string(mapping.getInt(offset + 4)), string(mapping.getInt(offset + 8)), mapping.getDouble(offset + 16));
+    }
+
+    private String string(int code) {
+        if (code == NULL_STRING) {
+            return null;
+        }
+        String value = strings[code];
+        if (value == null) {
+            int offsetsStart = stringsOffset;
+            int dataStart = offsetsStart + (stringCount + 1) * Integer.BYTES;
+            int start = mapping.getInt(offsetsStart + code * Integer.BYTES);
+            int end = mapping.getInt(offsetsStart + (code + 1) * Integer.BYTES);
+            byte[] bytes = new byte[end - start];
+            ByteBuffer data = mapping.duplicate();
+            data.position(dataStart + start);
+            data.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+            strings[code] = value;
+        }
+        return value;
+    }
+
+    private int codeOf(String party) {
+        if (party == null) {
+            return NULL_STRING;
+        }
+        Map<String, Integer> known = codes;
+        if (known == null) {
+            known = new HashMap<>(stringCount * 2);
+            for (int code = 0; code < stringCount; code++) {
+                known.put(string(code), code);
+            }
+            codes = known;
+        }
+        return known.getOrDefault(party, UNKNOWN_STRING);
+    }
+
+    private static void addCode(Map<String, Integer> codes, String party) {
+        if (party != null) {
+            codes.putIfAbsent(party, codes.size());
+        }
+    }
+
+    private static int codeOf(Map<String, Integer> codes, String party) {
+        return party == null ? NULL_STRING : codes.get(party);
+    }
+
+    private static int binarySearch(long[] idToRow, int id) {
+        int lo = 0;
+        int hi = idToRow.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int midId = (int) (idToRow[mid] >> 32);
+            if (midId < id) {
+                lo = mid + 1;
+            } else if (midId > id) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        throw new IllegalStateException("Ordered query returned an id missing from iteration: " + id);
+    }
+
+    private static final class SnapshotWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final CRC32 crc;
+
+        private SnapshotWriter(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+            this.crc = new CRC32();
+            channel.position(HEADER_BYTES);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                ensure(1);
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+            }
+        }
+
+        int finish() throws IOException {
+            drain();
+            return (int) crc.getValue();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            crc.update(buffer.array(), 0, buffer.limit());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
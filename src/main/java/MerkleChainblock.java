@@ -0,0 +1,459 @@
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * {@link Chainblock} decorator that keeps a SHA-256 Merkle tree over the
+ * transactions in insertion order, so the chain is tamper-evident. Each
+ * transaction owns one leaf for good: removing it clears the leaf, and ids
+ * added later take new positions. {@code add}, {@code removeTransactionById}
+ * and {@code changeTransactionStatus} rehash one leaf and the O(log n) nodes
+ * above it. Leaf hashes and the levels from {@value #FIRST_STORED_LEVEL} up are
+ * kept; the levels in between are recomputed from the stored leaf hashes when
+ * needed, which halves the memory at the cost of at most 15 extra hashes per
+ * update. {@link #verify()} rehashes every transaction and node on the
+ * fork-join pool and compares them with the stored hashes.
+ */
+public class MerkleChainblock implements Chainblock {
+    private static final int FIRST_STORED_LEVEL = 4;
+    private static final int SEQUENTIAL_LEVELS = 12;
+    private static final int HASH_LENGTH = MerkleHashing.HASH_LENGTH;
+
+    private final Chainblock delegate;
+    private final MessageDigest digest;
+    private final PositionMap positions;
+    private final byte[][] levels;
+    private Transaction[] leaves;
+    private int used;
+    private byte[] rootHash;
+
+    public MerkleChainblock(Chainblock delegate) {
+        this.delegate = delegate;
+        this.digest = MerkleHashing.sha256();
+        this.positions = new PositionMap();
+        this.levels = new byte[Integer.SIZE + 1][];
+        this.leaves = new Transaction[16];
+        List<Transaction> existing = new ArrayList<>();
+        delegate.forEach(existing::add);
+        appendAll(existing);
+    }
+
+    public synchronized byte[] getRootHash() {
+        return rootHash.clone();
+    }
+
+    public synchronized MerkleProof getInclusionProof(int id) {
+        int position = positionOf(id);
+        byte[][] siblings = new byte[height()][];
+        for (int level = 0; level < siblings.length; level++) {
+            siblings[level] = hash(level, (position >>> level) ^ 1);
+        }
+        return new MerkleProof(id, position, siblings);
+    }
+
+    /**
+     * Whether every transaction still hashes to its leaf and every stored node
+     * and the root still match their children.
+     */
+    public synchronized boolean verify() {
+        AtomicBoolean intact = new AtomicBoolean(true);
+        byte[] root = ForkJoinPool.commonPool().invoke(new Subtree(height(), 0, 0, intact));
+        return intact.get() && MessageDigest.isEqual(root, rootHash);
+    }
+
+    public int getCount() {
+        return delegate.getCount();
+    }
+
+    public void add(Transaction transaction) {
+        synchronized (this) {
+            if (!TransactionOrder.isNew(delegate, transaction)) {
+                return;
+            }
+            delegate.add(transaction);
+            place(transaction);
+            update(used - 1);
+        }
+    }
+
+    public void addAll(Collection<Transaction> transactions) {
+        synchronized (this) {
+            List<Transaction> added = TransactionOrder.newTransactions(delegate, transactions);
+            delegate.addAll(added);
+            appendAll(added);
+        }
+    }
+
+    public boolean contains(Transaction transaction) {
+        return delegate.contains(transaction);
+    }
+
+    public boolean contains(int id) {
+        return delegate.contains(id);
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        synchronized (this) {
+            int position = positionOf(id);
+            delegate.changeTransactionStatus(id, newStatus);
+            leaves[position] = delegate.getById(id);
+            update(position);
+        }
+    }
+
+    public void removeTransactionById(int id) {
+        synchronized (this) {
+            int position = positionOf(id);
+            delegate.removeTransactionById(id);
+            positions.remove(id);
+            leaves[position] = null;
+            update(position);
+        }
+    }
+
+    public Transaction getById(int id) {
+        return delegate.getById(id);
+    }
+
+    public Transaction tryGetById(int id) {
+        return delegate.tryGetById(id);
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        return delegate.getByTransactionStatus(status);
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        return delegate.getAllSendersWithTransactionStatus(status);
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return delegate.getAllReceiversWithTransactionStatus(status);
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        return delegate.getAllOrderedByAmountDescendingThenById();
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        return delegate.getBySenderOrderedByAmountDescending(sender);
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        return delegate.getByReceiverOrderedByAmountThenById(receiver);
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return delegate.getByTransactionStatusAndMaximumAmount(status, amount);
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return delegate.getBySenderAndMinimumAmountDescending(sender, amount);
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return delegate.getByReceiverAndAmountRange(receiver, lo, hi);
+    }
+
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        return delegate.getAllInAmountRange(lo, hi);
+    }
+
+    public int forEachByTransactionStatus(TransactionStatus status, Consumer<? super Transaction> action) {
+        return delegate.forEachByTransactionStatus(status, action);
+    }
+
+    public int forEachBySender(String sender, Consumer<? super Transaction> action) {
+        return delegate.forEachBySender(sender, action);
+    }
+
+    public int forEachByReceiver(String receiver, Consumer<? super Transaction> action) {
+        return delegate.forEachByReceiver(receiver, action);
+    }
+
+    public int forEachBySenderAndMinimumAmount(String sender, double amount, Consumer<? super Transaction> action) {
+        return delegate.forEachBySenderAndMinimumAmount(sender, amount, action);
+    }
+
+    public int forEachByReceiverAndAmountRange(String receiver, double lo, double hi,
+                                               Consumer<? super Transaction> action) {
+        return delegate.forEachByReceiverAndAmountRange(receiver, lo, hi, action);
+    }
+
+    public Iterable<Transaction> getTopOrderedByAmountDescendingThenById(int count) {
+        return delegate.getTopOrderedByAmountDescendingThenById(count);
+    }
+
+    public Iterable<Transaction> getTopBySenderOrderedByAmountDescending(String sender, int count) {
+        return delegate.getTopBySenderOrderedByAmountDescending(sender, count);
+    }
+
+    public Iterable<Transaction> getTopByTransactionStatus(TransactionStatus status, int count) {
+        return delegate.getTopByTransactionStatus(status, count);
+    }
+
+    public Iterable<Transaction> find(TransactionQuery query) {
+        return delegate.find(query);
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(PageCursor after, int pageSize) {
+        return delegate.getPageOrderedByAmountDescendingThenById(after, pageSize);
+    }
+
+    public Iterable<Transaction> getPageByReceiverOrderedByAmountThenById(String receiver, PageCursor after, int pageSize) {
+        return delegate.getPageByReceiverOrderedByAmountThenById(receiver, after, pageSize);
+    }
+
+    public Iterator<Transaction> iterator() {
+        return delegate.iterator();
+    }
+
+    private int positionOf(int id) {
+        int position = positions.get(id);
+        if (position < 0) {
+            throw new IllegalArgumentException();
+        }
+        return position;
+    }
+
+    private void place(Transaction transaction) {
+        if (used == leaves.length) {
+            leaves = Arrays.copyOf(leaves, leaves.length * 2);
+        }
+        leaves[used] = transaction;
+        positions.put(transaction.getId(), used);
+        used++;
+    }
+
+    /**
+     * Places the new leaves and hashes everything they touch in one parallel
+     * pass instead of walking the path of each of them.
+     */
+    private void appendAll(List<Transaction> transactions) {
+        int from = used;
+        for (Transaction transaction : transactions) {
+            place(transaction);
+        }
+        ensureStorage();
+        rootHash = ForkJoinPool.commonPool().invoke(new Subtree(height(), 0, from, null));
+    }
+
+    private void update(int position) {
+        ensureStorage();
+        store(0, position, MerkleHashing.leaf(digest, leaves[position]));
+        int height = height();
+        for (int level = FIRST_STORED_LEVEL; level <= height; level++) {
+            long index = position >>> level;
+            store(level, index, MerkleHashing.node(digest, hash(level - 1, 2 * index), hash(level - 1, 2 * index + 1)));
+        }
+        rootHash = hash(height, 0);
+    }
+
+    private int height() {
+        return used <= 1 ? 0 : Integer.SIZE - Integer.numberOfLeadingZeros(used - 1);
+    }
+
+    private static boolean isStored(int level) {
+        return level == 0 || level >= FIRST_STORED_LEVEL;
+    }
+
+    /**
+     * Hash of the node at {@code level} and {@code index} as of the last
+     * update; a node past the last position hashes as an empty subtree.
+     */
+    private byte[] hash(int level, long index) {
+        if (index << level >= used) {
+            return MerkleHashing.empty(level);
+        }
+        if (isStored(level)) {
+            return stored(level, index);
+        }
+        return MerkleHashing.node(digest, hash(level - 1, 2 * index), hash(level - 1, 2 * index + 1));
+    }
+
+    /**
+     * Rehashes the subtree from the transactions. Stored nodes that lie
+     * entirely before {@code from} are trusted as they are. With
+     * {@code intact} the stored hashes are compared with the new ones,
+     * otherwise they are overwritten.
+     */
+    private byte[] recompute(MessageDigest digest, int level, long index, int from, AtomicBoolean intact) {
+        byte[] known = known(level, index, from);
+        if (known != null) {
+            return known;
+        }
+        byte[] hash = level == 0
+                ? MerkleHashing.leaf(digest, leaves[(int) index])
+                : MerkleHashing.node(digest, recompute(digest, level - 1, 2 * index, from, intact),
+                        recompute(digest, level - 1, 2 * index + 1, from, intact));
+        return settle(level, index, hash, intact);
+    }
+
+    private byte[] known(int level, long index, int from) {
+        long first = index << level;
+        if (first >= used) {
+            return MerkleHashing.empty(level);
+        }
+        if (isStored(level) && first + (1L << level) <= from) {
+            return stored(level, index);
+        }
+        return null;
+    }
+
+    private byte[] settle(int level, long index, byte[] hash, AtomicBoolean intact) {
+        if (isStored(level)) {
+            if (intact == null) {
+                store(level, index, hash);
+            } else if (!matches(level, index, hash)) {
+                intact.set(false);
+            }
+        }
+        return hash;
+    }
+
+    private void ensureStorage() {
+        int height = height();
+        for (int level = 0; level <= height; level = level == 0 ? FIRST_STORED_LEVEL : level + 1) {
+            int length = (((used - 1) >>> level) + 1) * HASH_LENGTH;
+            byte[] hashes = levels[level];
+            if (hashes == null) {
+                levels[level] = new byte[Math.max(length, 16 * HASH_LENGTH)];
+            } else if (hashes.length < length) {
+                levels[level] = Arrays.copyOf(hashes, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(length, 2L * hashes.length)));
+            }
+        }
+    }
+
+    private byte[] stored(int level, long index) {
+        int offset = (int) index * HASH_LENGTH;
+        return Arrays.copyOfRange(levels[level], offset, offset + HASH_LENGTH);
+    }
+
+    private void store(int level, long index, byte[] hash) {
+        System.arraycopy(hash, 0, levels[level], (int) index * HASH_LENGTH, HASH_LENGTH);
+    }
+
+    private boolean matches(int level, long index, byte[] hash) {
+        byte[] hashes = levels[level];
+        int offset = (int) index * HASH_LENGTH;
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            if (hashes[offset + i] != hash[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final class Subtree extends RecursiveTask<byte[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final int level;
+        private final long index;
+        private final int from;
+        private final AtomicBoolean intact;
+
+        private Subtree(int level, long index, int from, AtomicBoolean intact) {
+            this.level = level;
+            this.index = index;
+            this.from = from;
+            this.intact = intact;
+        }
+
+        @Override
+        protected byte[] compute() {
+            if (level <= SEQUENTIAL_LEVELS) {
+                return recompute(MerkleHashing.sha256(), level, index, from, intact);
+            }
+            byte[] known = known(level, index, from);
+            if (known != null) {
+                return known;
+            }
+            Subtree left = new Subtree(level - 1, 2 * index, from, intact);
+            left.fork();
+            byte[] right = new Subtree(level - 1, 2 * index + 1, from, intact).compute();
+            byte[] hash = MerkleHashing.node(MerkleHashing.sha256(), left.join(), right);
+            return settle(level, index, hash, intact);
+        }
+    }
+
+    /**
+     * Open-addressing map from transaction id to leaf position, with linear
+     * probing and backward-shift deletion so removals leave no tombstones.
+     */
+    private static final class PositionMap {
+        private int[] ids = new int[16];
+        private int[] positions = new int[16];
+        private int size;
+
+        private int get(int id) {
+            int slot = find(id);
+            return slot < 0 ? -1 : positions[slot] - 1;
+        }
+
+        private void put(int id, int position) {
+            if (2 * (size + 1) > ids.length) {
+                grow();
+            }
+            int mask = ids.length - 1;
+            int slot = mix(id) & mask;
+            while (positions[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            ids[slot] = id;
+            positions[slot] = position + 1;
+            size++;
+        }
+
+        private int remove(int id) {
+            int slot = find(id);
+            if (slot < 0) {
+                return -1;
+            }
+            int position = positions[slot] - 1;
+            int mask = ids.length - 1;
+            int hole = slot;
+            for (int next = (hole + 1) & mask; positions[next] != 0; next = (next + 1) & mask) {
+                int home = mix(ids[next]) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    ids[hole] = ids[next];
+                    positions[hole] = positions[next];
+                    hole = next;
+                }
+            }
+            positions[hole] = 0;
+            size--;
+            return position;
+        }
+
+        private int find(int id) {
+            int mask = ids.length - 1;
+            for (int slot = mix(id) & mask; positions[slot] != 0; slot = (slot + 1) & mask) {
+                if (ids[slot] == id) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private void grow() {
+            int[] oldIds = ids;
+            int[] oldPositions = positions;
+            ids = new int[oldIds.length * 2];
+            positions = new int[oldIds.length * 2];
+            size = 0;
+            for (int slot = 0; slot < oldIds.length; slot++) {
+                if (oldPositions[slot] != 0) {
+                    put(oldIds[slot], oldPositions[slot] - 1);
+                }
+            }
+        }
+
+        private static int mix(int id) {
+            int h = id * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
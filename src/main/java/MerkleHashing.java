@@ -0,0 +1,80 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 hashing shared by {@link MerkleChainblock} and {@link MerkleProof}.
+ * Leaves and inner nodes are hashed with different prefixes so that one can
+ * never be passed off as the other. A removed transaction leaves an all-zero
+ * leaf, and a subtree with no positions at all hashes to the matching
+ * {@link #empty(int) empty} value.
+ */
+final class MerkleHashing {
+    static final int HASH_LENGTH = 32;
+
+    private static final byte LEAF = 0;
+    private static final byte NODE = 1;
+    private static final byte[][] EMPTY = new byte[Integer.SIZE + 1][];
+
+    static {
+        MessageDigest digest = sha256();
+        EMPTY[0] = new byte[HASH_LENGTH];
+        for (int level = 1; level < EMPTY.length; level++) {
+            EMPTY[level] = node(digest, EMPTY[level - 1], EMPTY[level - 1]);
+        }
+    }
+
+    private MerkleHashing() {
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static byte[] empty(int level) {
+        return EMPTY[level];
+    }
+
+    static byte[] leaf(MessageDigest digest, Transaction transaction) {
+        if (transaction == null) {
+            return EMPTY[0];
+        }
+        digest.update(LEAF);
+        updateInt(digest, transaction.getId());
+        updateInt(digest, transaction.getStatus() == null ? -1 : transaction.getStatus().ordinal());
+        updateString(digest, transaction.getFrom());
+        updateString(digest, transaction.getTo());
+        long amount = Double.doubleToLongBits(transaction.getAmount());
+        updateInt(digest, (int) (amount >>> 32));
+        updateInt(digest, (int) amount);
+        return digest.digest();
+    }
+
+    static byte[] node(MessageDigest digest, byte[] left, byte[] right) {
+        digest.update(NODE);
+        digest.update(left);
+        digest.update(right);
+        return digest.digest();
+    }
+
+    private static void updateInt(MessageDigest digest, int value) {
+        digest.update((byte) (value >>> 24));
+        digest.update((byte) (value >>> 16));
+        digest.update((byte) (value >>> 8));
+        digest.update((byte) value);
+    }
+
+    private static void updateString(MessageDigest digest, String value) {
+        if (value == null) {
+            updateInt(digest, -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        updateInt(digest, bytes.length);
+        digest.update(bytes);
+    }
+}
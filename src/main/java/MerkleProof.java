@@ -0,0 +1,70 @@
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Inclusion proof for one transaction of a {@link MerkleChainblock}: its leaf
+ * position in insertion order and the sibling hashes from the leaf up to the
+ * root. Checking it needs only the transaction and a trusted root hash.
+ */
+public final class MerkleProof {
+    private final int id;
+    private final int position;
+    private final byte[][] siblings;
+
+    MerkleProof(int id, int position, byte[][] siblings) {
+        this.id = id;
+        this.position = position;
+        this.siblings = siblings;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public int getHeight() {
+        return siblings.length;
+    }
+
+    public byte[] getSibling(int level) {
+        return siblings[level].clone();
+    }
+
+    /**
+     * Whether {@code transaction}, with its current field values, is the leaf
+     * at this position of the tree whose root is {@code rootHash}.
+     */
+    public boolean verify(Transaction transaction, byte[] rootHash) {
+        if (transaction.getId() != id) {
+            return false;
+        }
+        MessageDigest digest = MerkleHashing.sha256();
+        byte[] hash = MerkleHashing.leaf(digest, transaction);
+        for (int level = 0; level < siblings.length; level++) {
+            hash = (position >>> level & 1) == 0
+                    ? MerkleHashing.node(digest, hash, siblings[level])
+                    : MerkleHashing.node(digest, siblings[level], hash);
+        }
+        return MessageDigest.isEqual(hash, rootHash);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MerkleProof)) {
+            return false;
+        }
+        MerkleProof that = (MerkleProof) o;
+        return id == that.id && position == that.position && Arrays.deepEquals(siblings, that.siblings);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * id + position) + Arrays.deepHashCode(siblings);
+    }
+}
@@ -0,0 +1,305 @@
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * {@link Chainblock} decorator that publishes every successful {@code add},
+ * {@code removeTransactionById} and {@code changeTransactionStatus} to its
+ * subscriptions. Each subscription has a bounded ring buffer drained in
+ * batches by its own delivery thread. Writers only offer to the buffer: when
+ * a slow listener lets it fill up, further events for that subscription are
+ * dropped and reported through {@link ChainblockListener#onOverflow} instead
+ * of blocking the write path. An exception thrown by a listener costs it only
+ * that call: it goes to the delivery thread's uncaught exception handler and
+ * delivery carries on.
+ */
+public class ObservableChainblock implements Chainblock {
+    private static final int DEFAULT_CAPACITY = 8192;
+    private static final int DEFAULT_BATCH_SIZE = 256;
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private final Chainblock delegate;
+    private final List<Subscription> subscriptions;
+
+    public ObservableChainblock(Chainblock delegate) {
+        this.delegate = delegate;
+        this.subscriptions = new CopyOnWriteArrayList<>();
+    }
+
+    public Subscription subscribe(ChainblockListener listener) {
+        return subscribe(listener, event -> true, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Starts delivering the events accepted by {@code filter}, at most
+     * {@code batchSize} per {@link ChainblockListener#onEvents} call, holding
+     * at most {@code capacity} undelivered events. See
+     * {@link ChainblockEvent#withStatus} and {@link ChainblockEvent#withParty}.
+     */
+    public Subscription subscribe(ChainblockListener listener, Predicate<ChainblockEvent> filter,
+                                  int capacity, int batchSize) {
+        if (capacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        Subscription subscription = new Subscription(listener, filter, capacity, batchSize);
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    public int getCount() {
+        return delegate.getCount();
+    }
+
+    public void add(Transaction transaction) {
+        synchronized (this) {
+            if (!TransactionOrder.isNew(delegate, transaction)) {
+                return;
+            }
+            delegate.add(transaction);
+            publish(new ChainblockEvent(ChainblockEvent.Type.ADDED, transaction, null, transaction.getStatus()));
+        }
+    }
+
+    public void addAll(Collection<Transaction> transactions) {
+        synchronized (this) {
+            List<Transaction> added = TransactionOrder.newTransactions(delegate, transactions);
+            delegate.addAll(added);
+            for (Transaction transaction : added) {
+                publish(new ChainblockEvent(ChainblockEvent.Type.ADDED, transaction, null, transaction.getStatus()));
+            }
+        }
+    }
+
+    public boolean contains(Transaction transaction) {
+        return delegate.contains(transaction);
+    }
+
+    public boolean contains(int id) {
+        return delegate.contains(id);
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        synchronized (this) {
+            Transaction transaction = delegate.getById(id);
+            TransactionStatus oldStatus = transaction.getStatus();
+            delegate.changeTransactionStatus(id, newStatus);
+            publish(new ChainblockEvent(ChainblockEvent.Type.STATUS_CHANGED, transaction, oldStatus, newStatus));
+        }
+    }
+
+    public void removeTransactionById(int id) {
+        synchronized (this) {
+            Transaction transaction = delegate.getById(id);
+            TransactionStatus status = transaction.getStatus();
+            delegate.removeTransactionById(id);
+            publish(new ChainblockEvent(ChainblockEvent.Type.REMOVED, transaction, status, null));
+        }
+    }
+
+    public Transaction getById(int id) {
+        return delegate.getById(id);
+    }
+
+    public Transaction tryGetById(int id) {
+        return delegate.tryGetById(id);
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        return delegate.getByTransactionStatus(status);
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        return delegate.getAllSendersWithTransactionStatus(status);
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return delegate.getAllReceiversWithTransactionStatus(status);
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        return delegate.getAllOrderedByAmountDescendingThenById();
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        return delegate.getBySenderOrderedByAmountDescending(sender);
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        return delegate.getByReceiverOrderedByAmountThenById(receiver);
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return delegate.getByTransactionStatusAndMaximumAmount(status, amount);
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return delegate.getBySenderAndMinimumAmountDescending(sender, amount);
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return delegate.getByReceiverAndAmountRange(receiver, lo, hi);
+    }
+
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        return delegate.getAllInAmountRange(lo, hi);
+    }
+
+    public int forEachByTransactionStatus(TransactionStatus status, Consumer<? super Transaction> action) {
+        return delegate.forEachByTransactionStatus(status, action);
+    }
+
+    public int forEachBySender(String sender, Consumer<? super Transaction> action) {
+        return delegate.forEachBySender(sender, action);
+    }
+
+    public int forEachByReceiver(String receiver, Consumer<? super Transaction> action) {
+        return delegate.forEachByReceiver(receiver, action);
+    }
+
+    public int forEachBySenderAndMinimumAmount(String sender, double amount, Consumer<? super Transaction> action) {
+        return delegate.forEachBySenderAndMinimumAmount(sender, amount, action);
+    }
+
+    public int forEachByReceiverAndAmountRange(String receiver, double lo, double hi,
+                                               Consumer<? super Transaction> action) {
+        return delegate.forEachByReceiverAndAmountRange(receiver, lo, hi, action);
+    }
+
+    public Iterable<Transaction> getTopOrderedByAmountDescendingThenById(int count) {
+        return delegate.getTopOrderedByAmountDescendingThenById(count);
+    }
+
+    public Iterable<Transaction> getTopBySenderOrderedByAmountDescending(String sender, int count) {
+        return delegate.getTopBySenderOrderedByAmountDescending(sender, count);
+    }
+
+    public Iterable<Transaction> getTopByTransactionStatus(TransactionStatus status, int count) {
+        return delegate.getTopByTransactionStatus(status, count);
+    }
+
+    public Iterable<Transaction> find(TransactionQuery query) {
+        return delegate.find(query);
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(PageCursor after, int pageSize) {
+        return delegate.getPageOrderedByAmountDescendingThenById(after, pageSize);
+    }
+
+    public Iterable<Transaction> getPageByReceiverOrderedByAmountThenById(String receiver, PageCursor after, int pageSize) {
+        return delegate.getPageByReceiverOrderedByAmountThenById(receiver, after, pageSize);
+    }
+
+    public Iterator<Transaction> iterator() {
+        return delegate.iterator();
+    }
+
+    private void publish(ChainblockEvent event) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    public final class Subscription implements Closeable {
+        private static final long POLL_MILLIS = 50;
+
+        private final ChainblockListener listener;
+        private final Predicate<ChainblockEvent> filter;
+        private final ArrayBlockingQueue<ChainblockEvent> buffer;
+        private final int batchSize;
+        private final AtomicLong unreportedDrops;
+        private final AtomicLong droppedEvents;
+        private final Thread thread;
+        private volatile boolean closed;
+
+        private Subscription(ChainblockListener listener, Predicate<ChainblockEvent> filter, int capacity, int batchSize) {
+            this.listener = listener;
+            this.filter = filter;
+            this.buffer = new ArrayBlockingQueue<>(capacity);
+            this.batchSize = batchSize;
+            this.unreportedDrops = new AtomicLong();
+            this.droppedEvents = new AtomicLong();
+            this.thread = new Thread(this::deliver, "chainblock-subscription-" + THREAD_NUMBER.incrementAndGet());
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Events discarded because the buffer was full, over the whole
+         * lifetime of the subscription.
+         */
+        public long getDroppedEvents() {
+            return droppedEvents.get();
+        }
+
+        /**
+         * Stops accepting events, delivers the ones already buffered and waits
+         * for the delivery thread to finish.
+         */
+        public void close() {
+            closed = true;
+            subscriptions.remove(this);
+            if (Thread.currentThread() == thread) {
+                return;
+            }
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void offer(ChainblockEvent event) {
+            if (closed || !filter.test(event)) {
+                return;
+            }
+            if (!buffer.offer(event)) {
+                unreportedDrops.incrementAndGet();
+                droppedEvents.incrementAndGet();
+            }
+        }
+
+        private void deliver() {
+            while (true) {
+                ChainblockEvent first;
+                try {
+                    first = buffer.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (first == null) {
+                    if (closed) {
+                        return;
+                    }
+                    continue;
+                }
+                long dropped = unreportedDrops.getAndSet(0);
+                if (dropped > 0) {
+                    notifyListener(() -> listener.onOverflow(dropped));
+                }
+                List<ChainblockEvent> batch = new ArrayList<>(Math.min(batchSize, buffer.size() + 1));
+                batch.add(first);
+                buffer.drainTo(batch, batchSize - 1);
+                notifyListener(() -> listener.onEvents(Collections.unmodifiableList(batch)));
+            }
+        }
+
+        /**
+         * Hands an exception thrown by the listener to the delivery thread's
+         * uncaught exception handler and keeps delivering, so one failing
+         * batch does not silently end the subscription.
+         */
+        private void notifyListener(Runnable call) {
+            try {
+                call.run();
+            } catch (RuntimeException e) {
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+}
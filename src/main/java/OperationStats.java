@@ -0,0 +1,139 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free counters and a latency histogram for one chainblock operation.
+ * Latencies fall into power-of-two nanosecond buckets, so recording is a
+ * couple of atomic increments with no allocation, and percentiles are reported
+ * as the upper bound of the bucket that holds them.
+ */
+public class OperationStats implements OperationStatsMXBean {
+    private static final int BUCKETS = Long.SIZE;
+
+    private final String operation;
+    private final LongAdder calls;
+    private final LongAdder illegalArguments;
+    private final LongAdder sizedResults;
+    private final LongAdder resultSizes;
+    private final LongAdder latencyNanos;
+    private final AtomicLong maxLatencyNanos;
+    private final AtomicLongArray latencyBuckets;
+
+    OperationStats(String operation) {
+        this.operation = operation;
+        this.calls = new LongAdder();
+        this.illegalArguments = new LongAdder();
+        this.sizedResults = new LongAdder();
+        this.resultSizes = new LongAdder();
+        this.latencyNanos = new LongAdder();
+        this.maxLatencyNanos = new AtomicLong();
+        this.latencyBuckets = new AtomicLongArray(BUCKETS);
+    }
+
+    void record(long nanos) {
+        calls.increment();
+        latencyNanos.add(nanos);
+        latencyBuckets.incrementAndGet(bucketOf(nanos));
+        long max;
+        while (nanos > (max = maxLatencyNanos.get()) && !maxLatencyNanos.compareAndSet(max, nanos)) {
+            // lost the race to another recorder, re-read the maximum
+        }
+    }
+
+    void recordResultSize(int size) {
+        sizedResults.increment();
+        resultSizes.add(size);
+    }
+
+    void recordIllegalArgument() {
+        illegalArguments.increment();
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getIllegalArgumentExceptions() {
+        return illegalArguments.sum();
+    }
+
+    public double getIllegalArgumentExceptionRate() {
+        long total = calls.sum();
+        return total == 0 ? 0 : (double) illegalArguments.sum() / total;
+    }
+
+    public double getMeanResultSize() {
+        long sized = sizedResults.sum();
+        return sized == 0 ? 0 : (double) resultSizes.sum() / sized;
+    }
+
+    public double getMeanLatencyNanos() {
+        long total = calls.sum();
+        return total == 0 ? 0 : (double) latencyNanos.sum() / total;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    public long getLatencyPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException();
+        }
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts[bucket] = latencyBuckets.get(bucket);
+            total += counts[bucket];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(bucket), maxLatencyNanos.get());
+            }
+        }
+        return maxLatencyNanos.get();
+    }
+
+    public long getP50LatencyNanos() {
+        return getLatencyPercentileNanos(50);
+    }
+
+    public long getP99LatencyNanos() {
+        return getLatencyPercentileNanos(99);
+    }
+
+    public long getP999LatencyNanos() {
+        return getLatencyPercentileNanos(99.9);
+    }
+
+    public void reset() {
+        calls.reset();
+        illegalArguments.reset();
+        sizedResults.reset();
+        resultSizes.reset();
+        latencyNanos.reset();
+        maxLatencyNanos.set(0);
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            latencyBuckets.set(bucket, 0);
+        }
+    }
+
+    private static int bucketOf(long nanos) {
+        return nanos <= 0 ? 0 : BUCKETS - Long.numberOfLeadingZeros(nanos) - 1;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        return bucket >= BUCKETS - 2 ? Long.MAX_VALUE : (2L << bucket) - 1;
+    }
+}
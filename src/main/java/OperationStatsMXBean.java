@@ -0,0 +1,26 @@
+public interface OperationStatsMXBean {
+
+    String getOperation();
+
+    long getCalls();
+
+    long getIllegalArgumentExceptions();
+
+    double getIllegalArgumentExceptionRate();
+
+    double getMeanResultSize();
+
+    double getMeanLatencyNanos();
+
+    long getMaxLatencyNanos();
+
+    long getLatencyPercentileNanos(double percentile);
+
+    long getP50LatencyNanos();
+
+    long getP99LatencyNanos();
+
+    long getP999LatencyNanos();
+
+    void reset();
+}
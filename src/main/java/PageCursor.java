@@ -0,0 +1,61 @@
+/**
+ * Position in amount-descending-then-id order for keyset pagination: a page
+ * starts right after the (amount, id) key of the last row of the previous
+ * page. The key does not have to belong to a transaction that still exists,
+ * so transactions added or removed between pages never shift later pages.
+ */
+public final class PageCursor {
+    public static final PageCursor FIRST = new PageCursor(Double.NaN, 0, true);
+
+    private final double amount;
+    private final int id;
+    private final boolean first;
+
+    private PageCursor(double amount, int id, boolean first) {
+        this.amount = amount;
+        this.id = id;
+        this.first = first;
+    }
+
+    public static PageCursor after(double amount, int id) {
+        return new PageCursor(amount, id, false);
+    }
+
+    public static PageCursor after(Transaction last) {
+        return after(last.getAmount(), last.getId());
+    }
+
+    public boolean isFirst() {
+        return first;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Whether {@code transaction} comes after this cursor, compared field by
+     * field so that scanning for a page allocates no probe per row.
+     */
+    boolean precedes(Transaction transaction) {
+        return first || follows(transaction.getAmount(), transaction.getId());
+    }
+
+    boolean follows(double amount, int id) {
+        int byAmount = Double.compare(amount, this.amount);
+        return byAmount < 0 || byAmount == 0 && id > this.id;
+    }
+
+    Transaction probe() {
+        return TransactionOrder.amountProbe(amount, id);
+    }
+
+    @Override
+    public String toString() {
+        return first ? "FIRST" : "after(" + amount + ", " + id + ")";
+    }
+}
@@ -0,0 +1,195 @@
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Immutable sorted set implemented as a treap. {@link #insert} and
+ * {@link #remove} return a new tree that shares every node off the changed
+ * path with the old one, so an update costs O(log n) expected time and space
+ * and every earlier version stays valid and safe to read from any thread.
+ */
+final class PersistentTree<T> implements Iterable<T> {
+    private final Comparator<? super T> comparator;
+    private final Node<T> root;
+
+    private PersistentTree(Comparator<? super T> comparator, Node<T> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    static <T> PersistentTree<T> empty(Comparator<? super T> comparator) {
+        return new PersistentTree<>(comparator, null);
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * The element comparing equal to {@code probe}, or null.
+     */
+    T find(T probe) {
+        Node<T> node = root;
+        while (node != null) {
+            int cmp = comparator.compare(probe, node.value);
+            if (cmp == 0) {
+                return node.value;
+            }
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Adds {@code value}, which must not compare equal to an element already
+     * in the tree.
+     */
+    PersistentTree<T> insert(T value) {
+        Node<T>[] parts = split(root, value, false);
+        Node<T> single = new Node<>(value, ThreadLocalRandom.current().nextInt(), null, null);
+        return new PersistentTree<>(comparator, merge(merge(parts[0], single), parts[1]));
+    }
+
+    /**
+     * Removes the element comparing equal to {@code value}, if any.
+     */
+    PersistentTree<T> remove(T value) {
+        Node<T>[] below = split(root, value, false);
+        Node<T>[] above = split(below[1], value, true);
+        if (above[0] == null) {
+            return this;
+        }
+        return new PersistentTree<>(comparator, merge(below[0], above[1]));
+    }
+
+    public Iterator<T> iterator() {
+        return new RangeIterator(null, false, null, false);
+    }
+
+    /**
+     * Elements between the bounds in tree order; a null bound is open.
+     */
+    Iterable<T> range(T lower, boolean lowerInclusive, T upper, boolean upperInclusive) {
+        return () -> new RangeIterator(lower, lowerInclusive, upper, upperInclusive);
+    }
+
+    /**
+     * Splits into elements before {@code key} and the rest; with
+     * {@code inclusive} an element equal to {@code key} goes left.
+     */
+    private Node<T>[] split(Node<T> node, T key, boolean inclusive) {
+        if (node == null) {
+            @SuppressWarnings("unchecked")
+            Node<T>[] parts = (Node<T>[]) new Node<?>[2];
+            return parts;
+        }
+        int cmp = comparator.compare(node.value, key);
+        if (cmp < 0 || (inclusive && cmp == 0)) {
+            Node<T>[] parts = split(node.right, key, inclusive);
+            parts[0] = node.with(node.left, parts[0]);
+            return parts;
+        }
+        Node<T>[] parts = split(node.left, key, inclusive);
+        parts[1] = node.with(parts[1], node.right);
+        return parts;
+    }
+
+    private static <T> Node<T> merge(Node<T> left, Node<T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority >= right.priority) {
+            return left.with(left.left, merge(left.right, right));
+        }
+        return right.with(merge(left, right.left), right.right);
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node<T> {
+        private final T value;
+        private final int priority;
+        private final int size;
+        private final Node<T> left;
+        private final Node<T> right;
+
+        private Node(T value, int priority, Node<T> left, Node<T> right) {
+            this.value = value;
+            this.priority = priority;
+            this.size = 1 + size(left) + size(right);
+            this.left = left;
+            this.right = right;
+        }
+
+        private Node<T> with(Node<T> left, Node<T> right) {
+            return left == this.left && right == this.right ? this : new Node<>(value, priority, left, right);
+        }
+    }
+
+    private final class RangeIterator implements Iterator<T> {
+        private final Deque<Node<T>> path = new ArrayDeque<>();
+        private final T upper;
+        private final boolean upperInclusive;
+        private T next;
+
+        private RangeIterator(T lower, boolean lowerInclusive, T upper, boolean upperInclusive) {
+            this.upper = upper;
+            this.upperInclusive = upperInclusive;
+            Node<T> node = root;
+            while (node != null) {
+                int cmp = lower == null ? 1 : comparator.compare(node.value, lower);
+                if (cmp > 0 || (lowerInclusive && cmp == 0)) {
+                    path.push(node);
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+            advance();
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            T result = next;
+            advance();
+            return result;
+        }
+
+        private void advance() {
+            next = null;
+            if (path.isEmpty()) {
+                return;
+            }
+            Node<T> node = path.pop();
+            if (upper != null) {
+                int cmp = comparator.compare(node.value, upper);
+                if (cmp > 0 || (cmp == 0 && !upperInclusive)) {
+                    path.clear();
+                    return;
+                }
+            }
+            next = node.value;
+            for (Node<T> child = node.right; child != null; child = child.left) {
+                path.push(child);
+            }
+        }
+    }
+}
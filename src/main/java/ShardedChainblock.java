@@ -0,0 +1,412 @@
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * {@link Chainblock} partitioned over a fixed number of shards by id hash.
+ * Point operations lock and touch one shard. Queries run on all shards in
+ * parallel, each under its own read lock, and the shard results, which are
+ * already in query order, are combined with a k-way merge. A global sequence
+ * number per transaction restores insertion order across shards; a batch
+ * reserves its sequences before it takes any shard lock, so a concurrent add
+ * can reach a shard ahead of batch rows with lower sequences, and each shard
+ * result is therefore sorted by sequence before the merge. Shards are
+ * read one after another in no common critical section, so a query that runs
+ * during writes may see some shards before and others after a write.
+ */
+public class ShardedChainblock implements Chainblock {
+    private static final Comparator<Run> BY_AMOUNT =
+            (a, b) -> TransactionOrder.AMOUNT_DESCENDING_THEN_ID.compare(a.head(), b.head());
+    private static final Comparator<Run> BY_SEQUENCE = Comparator.comparingLong(Run::headSequence);
+
+    private final Shard[] shards;
+    private final AtomicLong nextSequence;
+
+    public ShardedChainblock(int shardCount) {
+        this(shardCount, ChainblockImpl::new);
+    }
+
+    public ShardedChainblock(int shardCount, Supplier<Chainblock> shardFactory) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            this.shards[i] = new Shard(shardFactory.get());
+        }
+        this.nextSequence = new AtomicLong();
+    }
+
+    public int getCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            shard.lock.readLock().lock();
+            try {
+                count += shard.chainblock.getCount();
+            } finally {
+                shard.lock.readLock().unlock();
+            }
+        }
+        return count;
+    }
+
+    public void add(Transaction transaction) {
+        Shard shard = shardOf(transaction.getId());
+        shard.lock.writeLock().lock();
+        try {
+            if (!shard.sequences.containsKey(transaction.getId())) {
+                shard.chainblock.add(transaction);
+                shard.sequences.put(transaction.getId(), nextSequence.getAndIncrement());
+            }
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    public void addAll(Collection<Transaction> transactions) {
+        long first = nextSequence.getAndAdd(transactions.size());
+        List<List<Transaction>> groups = new ArrayList<>(shards.length);
+        List<List<Long>> sequences = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            groups.add(new ArrayList<>());
+            sequences.add(new ArrayList<>());
+        }
+        long sequence = first;
+        for (Transaction transaction : transactions) {
+            int index = indexOf(transaction.getId());
+            groups.get(index).add(transaction);
+            sequences.get(index).add(sequence++);
+        }
+        IntStream.range(0, shards.length).parallel()
+                .forEach(i -> shards[i].addAll(groups.get(i), sequences.get(i)));
+    }
+
+    public boolean contains(Transaction transaction) {
+        return contains(transaction.getId());
+    }
+
+    public boolean contains(int id) {
+        Shard shard = shardOf(id);
+        shard.lock.readLock().lock();
+        try {
+            return shard.chainblock.contains(id);
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        Shard shard = shardOf(id);
+        shard.lock.writeLock().lock();
+        try {
+            shard.chainblock.changeTransactionStatus(id, newStatus);
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    public void removeTransactionById(int id) {
+        Shard shard = shardOf(id);
+        shard.lock.writeLock().lock();
+        try {
+            shard.chainblock.removeTransactionById(id);
+            shard.sequences.remove(id);
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    public Transaction getById(int id) {
+        Shard shard = shardOf(id);
+        shard.lock.readLock().lock();
+        try {
+            return shard.chainblock.getById(id);
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    public Transaction tryGetById(int id) {
+        Shard shard = shardOf(id);
+        shard.lock.readLock().lock();
+        try {
+            return shard.chainblock.tryGetById(id);
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        return nonEmpty(byStatus(status));
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        return mapped(getByTransactionStatus(status), Transaction::getFrom);
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return mapped(getByTransactionStatus(status), Transaction::getTo);
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        return merged(results(Chainblock::getAllOrderedByAmountDescendingThenById), BY_AMOUNT, Integer.MAX_VALUE);
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        return nonEmpty(bySender(sender));
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        return nonEmpty(byReceiver(receiver));
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return merged(results(c -> c.getByTransactionStatusAndMaximumAmount(status, amount)), BY_SEQUENCE,
+                Integer.MAX_VALUE);
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return nonEmpty(bySenderAbove(sender, amount));
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return nonEmpty(byReceiverBetween(receiver, lo, hi));
+    }
+
+    public int forEachByTransactionStatus(TransactionStatus status, Consumer<? super Transaction> action) {
+        return TransactionOrder.forEach(byStatus(status), action);
+    }
+
+    public int forEachBySender(String sender, Consumer<? super Transaction> action) {
+        return TransactionOrder.forEach(bySender(sender), action);
+    }
+
+    public int forEachByReceiver(String receiver, Consumer<? super Transaction> action) {
+        return TransactionOrder.forEach(byReceiver(receiver), action);
+    }
+
+    public int forEachBySenderAndMinimumAmount(String sender, double amount, Consumer<? super Transaction> action) {
+        return TransactionOrder.forEach(bySenderAbove(sender, amount), action);
+    }
+
+    public int forEachByReceiverAndAmountRange(String receiver, double lo, double hi,
+                                               Consumer<? super Transaction> action) {
+        return TransactionOrder.forEach(byReceiverBetween(receiver, lo, hi), action);
+    }
+
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        return merged(results(c -> c.getAllInAmountRange(lo, hi)), BY_SEQUENCE, Integer.MAX_VALUE);
+    }
+
+    public Iterable<Transaction> getTopOrderedByAmountDescendingThenById(int count) {
+        TransactionOrder.checkCount(count);
+        return merged(results(c -> c.getTopOrderedByAmountDescendingThenById(count)), BY_AMOUNT, count);
+    }
+
+    public Iterable<Transaction> getTopBySenderOrderedByAmountDescending(String sender, int count) {
+        TransactionOrder.checkCount(count);
+        TransactionQuery query = TransactionQuery.builder().sender(sender).limit(count).build();
+        return nonEmpty(merged(results(c -> c.find(query)), BY_AMOUNT, count));
+    }
+
+    public Iterable<Transaction> getTopByTransactionStatus(TransactionStatus status, int count) {
+        TransactionOrder.checkCount(count);
+        TransactionQuery query = TransactionQuery.builder().status(status).limit(count).build();
+        return nonEmpty(merged(results(c -> c.find(query)), BY_AMOUNT, count));
+    }
+
+    public Iterable<Transaction> find(TransactionQuery query) {
+        return merged(results(c -> c.find(query)),
+                query.getOrder() == TransactionQuery.Order.INSERTION ? BY_SEQUENCE : BY_AMOUNT, query.getLimit());
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(PageCursor after, int pageSize) {
+        TransactionOrder.checkCount(pageSize);
+        return merged(results(c -> c.getPageOrderedByAmountDescendingThenById(after, pageSize)), BY_AMOUNT, pageSize);
+    }
+
+    /**
+     * Asks only the shards that hold the receiver for a page, since the others
+     * would report that by throwing.
+     */
+    public Iterable<Transaction> getPageByReceiverOrderedByAmountThenById(String receiver, PageCursor after, int pageSize) {
+        TransactionOrder.checkCount(pageSize);
+        List<Transaction> page = merged((c, action) -> hasReceiver(c, receiver)
+                ? TransactionOrder.forEach(c.getPageByReceiverOrderedByAmountThenById(receiver, after, pageSize), action)
+                : 0, BY_AMOUNT, pageSize);
+        if (page.isEmpty() && !hasReceiver(this, receiver)) {
+            throw new IllegalArgumentException();
+        }
+        return page;
+    }
+
+    public Iterator<Transaction> iterator() {
+        return merged(results(c -> c), BY_SEQUENCE, Integer.MAX_VALUE).iterator();
+    }
+
+    private int indexOf(int id) {
+        int h = id * 0x9E3779B9;
+        return Math.floorMod(h ^ (h >>> 16), shards.length);
+    }
+
+    private Shard shardOf(int id) {
+        return shards[indexOf(id)];
+    }
+
+    private List<Transaction> byStatus(TransactionStatus status) {
+        return merged((c, action) -> c.forEachByTransactionStatus(status, action), BY_AMOUNT, Integer.MAX_VALUE);
+    }
+
+    private List<Transaction> bySender(String sender) {
+        return merged((c, action) -> c.forEachBySender(sender, action), BY_AMOUNT, Integer.MAX_VALUE);
+    }
+
+    private List<Transaction> byReceiver(String receiver) {
+        return merged((c, action) -> c.forEachByReceiver(receiver, action), BY_AMOUNT, Integer.MAX_VALUE);
+    }
+
+    private List<Transaction> bySenderAbove(String sender, double amount) {
+        return merged((c, action) -> c.forEachBySenderAndMinimumAmount(sender, amount, action), BY_AMOUNT,
+                Integer.MAX_VALUE);
+    }
+
+    private List<Transaction> byReceiverBetween(String receiver, double lo, double hi) {
+        return merged((c, action) -> c.forEachByReceiverAndAmountRange(receiver, lo, hi, action), BY_AMOUNT,
+                Integer.MAX_VALUE);
+    }
+
+    private static boolean hasReceiver(Chainblock chainblock, String receiver) {
+        return chainblock.find(TransactionQuery.builder().receiver(receiver).limit(1).build()).iterator().hasNext();
+    }
+
+    /**
+     * Runs {@code query} on every shard in parallel and merges the first
+     * {@code limit} transactions in {@code order}.
+     */
+    private List<Transaction> merged(ShardQuery query, Comparator<Run> order, int limit) {
+        List<Run> runs = IntStream.range(0, shards.length).parallel()
+                .mapToObj(i -> shards[i].run(query, order == BY_SEQUENCE))
+                .collect(Collectors.toList());
+        PriorityQueue<Run> heads = new PriorityQueue<>(shards.length, order);
+        int size = 0;
+        for (Run run : runs) {
+            if (run.hasNext()) {
+                heads.add(run);
+                size += run.transactions.size();
+            }
+        }
+        List<Transaction> result = new ArrayList<>(Math.min(size, limit));
+        while (!heads.isEmpty() && result.size() < limit) {
+            Run run = heads.poll();
+            result.add(run.head());
+            run.position++;
+            if (run.hasNext()) {
+                heads.add(run);
+            }
+        }
+        return result;
+    }
+
+    private static ShardQuery results(Function<Chainblock, Iterable<Transaction>> query) {
+        return (chainblock, action) -> TransactionOrder.forEach(query.apply(chainblock), action);
+    }
+
+    private static List<Transaction> nonEmpty(List<Transaction> result) {
+        return TransactionOrder.nonEmpty(result);
+    }
+
+    private static Iterable<String> mapped(Iterable<Transaction> transactions, Function<Transaction, String> party) {
+        List<String> result = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            result.add(party.apply(transaction));
+        }
+        return result;
+    }
+
+    private static final class Shard {
+        private final Chainblock chainblock;
+        private final Map<Integer, Long> sequences;
+        private final ReadWriteLock lock;
+
+        private Shard(Chainblock chainblock) {
+            this.chainblock = chainblock;
+            this.sequences = new HashMap<>();
+            this.lock = new ReentrantReadWriteLock();
+        }
+
+        private void addAll(List<Transaction> transactions, List<Long> sequences) {
+            if (transactions.isEmpty()) {
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                List<Transaction> added = new ArrayList<>(transactions.size());
+                for (int i = 0; i < transactions.size(); i++) {
+                    Transaction transaction = transactions.get(i);
+                    if (this.sequences.putIfAbsent(transaction.getId(), sequences.get(i)) == null) {
+                        added.add(transaction);
+                    }
+                }
+                chainblock.addAll(added);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private Run run(ShardQuery query, boolean withSequences) {
+            lock.readLock().lock();
+            try {
+                List<Transaction> transactions = new ArrayList<>();
+                query.visit(chainblock, transactions::add);
+                long[] sequences = null;
+                if (withSequences) {
+                    transactions.sort(Comparator.comparingLong(t -> this.sequences.get(t.getId())));
+                    sequences = new long[transactions.size()];
+                    for (int i = 0; i < sequences.length; i++) {
+                        sequences[i] = this.sequences.get(transactions.get(i).getId());
+                    }
+                }
+                return new Run(transactions, sequences);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * A query on one shard, written as a visitor so that a shard without
+     * matches reports none instead of throwing.
+     */
+    private interface ShardQuery {
+        int visit(Chainblock shard, Consumer<? super Transaction> action);
+    }
+
+    private static final class Run {
+        private final List<Transaction> transactions;
+        private final long[] sequences;
+        private int position;
+
+        private Run(List<Transaction> transactions, long[] sequences) {
+            this.transactions = transactions;
+            this.sequences = sequences;
+        }
+
+        private boolean hasNext() {
+            return position < transactions.size();
+        }
+
+        private Transaction head() {
+            return transactions.get(position);
+        }
+
+        private long headSequence() {
+            return sequences[position];
+        }
+    }
+}
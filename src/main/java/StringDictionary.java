@@ -0,0 +1,49 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns dense int codes to strings so columns can store parties as ints.
+ * One dictionary may be shared by several columnar chainblocks.
+ * <p>
+ * Values are append-only and each new value is published by writing the
+ * volatile array, so {@link #decode} and {@link #size} never lock.
+ */
+public class StringDictionary {
+    private final Map<String, Integer> codes;
+    private volatile String[] values;
+    private volatile int size;
+
+    public StringDictionary() {
+        this.codes = new HashMap<>();
+        this.values = new String[16];
+    }
+
+    public synchronized int encode(String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = size;
+            String[] array = code < values.length ? values : Arrays.copyOf(values, code * 2);
+            array[code] = value;
+            values = array;
+            size = code + 1;
+            codes.put(value, code);
+        }
+        return code;
+    }
+
+    public synchronized int find(String value) {
+        return codes.getOrDefault(value, -1);
+    }
+
+    public String decode(int code) {
+        if (code < 0 || code >= size) {
+            throw new IndexOutOfBoundsException("Unknown code: " + code);
+        }
+        return values[code];
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,354 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of chainblock mutations. Each record is
+ * {@code [payload length][CRC32 of payload][payload]}. Appends are buffered and
+ * made durable with group commit: the first writer to wait becomes the leader,
+ * writes and forces everything appended so far, and releases every writer whose
+ * record was included, so one fsync covers many concurrent writers.
+ */
+final class TransactionLog implements Closeable {
+    static final byte ADD = 1;
+    static final byte REMOVE = 2;
+    static final byte CHANGE_STATUS = 3;
+
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int READ_BUFFER_BYTES = 1 << 20;
+    private static final int MAX_RECORD_BYTES = READ_BUFFER_BYTES - HEADER_BYTES;
+    private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+    private static final int REPLAY_BATCH = 64 * 1024;
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private final FileChannel channel;
+    private final ReentrantLock lock;
+    private final Condition flushed;
+    private final CRC32 checksum;
+    private ByteBuffer pending;
+    private ByteBuffer spare;
+    private long appendedSequence;
+    private long durableSequence;
+    private boolean flushing;
+    private long syncs;
+    private volatile IOException failure;
+
+    private TransactionLog(FileChannel channel) {
+        this.channel = channel;
+        this.lock = new ReentrantLock();
+        this.flushed = lock.newCondition();
+        this.checksum = new CRC32();
+        this.pending = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+        this.spare = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+    }
+
+    /**
+     * Opens or creates the log at {@code file}, replays every intact record into
+     * {@code target} and cuts off a torn or corrupt tail so new records follow
+     * the last good one.
+     */
+    static TransactionLog open(Path file, Chainblock target) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long validBytes = replay(channel, target);
+            if (validBytes < channel.size()) {
+                channel.truncate(validBytes);
+                channel.force(true);
+            }
+            channel.position(validBytes);
+            return new TransactionLog(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The append methods encode every field before taking the lock and check
+     * the size and log state before writing, so a record that cannot be
+     * appended throws without leaving any bytes behind.
+     */
+    long appendAdd(Transaction transaction) {
+        int id = transaction.getId();
+        byte status = (byte) transaction.getStatus().ordinal();
+        double amount = transaction.getAmount();
+        byte[] from = encode(transaction.getFrom());
+        byte[] to = encode(transaction.getTo());
+        int payload = 1 + Integer.BYTES + 1 + Double.BYTES + 2 * Integer.BYTES + length(from) + length(to);
+        lock.lock();
+        try {
+            ByteBuffer buffer = beginRecord(payload);
+            buffer.put(ADD)
+                    .putInt(id)
+                    .put(status)
+                    .putDouble(amount);
+            putString(buffer, from);
+            putString(buffer, to);
+            return endRecord(buffer, payload);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long appendRemove(int id) {
+        int payload = 1 + Integer.BYTES;
+        lock.lock();
+        try {
+            ByteBuffer buffer = beginRecord(payload);
+            buffer.put(REMOVE).putInt(id);
+            return endRecord(buffer, payload);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long appendChangeStatus(int id, TransactionStatus status) {
+        byte ordinal = (byte) status.ordinal();
+        int payload = 1 + Integer.BYTES + 1;
+        lock.lock();
+        try {
+            ByteBuffer buffer = beginRecord(payload);
+            buffer.put(CHANGE_STATUS).putInt(id).put(ordinal);
+            return endRecord(buffer, payload);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until the record with the given sequence number is on disk, leading
+     * the next group commit if no other writer is already doing so.
+     */
+    void awaitDurable(long sequence) throws IOException {
+        lock.lock();
+        try {
+            while (durableSequence < sequence) {
+                if (failure != null) {
+                    throw unusable();
+                }
+                if (flushing) {
+                    try {
+                        flushed.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                    continue;
+                }
+                flushing = true;
+                ByteBuffer batch = pending;
+                long batchEnd = appendedSequence;
+                pending = spare != null ? spare : ByteBuffer.allocate(batch.capacity());
+                spare = null;
+                lock.unlock();
+                IOException error = null;
+                try {
+                    batch.flip();
+                    while (batch.hasRemaining()) {
+                        channel.write(batch);
+                    }
+                    channel.force(false);
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    lock.lock();
+                }
+                batch.clear();
+                spare = batch;
+                flushing = false;
+                syncs++;
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durableSequence = batchEnd;
+                }
+                flushed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Throws once a write or fsync has failed, since the delegate may then hold
+     * mutations the log never made durable.
+     */
+    void checkUsable() {
+        if (failure != null) {
+            throw new UncheckedIOException(unusable());
+        }
+    }
+
+    long syncCount() {
+        lock.lock();
+        try {
+            return syncs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        long last;
+        try {
+            last = appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            awaitDurable(last);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private ByteBuffer beginRecord(int payload) {
+        if (failure != null) {
+            throw new UncheckedIOException(unusable());
+        }
+        if (payload > MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException();
+        }
+        if (pending.remaining() < HEADER_BYTES + payload) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + HEADER_BYTES + payload));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+        pending.putInt(payload).putInt(0);
+        return pending;
+    }
+
+    private IOException unusable() {
+        return new IOException("Transaction log is unusable after a failed write", failure);
+    }
+
+    private long endRecord(ByteBuffer buffer, int payload) {
+        int payloadStart = buffer.position() - payload;
+        ByteBuffer written = buffer.duplicate();
+        written.position(payloadStart).limit(buffer.position());
+        checksum.reset();
+        checksum.update(written);
+        buffer.putInt(payloadStart - Integer.BYTES, (int) checksum.getValue());
+        return ++appendedSequence;
+    }
+
+    private static long replay(FileChannel channel, Chainblock target) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        CRC32 crc = new CRC32();
+        Map<String, String> parties = new HashMap<>();
+        List<Transaction> adds = new ArrayList<>();
+        long validBytes = 0;
+        channel.position(0);
+        boolean endOfFile = false;
+        while (true) {
+            if (!endOfFile && channel.read(buffer) < 0) {
+                endOfFile = true;
+            }
+            buffer.flip();
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int payload = buffer.getInt(buffer.position());
+                if (payload <= 0 || payload > MAX_RECORD_BYTES) {
+                    applyAdds(target, adds);
+                    return validBytes;
+                }
+                if (buffer.remaining() < HEADER_BYTES + payload) {
+                    break;
+                }
+                int expected = buffer.getInt(buffer.position() + Integer.BYTES);
+                ByteBuffer record = buffer.duplicate();
+                record.position(buffer.position() + HEADER_BYTES).limit(buffer.position() + HEADER_BYTES + payload);
+                crc.reset();
+                crc.update(record.duplicate());
+                if ((int) crc.getValue() != expected) {
+                    applyAdds(target, adds);
+                    return validBytes;
+                }
+                apply(record, target, adds, parties);
+                buffer.position(buffer.position() + HEADER_BYTES + payload);
+                validBytes += HEADER_BYTES + payload;
+            }
+            if (endOfFile) {
+                applyAdds(target, adds);
+                return validBytes;
+            }
+            buffer.compact();
+        }
+    }
+
+    private static void apply(ByteBuffer record, Chainblock target, List<Transaction> adds, Map<String, String> parties) {
+        byte type = record.get();
+        int id = record.getInt();
+        switch (type) {
+            case ADD:
+                TransactionStatus status = STATUSES[record.get()];
+                double amount = record.getDouble();
+                String from = getString(record, parties);
+                String to = getString(record, parties);
+                adds.add(new TransactionImpl(id, status, from, to, amount));
+                if (adds.size() == REPLAY_BATCH) {
+                    applyAdds(target, adds);
+                }
+                break;
+            case REMOVE:
+                applyAdds(target, adds);
+                target.removeTransactionById(id);
+                break;
+            case CHANGE_STATUS:
+                applyAdds(target, adds);
+                target.changeTransactionStatus(id, STATUSES[record.get()]);
+                break;
+            default:
+                throw new IllegalStateException("Unknown log record type " + type);
+        }
+    }
+
+    private static void applyAdds(Chainblock target, List<Transaction> adds) {
+        if (!adds.isEmpty()) {
+            target.addAll(adds);
+            adds.clear();
+        }
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer record, Map<String, String> parties) {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(record.array(), record.arrayOffset() + record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return parties.computeIfAbsent(value, v -> v);
+    }
+}
@@ -0,0 +1,235 @@
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+final class TransactionOrder {
+    static final Comparator<Transaction> AMOUNT_DESCENDING_THEN_ID =
+            Comparator.comparingDouble(Transaction::getAmount).reversed().thenComparingInt(Transaction::getId);
+
+    private TransactionOrder() {
+    }
+
+    /**
+     * The transactions with an amount {@code > amount}, as a view of an index
+     * in {@link #AMOUNT_DESCENDING_THEN_ID} order. The amount views keep the
+     * semantics of the {@code <} and {@code >} operators even though the index
+     * orders by {@link Double#compare}: a NaN bound or amount never matches,
+     * and {@code -0.0} and {@code 0.0} are equal.
+     */
+    static NavigableSet<Transaction> aboveAmount(NavigableSet<Transaction> transactions, double amount) {
+        if (Double.isNaN(amount)) {
+            return Collections.emptyNavigableSet();
+        }
+        return transactions.subSet(amountProbe(Double.NaN, Integer.MAX_VALUE), false,
+                amountProbe(lowerBound(amount), Integer.MIN_VALUE), false);
+    }
+
+    static NavigableSet<Transaction> belowAmount(NavigableSet<Transaction> transactions, double amount) {
+        if (Double.isNaN(amount)) {
+            return Collections.emptyNavigableSet();
+        }
+        return transactions.tailSet(amountProbe(upperBound(amount), Integer.MAX_VALUE), false);
+    }
+
+    static NavigableSet<Transaction> amountRange(NavigableSet<Transaction> transactions, double lo, double hi) {
+        if (!(lo < hi)) {
+            return Collections.emptyNavigableSet();
+        }
+        return transactions.subSet(amountProbe(upperBound(hi), Integer.MAX_VALUE), false,
+                amountProbe(lowerBound(lo), Integer.MIN_VALUE), false);
+    }
+
+    /**
+     * The bound to probe with for {@code amount > lo}: the larger of the two
+     * zeros, so that neither zero compares above it.
+     */
+    static double lowerBound(double lo) {
+        return lo == 0.0 ? 0.0 : lo;
+    }
+
+    /**
+     * The bound to probe with for {@code amount < hi}: the smaller of the two
+     * zeros, so that neither zero compares below it.
+     */
+    static double upperBound(double hi) {
+        return hi == 0.0 ? -0.0 : hi;
+    }
+
+    static NavigableSet<Transaction> after(NavigableSet<Transaction> transactions, PageCursor cursor) {
+        return cursor.isFirst() ? transactions : transactions.tailSet(cursor.probe(), false);
+    }
+
+    /**
+     * The {@code count} first transactions of {@code transactions} in
+     * {@link #AMOUNT_DESCENDING_THEN_ID} order, kept in a bounded heap so the
+     * cost is O(n log count) instead of a full sort.
+     */
+    static List<Transaction> top(Iterable<Transaction> transactions, Predicate<Transaction> filter, int count) {
+        checkCount(count);
+        PriorityQueue<Transaction> worstFirst = new PriorityQueue<>(AMOUNT_DESCENDING_THEN_ID.reversed());
+        for (Transaction transaction : transactions) {
+            if (!filter.test(transaction)) {
+                continue;
+            }
+            if (worstFirst.size() < count) {
+                worstFirst.add(transaction);
+            } else if (AMOUNT_DESCENDING_THEN_ID.compare(transaction, worstFirst.peek()) < 0) {
+                worstFirst.poll();
+                worstFirst.add(transaction);
+            }
+        }
+        return drain(worstFirst);
+    }
+
+    static List<Transaction> drain(PriorityQueue<Transaction> worstFirst) {
+        Transaction[] best = new Transaction[worstFirst.size()];
+        for (int i = best.length - 1; i >= 0; i--) {
+            best[i] = worstFirst.poll();
+        }
+        return Arrays.asList(best);
+    }
+
+    static List<Transaction> first(Collection<Transaction> ordered, int count) {
+        checkCount(count);
+        List<Transaction> result = new ArrayList<>(Math.min(count, 64));
+        for (Transaction transaction : ordered) {
+            if (result.size() == count) {
+                break;
+            }
+            result.add(transaction);
+        }
+        return result;
+    }
+
+    /**
+     * The transactions of {@code transactions} that pass {@code filter}, sorted
+     * by {@link #AMOUNT_DESCENDING_THEN_ID}; an empty list if none do.
+     */
+    static List<Transaction> matching(Iterable<Transaction> transactions, Predicate<Transaction> filter) {
+        List<Transaction> result = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            if (filter.test(transaction)) {
+                result.add(transaction);
+            }
+        }
+        result.sort(AMOUNT_DESCENDING_THEN_ID);
+        return result;
+    }
+
+    /**
+     * Everything {@code visitor} passes to its action, in order. Queries that
+     * throw when nothing matches wrap their forEach visitor with this and
+     * {@link #nonEmpty}.
+     */
+    static List<Transaction> collect(ToIntFunction<Consumer<? super Transaction>> visitor) {
+        List<Transaction> result = new ArrayList<>();
+        visitor.applyAsInt(result::add);
+        return result;
+    }
+
+    static int forEach(Iterable<Transaction> transactions, Consumer<? super Transaction> action) {
+        int count = 0;
+        for (Transaction transaction : transactions) {
+            action.accept(transaction);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Whether {@code target} would store {@code transaction}: an add of an id
+     * it already holds is ignored, so decorators check this before reacting.
+     */
+    static boolean isNew(Chainblock target, Transaction transaction) {
+        return !target.contains(transaction.getId());
+    }
+
+    /**
+     * The transactions that an {@code addAll} of {@code transactions} on
+     * {@code target} would store: the {@link #isNew new} ones, and of several
+     * with the same id only the first.
+     */
+    static List<Transaction> newTransactions(Chainblock target, Collection<Transaction> transactions) {
+        Set<Integer> seen = new HashSet<>();
+        List<Transaction> added = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            if (isNew(target, transaction) && seen.add(transaction.getId())) {
+                added.add(transaction);
+            }
+        }
+        return added;
+    }
+
+    static void checkCount(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    static <T> List<T> nonEmpty(List<T> result) {
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        return result;
+    }
+
+    /**
+     * Read-only {@link SortedSet} over a list already sorted by
+     * {@link #AMOUNT_DESCENDING_THEN_ID}. Adding it to an empty {@link TreeSet}
+     * with the same comparator builds the tree in linear time.
+     */
+    static SortedSet<Transaction> sortedView(List<Transaction> sorted) {
+        return new SortedListView(sorted);
+    }
+
+    static Transaction amountProbe(double amount, int id) {
+        return new TransactionImpl(id, null, null, null, amount);
+    }
+
+    private static final class SortedListView extends AbstractSet<Transaction> implements SortedSet<Transaction> {
+        private final List<Transaction> sorted;
+
+        private SortedListView(List<Transaction> sorted) {
+            this.sorted = sorted;
+        }
+
+        public Iterator<Transaction> iterator() {
+            return Collections.unmodifiableList(sorted).iterator();
+        }
+
+        public int size() {
+            return sorted.size();
+        }
+
+        public Comparator<? super Transaction> comparator() {
+            return AMOUNT_DESCENDING_THEN_ID;
+        }
+
+        public Transaction first() {
+            if (sorted.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            return sorted.get(0);
+        }
+
+        public Transaction last() {
+            if (sorted.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            return sorted.get(sorted.size() - 1);
+        }
+
+        public SortedSet<Transaction> subSet(Transaction fromElement, Transaction toElement) {
+            throw new UnsupportedOperationException();
+        }
+
+        public SortedSet<Transaction> headSet(Transaction toElement) {
+            throw new UnsupportedOperationException();
+        }
+
+        public SortedSet<Transaction> tailSet(Transaction fromElement) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+import java.util.*;
+
+/**
+ * Combination of predicates on id, status, sender, receiver and amount, with
+ * an ordering and a limit, run by {@link Chainblock#find(TransactionQuery)}.
+ * Amount bounds are exclusive, as in the fixed queries. Unlike those, a query
+ * without matches returns an empty result.
+ */
+public final class TransactionQuery {
+
+    public enum Order {
+        AMOUNT_DESCENDING_THEN_ID, INSERTION
+    }
+
+    enum AccessPath {
+        ID, STATUS, SENDER, RECEIVER, AMOUNT
+    }
+
+    private final Integer id;
+    private final TransactionStatus status;
+    private final String sender;
+    private final String receiver;
+    private final Double minimumAmount;
+    private final Double maximumAmount;
+    private final Order order;
+    private final int limit;
+
+    private TransactionQuery(Builder builder) {
+        this.id = builder.id;
+        this.status = builder.status;
+        this.sender = builder.sender;
+        this.receiver = builder.receiver;
+        this.minimumAmount = builder.minimumAmount;
+        this.maximumAmount = builder.maximumAmount;
+        this.order = builder.order;
+        this.limit = builder.limit;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public TransactionStatus getStatus() {
+        return status;
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    public String getReceiver() {
+        return receiver;
+    }
+
+    public Double getMinimumAmount() {
+        return minimumAmount;
+    }
+
+    public Double getMaximumAmount() {
+        return maximumAmount;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    boolean matches(Transaction transaction) {
+        return (id == null || transaction.getId() == id)
+                && (status == null || transaction.getStatus() == status)
+                && (sender == null || sender.equals(transaction.getFrom()))
+                && (receiver == null || receiver.equals(transaction.getTo()))
+                && (minimumAmount == null || transaction.getAmount() > minimumAmount)
+                && (maximumAmount == null || transaction.getAmount() < maximumAmount);
+    }
+
+    /**
+     * The part of an amount-ordered index that lies within the amount bounds.
+     */
+    NavigableSet<Transaction> narrow(NavigableSet<Transaction> byAmount) {
+        if (minimumAmount != null && maximumAmount != null) {
+            return TransactionOrder.amountRange(byAmount, minimumAmount, maximumAmount);
+        }
+        if (minimumAmount != null) {
+            return TransactionOrder.aboveAmount(byAmount, minimumAmount);
+        }
+        if (maximumAmount != null) {
+            return TransactionOrder.belowAmount(byAmount, maximumAmount);
+        }
+        return byAmount;
+    }
+
+    boolean hasAmountBounds() {
+        return minimumAmount != null || maximumAmount != null;
+    }
+
+    /**
+     * Runs the query in one pass over {@code transactions}, which must be in
+     * insertion order; for implementations without indexes to plan with.
+     */
+    List<Transaction> scan(Iterable<Transaction> transactions) {
+        if (order == Order.AMOUNT_DESCENDING_THEN_ID) {
+            return TransactionOrder.top(transactions, this::matches, limit);
+        }
+        List<Transaction> result = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            if (result.size() == limit) {
+                break;
+            }
+            if (matches(transaction)) {
+                result.add(transaction);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TransactionQuery)) {
+            return false;
+        }
+        TransactionQuery that = (TransactionQuery) o;
+        return limit == that.limit
+                && Objects.equals(id, that.id)
+                && status == that.status
+                && Objects.equals(sender, that.sender)
+                && Objects.equals(receiver, that.receiver)
+                && Objects.equals(minimumAmount, that.minimumAmount)
+                && Objects.equals(maximumAmount, that.maximumAmount)
+                && order == that.order;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, status, sender, receiver, minimumAmount, maximumAmount, order, limit);
+    }
+
+    public static class Builder {
+        private Integer id;
+        private TransactionStatus status;
+        private String sender;
+        private String receiver;
+        private Double minimumAmount;
+        private Double maximumAmount;
+        private Order order;
+        private int limit;
+
+        private Builder() {
+            this.order = Order.AMOUNT_DESCENDING_THEN_ID;
+            this.limit = Integer.MAX_VALUE;
+        }
+
+        public Builder id(int id) {
+            this.id = id;
+            return this;
+        }
+
+        public Builder status(TransactionStatus status) {
+            this.status = status;
+            return this;
+        }
+
+        public Builder sender(String sender) {
+            this.sender = sender;
+            return this;
+        }
+
+        public Builder receiver(String receiver) {
+            this.receiver = receiver;
+            return this;
+        }
+
+        /**
+         * Keeps transactions with an amount strictly greater than {@code amount}.
+         */
+        public Builder minimumAmount(double amount) {
+            this.minimumAmount = amount;
+            return this;
+        }
+
+        /**
+         * Keeps transactions with an amount strictly less than {@code amount}.
+         */
+        public Builder maximumAmount(double amount) {
+            this.maximumAmount = amount;
+            return this;
+        }
+
+        public Builder orderBy(Order order) {
+            this.order = order;
+            return this;
+        }
+
+        public Builder limit(int limit) {
+            TransactionOrder.checkCount(limit);
+            this.limit = limit;
+            return this;
+        }
+
+        public TransactionQuery build() {
+            return new TransactionQuery(this);
+        }
+    }
+}
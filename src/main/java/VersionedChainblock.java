@@ -0,0 +1,395 @@
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Multi-version {@link Chainblock}. All indexes are {@link PersistentTree}s
+ * held in one immutable state that writers replace under a lock, so every
+ * query reads a consistent version without locking and {@link #snapshot()}
+ * freezes the current version in O(1). Writers never wait for readers.
+ *
+ * <p>{@link #changeTransactionStatus} stores a copy with the new status
+ * instead of calling {@link Transaction#setStatus}, so transactions handed out
+ * by earlier versions keep their status; callers must not mutate added
+ * transactions themselves. Query results are taken from a single version.
+ */
+public class VersionedChainblock implements Chainblock {
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    private static final Comparator<String> PARTY_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+    private static final Comparator<Row> BY_ID = Comparator.comparingInt(row -> row.transaction.getId());
+    private static final Comparator<Row> BY_SEQUENCE = Comparator.comparingLong(row -> row.sequence);
+    private static final Comparator<Row> BY_AMOUNT =
+            Comparator.comparing(row -> row.transaction, TransactionOrder.AMOUNT_DESCENDING_THEN_ID);
+    private static final Comparator<Row> BY_SENDER =
+            Comparator.comparing((Row row) -> row.transaction.getFrom(), PARTY_ORDER).thenComparing(BY_AMOUNT);
+    private static final Comparator<Row> BY_RECEIVER =
+            Comparator.comparing((Row row) -> row.transaction.getTo(), PARTY_ORDER).thenComparing(BY_AMOUNT);
+
+    private volatile State state;
+    private final boolean readOnly;
+
+    public VersionedChainblock() {
+        this(State.EMPTY, false);
+    }
+
+    private VersionedChainblock(State state, boolean readOnly) {
+        this.state = state;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Read-only view of the current version. Later writes to this chainblock
+     * are not visible through it.
+     */
+    public Chainblock snapshot() {
+        return readOnly ? this : new VersionedChainblock(state, true);
+    }
+
+    public int getCount() {
+        return state.byId.size();
+    }
+
+    public void add(Transaction transaction) {
+        checkWritable();
+        synchronized (this) {
+            State current = state;
+            if (current.byId.find(idProbe(transaction.getId())) == null) {
+                state = current.with(new Row(current.nextSequence, transaction), current.nextSequence + 1);
+            }
+        }
+    }
+
+    public void addAll(Collection<Transaction> transactions) {
+        checkWritable();
+        synchronized (this) {
+            State current = state;
+            for (Transaction transaction : transactions) {
+                if (current.byId.find(idProbe(transaction.getId())) == null) {
+                    current = current.with(new Row(current.nextSequence, transaction), current.nextSequence + 1);
+                }
+            }
+            state = current;
+        }
+    }
+
+    public boolean contains(Transaction transaction) {
+        return contains(transaction.getId());
+    }
+
+    public boolean contains(int id) {
+        return state.byId.find(idProbe(id)) != null;
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        checkWritable();
+        synchronized (this) {
+            State current = state;
+            Row row = rowOf(current, id);
+            Transaction old = row.transaction;
+            Transaction changed = new TransactionImpl(old.getId(), newStatus, old.getFrom(), old.getTo(), old.getAmount());
+            state = current.without(row).with(new Row(row.sequence, changed), current.nextSequence);
+        }
+    }
+
+    public void removeTransactionById(int id) {
+        checkWritable();
+        synchronized (this) {
+            State current = state;
+            state = current.without(rowOf(current, id));
+        }
+    }
+
+    public Transaction getById(int id) {
+        Transaction transaction = tryGetById(id);
+        if (transaction == null) {
+            throw new IllegalArgumentException();
+        }
+        return transaction;
+    }
+
+    public Transaction tryGetById(int id) {
+        Row row = state.byId.find(idProbe(id));
+        return row == null ? null : row.transaction;
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        return nonEmpty(TransactionOrder.collect(action -> forEachByTransactionStatus(status, action)));
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        return mapped(getByTransactionStatus(status), Transaction::getFrom);
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return mapped(getByTransactionStatus(status), Transaction::getTo);
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        return transactions(state.byAmount);
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        return nonEmpty(TransactionOrder.collect(action -> forEachBySender(sender, action)));
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        return nonEmpty(TransactionOrder.collect(action -> forEachByReceiver(receiver, action)));
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        if (Double.isNaN(amount)) {
+            return new ArrayList<>();
+        }
+        return inInsertionOrder(state.byStatus[status.ordinal()].range(
+                amountProbe(TransactionOrder.upperBound(amount), Integer.MAX_VALUE), false, null, false));
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return nonEmpty(TransactionOrder.collect(action -> forEachBySenderAndMinimumAmount(sender, amount, action)));
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return nonEmpty(TransactionOrder.collect(action -> forEachByReceiverAndAmountRange(receiver, lo, hi, action)));
+    }
+
+    public int forEachByTransactionStatus(TransactionStatus status, Consumer<? super Transaction> action) {
+        return visit(state.byStatus[status.ordinal()], action);
+    }
+
+    public int forEachBySender(String sender, Consumer<? super Transaction> action) {
+        return visit(bySender(state, sender), action);
+    }
+
+    public int forEachByReceiver(String receiver, Consumer<? super Transaction> action) {
+        return visit(byReceiver(state, receiver), action);
+    }
+
+    public int forEachBySenderAndMinimumAmount(String sender, double amount, Consumer<? super Transaction> action) {
+        if (Double.isNaN(amount)) {
+            return 0;
+        }
+        return visit(state.bySender.range(
+                partyProbe(sender, Double.NaN, Integer.MAX_VALUE), false,
+                partyProbe(sender, TransactionOrder.lowerBound(amount), Integer.MIN_VALUE), false), action);
+    }
+
+    public int forEachByReceiverAndAmountRange(String receiver, double lo, double hi,
+                                               Consumer<? super Transaction> action) {
+        if (!(lo < hi)) {
+            return 0;
+        }
+        return visit(state.byReceiver.range(
+                partyProbe(receiver, TransactionOrder.upperBound(hi), Integer.MAX_VALUE), false,
+                partyProbe(receiver, TransactionOrder.lowerBound(lo), Integer.MIN_VALUE), false), action);
+    }
+
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        if (!(lo < hi)) {
+            return new ArrayList<>();
+        }
+        return inInsertionOrder(state.byAmount.range(
+                amountProbe(TransactionOrder.upperBound(hi), Integer.MAX_VALUE), false,
+                amountProbe(TransactionOrder.lowerBound(lo), Integer.MIN_VALUE), false));
+    }
+
+    public Iterable<Transaction> getTopOrderedByAmountDescendingThenById(int count) {
+        return first(state.byAmount, count);
+    }
+
+    public Iterable<Transaction> getTopBySenderOrderedByAmountDescending(String sender, int count) {
+        return nonEmpty(first(bySender(state, sender), count));
+    }
+
+    public Iterable<Transaction> getTopByTransactionStatus(TransactionStatus status, int count) {
+        return nonEmpty(first(state.byStatus[status.ordinal()], count));
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(PageCursor after, int pageSize) {
+        State current = state;
+        if (after.isFirst()) {
+            return first(current.byAmount, pageSize);
+        }
+        return first(current.byAmount.range(amountProbe(after.getAmount(), after.getId()), false, null, false), pageSize);
+    }
+
+    public Iterable<Transaction> getPageByReceiverOrderedByAmountThenById(String receiver, PageCursor after, int pageSize) {
+        TransactionOrder.checkCount(pageSize);
+        State current = state;
+        Iterable<Row> byReceiver = byReceiver(current, receiver);
+        if (!byReceiver.iterator().hasNext()) {
+            throw new IllegalArgumentException();
+        }
+        if (after.isFirst()) {
+            return first(byReceiver, pageSize);
+        }
+        return first(current.byReceiver.range(
+                partyProbe(receiver, after.getAmount(), after.getId()), false,
+                partyProbe(receiver, Double.NEGATIVE_INFINITY, Integer.MAX_VALUE), true), pageSize);
+    }
+
+    public Iterator<Transaction> iterator() {
+        Iterator<Row> rows = state.byOrder.iterator();
+        return new Iterator<Transaction>() {
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            public Transaction next() {
+                return rows.next().transaction;
+            }
+        };
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Chainblock snapshots are read-only");
+        }
+    }
+
+    private static Iterable<Row> bySender(State state, String sender) {
+        return state.bySender.range(
+                partyProbe(sender, Double.NaN, Integer.MIN_VALUE), true,
+                partyProbe(sender, Double.NEGATIVE_INFINITY, Integer.MAX_VALUE), true);
+    }
+
+    private static Iterable<Row> byReceiver(State state, String receiver) {
+        return state.byReceiver.range(
+                partyProbe(receiver, Double.NaN, Integer.MIN_VALUE), true,
+                partyProbe(receiver, Double.NEGATIVE_INFINITY, Integer.MAX_VALUE), true);
+    }
+
+    private static Row rowOf(State state, int id) {
+        Row row = state.byId.find(idProbe(id));
+        if (row == null) {
+            throw new IllegalArgumentException();
+        }
+        return row;
+    }
+
+    private static Row idProbe(int id) {
+        return new Row(0, new TransactionImpl(id, null, null, null, 0));
+    }
+
+    private static Row amountProbe(double amount, int id) {
+        return new Row(0, TransactionOrder.amountProbe(amount, id));
+    }
+
+    private static Row partyProbe(String party, double amount, int id) {
+        return new Row(0, new TransactionImpl(id, null, party, party, amount));
+    }
+
+    private static List<Transaction> transactions(Iterable<Row> rows) {
+        List<Transaction> result = new ArrayList<>();
+        for (Row row : rows) {
+            result.add(row.transaction);
+        }
+        return result;
+    }
+
+    private static int visit(Iterable<Row> rows, Consumer<? super Transaction> action) {
+        int visited = 0;
+        for (Row row : rows) {
+            action.accept(row.transaction);
+            visited++;
+        }
+        return visited;
+    }
+
+    private static List<Transaction> nonEmpty(List<Transaction> result) {
+        return TransactionOrder.nonEmpty(result);
+    }
+
+    private static Iterable<String> mapped(Iterable<Transaction> transactions, Function<Transaction, String> party) {
+        List<String> result = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            result.add(party.apply(transaction));
+        }
+        return result;
+    }
+
+    private static List<Transaction> inInsertionOrder(Iterable<Row> rows) {
+        List<Row> matches = new ArrayList<>();
+        rows.forEach(matches::add);
+        matches.sort(BY_SEQUENCE);
+        List<Transaction> result = new ArrayList<>(matches.size());
+        for (Row row : matches) {
+            result.add(row.transaction);
+        }
+        return result;
+    }
+
+    private static List<Transaction> first(Iterable<Row> ordered, int count) {
+        TransactionOrder.checkCount(count);
+        List<Transaction> result = new ArrayList<>(Math.min(count, 64));
+        for (Row row : ordered) {
+            if (result.size() == count) {
+                break;
+            }
+            result.add(row.transaction);
+        }
+        return result;
+    }
+
+    private static final class Row {
+        private final long sequence;
+        private final Transaction transaction;
+
+        private Row(long sequence, Transaction transaction) {
+            this.sequence = sequence;
+            this.transaction = transaction;
+        }
+    }
+
+    private static final class State {
+        private static final State EMPTY = new State();
+
+        private final long nextSequence;
+        private final PersistentTree<Row> byId;
+        private final PersistentTree<Row> byOrder;
+        private final PersistentTree<Row> byAmount;
+        private final PersistentTree<Row>[] byStatus;
+        private final PersistentTree<Row> bySender;
+        private final PersistentTree<Row> byReceiver;
+
+        private State() {
+            this.nextSequence = 0;
+            this.byId = PersistentTree.empty(BY_ID);
+            this.byOrder = PersistentTree.empty(BY_SEQUENCE);
+            this.byAmount = PersistentTree.empty(BY_AMOUNT);
+            @SuppressWarnings("unchecked")
+            PersistentTree<Row>[] byStatus = (PersistentTree<Row>[]) new PersistentTree<?>[STATUSES.length];
+            Arrays.fill(byStatus, PersistentTree.empty(BY_AMOUNT));
+            this.byStatus = byStatus;
+            this.bySender = PersistentTree.empty(BY_SENDER);
+            this.byReceiver = PersistentTree.empty(BY_RECEIVER);
+        }
+
+        private State(long nextSequence, PersistentTree<Row> byId, PersistentTree<Row> byOrder,
+                      PersistentTree<Row> byAmount, PersistentTree<Row>[] byStatus,
+                      PersistentTree<Row> bySender, PersistentTree<Row> byReceiver) {
+            this.nextSequence = nextSequence;
+            this.byId = byId;
+            this.byOrder = byOrder;
+            this.byAmount = byAmount;
+            this.byStatus = byStatus;
+            this.bySender = bySender;
+            this.byReceiver = byReceiver;
+        }
+
+        private State with(Row row, long nextSequence) {
+            PersistentTree<Row>[] statuses = byStatus.clone();
+            int status = row.transaction.getStatus().ordinal();
+            statuses[status] = statuses[status].insert(row);
+            return new State(nextSequence, byId.insert(row), byOrder.insert(row), byAmount.insert(row), statuses,
+                    bySender.insert(row), byReceiver.insert(row));
+        }
+
+        private State without(Row row) {
+            PersistentTree<Row>[] statuses = byStatus.clone();
+            int status = row.transaction.getStatus().ordinal();
+            statuses[status] = statuses[status].remove(row);
+            return new State(nextSequence, byId.remove(row), byOrder.remove(row), byAmount.remove(row), statuses,
+                    bySender.remove(row), byReceiver.remove(row));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.*;
+
+public class AggregatingChainblockTest extends ChainblockContractTest {
+
+    private static final String[] PARTIES = {"Pesho", "Sasho", "Toshko", "Gosho", "Ivan"};
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    @Override
+    protected Chainblock createChainblock() {
+        return new AggregatingChainblock(new ChainblockImpl());
+    }
+
+    @Test
+    public void testAggregates_ShouldFollowAddRemoveAndStatusChange() {
+        AggregatingChainblock aggregating = new AggregatingChainblock(new ChainblockImpl());
+        aggregating.add(new TransactionImpl(0, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 11.25));
+        aggregating.add(new TransactionImpl(1, TransactionStatus.SUCCESSFUL, "Pesho", "Toshko", 10));
+        aggregating.add(new TransactionImpl(2, TransactionStatus.FAILED, "Sasho", "Pesho", 11));
+
+        Aggregate pesho = aggregating.getSenderAggregate("Pesho");
+        assertEquals(2, pesho.getCount());
+        assertEquals(21.25, pesho.getSum(), 1e-9);
+        assertEquals(10, pesho.getMin(), 0);
+        assertEquals(11.25, pesho.getMax(), 0);
+        assertEquals(2, aggregating.getDistinctReceiverCount(TransactionStatus.SUCCESSFUL));
+
+        aggregating.changeTransactionStatus(1, TransactionStatus.FAILED);
+        aggregating.removeTransactionById(0);
+
+        assertEquals(0, aggregating.getStatusAggregate(TransactionStatus.SUCCESSFUL).getCount());
+        assertEquals(0, aggregating.getDistinctReceiverCount(TransactionStatus.SUCCESSFUL));
+        assertEquals(2, aggregating.getStatusAggregate(TransactionStatus.FAILED).getCount());
+        assertEquals(2, aggregating.getDistinctSenderCount(TransactionStatus.FAILED));
+        assertEquals(10, aggregating.getSenderAggregate("Pesho").getMax(), 0);
+        assertEquals(0, aggregating.getReceiverAggregate("Sasho").getCount());
+        assertTrue(Double.isNaN(aggregating.getReceiverAggregate("Sasho").getMin()));
+    }
+
+    @Test
+    public void testConstructor_ShouldAggregateExistingTransactions() {
+        Chainblock chainblock = ChainblockImpl.builder()
+                .addAll(Arrays.asList(
+                        new TransactionImpl(0, TransactionStatus.ABORTED, "Pesho", "Sasho", 3),
+                        new TransactionImpl(1, TransactionStatus.ABORTED, "Gosho", "Sasho", 4)))
+                .build();
+
+        AggregatingChainblock aggregating = new AggregatingChainblock(chainblock);
+
+        assertEquals(7, aggregating.getReceiverAggregate("Sasho").getSum(), 0);
+        assertEquals(2, aggregating.getDistinctSenderCount(TransactionStatus.ABORTED));
+    }
+
+    @Test
+    public void testRandomOperations_ShouldMatchRecomputedAggregates() {
+        AggregatingChainblock aggregating = new AggregatingChainblock(new ChainblockImpl());
+        Random random = new Random(3);
+
+        for (int step = 0; step < 5_000; step++) {
+            int id = random.nextInt(300);
+            int operation = random.nextInt(10);
+            if (operation < 6) {
+                aggregating.add(new TransactionImpl(id, STATUSES[random.nextInt(STATUSES.length)],
+                        PARTIES[random.nextInt(PARTIES.length)], PARTIES[random.nextInt(PARTIES.length)],
+                        random.nextInt(400) / 4.0));
+            } else if (operation < 8 && aggregating.contains(id)) {
+                aggregating.changeTransactionStatus(id, STATUSES[random.nextInt(STATUSES.length)]);
+            } else if (aggregating.contains(id)) {
+                aggregating.removeTransactionById(id);
+            }
+        }
+
+        for (String party : PARTIES) {
+            assertAggregate(aggregating, t -> party.equals(t.getFrom()), aggregating.getSenderAggregate(party));
+            assertAggregate(aggregating, t -> party.equals(t.getTo()), aggregating.getReceiverAggregate(party));
+        }
+        for (TransactionStatus status : STATUSES) {
+            assertAggregate(aggregating, t -> t.getStatus() == status, aggregating.getStatusAggregate(status));
+            Set<String> senders = new HashSet<>();
+            Set<String> receivers = new HashSet<>();
+            for (Transaction transaction : aggregating) {
+                if (transaction.getStatus() == status) {
+                    senders.add(transaction.getFrom());
+                    receivers.add(transaction.getTo());
+                }
+            }
+            assertEquals(senders.size(), aggregating.getDistinctSenderCount(status));
+            assertEquals(receivers.size(), aggregating.getDistinctReceiverCount(status));
+        }
+    }
+
+    @Test
+    public void testSum_ShouldNotDriftWhenLargeAmountsAreRemoved() {
+        AggregatingChainblock aggregating = new AggregatingChainblock(new ChainblockImpl());
+        aggregating.add(new TransactionImpl(0, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 1e20));
+        aggregating.add(new TransactionImpl(1, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 1));
+        aggregating.add(new TransactionImpl(2, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 0.1));
+        aggregating.removeTransactionById(0);
+
+        assertEquals(1.1, aggregating.getSenderAggregate("Pesho").getSum(), 0);
+        assertEquals(1.1, aggregating.getStatusAggregate(TransactionStatus.SUCCESSFUL).getSum(), 0);
+    }
+
+    @Test
+    public void testAggregates_ShouldRecoverAfterNaNAndInfiniteAmountsAreRemoved() {
+        AggregatingChainblock aggregating = new AggregatingChainblock(new ChainblockImpl());
+        aggregating.add(new TransactionImpl(0, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 3));
+        aggregating.add(new TransactionImpl(1, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", Double.NaN));
+        aggregating.add(new TransactionImpl(2, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", Double.POSITIVE_INFINITY));
+        assertAggregate(aggregating, t -> "Pesho".equals(t.getFrom()), aggregating.getSenderAggregate("Pesho"));
+
+        aggregating.removeTransactionById(1);
+        assertEquals(Double.POSITIVE_INFINITY, aggregating.getSenderAggregate("Pesho").getSum(), 0);
+        aggregating.add(new TransactionImpl(3, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", Double.NEGATIVE_INFINITY));
+        assertAggregate(aggregating, t -> "Pesho".equals(t.getFrom()), aggregating.getSenderAggregate("Pesho"));
+
+        aggregating.removeTransactionById(2);
+        aggregating.removeTransactionById(3);
+        Aggregate pesho = aggregating.getSenderAggregate("Pesho");
+        assertEquals(3, pesho.getSum(), 0);
+        assertEquals(3, pesho.getMin(), 0);
+        assertEquals(3, pesho.getMax(), 0);
+    }
+
+    private static void assertAggregate(Chainblock chainblock, Predicate<Transaction> group, Aggregate actual) {
+        long count = 0;
+        double sum = 0;
+        double min = Double.NaN;
+        double max = Double.NaN;
+        for (Transaction transaction : chainblock) {
+            if (group.test(transaction)) {
+                count++;
+                sum += transaction.getAmount();
+                min = count == 1 ? transaction.getAmount() : Math.min(min, transaction.getAmount());
+                max = count == 1 ? transaction.getAmount() : Math.max(max, transaction.getAmount());
+            }
+        }
+        assertEquals(count, actual.getCount());
+        assertEquals(sum, actual.getSum(), 1e-6);
+        assertEquals(min, actual.getMin(), 0);
+        assertEquals(max, actual.getMax(), 0);
+    }
+}
@@ -0,0 +1,125 @@
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CachingChainblockTest extends ChainblockContractTest {
+
+    @Override
+    protected Chainblock createChainblock() {
+        return new CachingChainblock(new ChainblockImpl(), 4);
+    }
+
+    private CachingChainblock caching() {
+        CachingChainblock caching = new CachingChainblock(new ChainblockImpl(), 16);
+        caching.add(new TransactionImpl(0, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 11.20));
+        caching.add(new TransactionImpl(1, TransactionStatus.SUCCESSFUL, "Pesho", "Toshko", 10));
+        caching.add(new TransactionImpl(2, TransactionStatus.FAILED, "Sasho", "Pesho", 11.0));
+        return caching;
+    }
+
+    @Test
+    public void testQuery_ShouldBeServedFromCacheUntilModified() {
+        CachingChainblock caching = caching();
+
+        Iterable<Transaction> first = caching.getAllOrderedByAmountDescendingThenById();
+        Iterable<Transaction> second = caching.getAllOrderedByAmountDescendingThenById();
+
+        assertSame(first, second);
+        assertEquals(1, caching.getHitCount());
+        assertEquals(1, caching.getMissCount());
+
+        caching.add(new TransactionImpl(3, TransactionStatus.ABORTED, "Gosho", "Pesho", 50));
+        List<Transaction> third = toList(caching.getAllOrderedByAmountDescendingThenById());
+
+        assertNotSame(first, third);
+        assertEquals(4, third.size());
+        assertEquals(3, third.get(0).getId());
+    }
+
+    @Test
+    public void testModification_ShouldOnlyInvalidateAffectedStatusAndParties() {
+        CachingChainblock caching = caching();
+        Iterable<Transaction> failed = caching.getByTransactionStatus(TransactionStatus.FAILED);
+        Iterable<Transaction> fromSasho = caching.getBySenderOrderedByAmountDescending("Sasho");
+        Iterable<Transaction> successful = caching.getByTransactionStatus(TransactionStatus.SUCCESSFUL);
+
+        caching.changeTransactionStatus(1, TransactionStatus.ABORTED);
+
+        assertSame(failed, caching.getByTransactionStatus(TransactionStatus.FAILED));
+        assertSame(fromSasho, caching.getBySenderOrderedByAmountDescending("Sasho"));
+        assertEquals(1, toList(caching.getByTransactionStatus(TransactionStatus.SUCCESSFUL)).size());
+        assertNotSame(successful, caching.getByTransactionStatus(TransactionStatus.SUCCESSFUL));
+        assertEquals(1, toList(caching.getByTransactionStatus(TransactionStatus.ABORTED)).size());
+    }
+
+    @Test
+    public void testRemove_ShouldInvalidateSenderAndReceiverEntries() {
+        CachingChainblock caching = caching();
+        caching.getByReceiverOrderedByAmountThenById("Pesho");
+        caching.getBySenderOrderedByAmountDescending("Pesho");
+        long version = caching.getVersion();
+
+        caching.removeTransactionById(2);
+
+        assertEquals(version + 1, caching.getVersion());
+        assertEquals(2, toList(caching.getBySenderOrderedByAmountDescending("Pesho")).size());
+        try {
+            caching.getByReceiverOrderedByAmountThenById("Pesho");
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // the stale entry must not be served
+        }
+    }
+
+    @Test
+    public void testAddOfExistingId_ShouldNotBumpVersion() {
+        CachingChainblock caching = caching();
+        long version = caching.getVersion();
+
+        caching.add(new TransactionImpl(0, TransactionStatus.FAILED, "Gosho", "Gosho", 1));
+
+        assertEquals(version, caching.getVersion());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testCachedResult_ShouldBeUnmodifiable() {
+        CachingChainblock caching = caching();
+
+        ((List<Transaction>) caching.getAllOrderedByAmountDescendingThenById()).clear();
+    }
+
+    @Test
+    public void testCache_ShouldEvictLeastRecentlyUsedEntries() {
+        CachingChainblock caching = new CachingChainblock(new ChainblockImpl(), 2);
+        caching.add(new TransactionImpl(0, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 11.20));
+
+        Iterable<Transaction> first = caching.getAllInAmountRange(0, 1);
+        caching.getAllInAmountRange(0, 2);
+        assertSame(first, caching.getAllInAmountRange(0, 1));
+        caching.getAllInAmountRange(0, 3);
+
+        assertSame(first, caching.getAllInAmountRange(0, 1));
+        caching.getAllInAmountRange(0, 2);
+        assertEquals(2, caching.getHitCount());
+        assertEquals(4, caching.getMissCount());
+    }
+
+    @Test
+    public void testPartyStampEviction_ShouldNotServeStaleEntries() {
+        CachingChainblock caching = new CachingChainblock(new ChainblockImpl(), 2);
+        caching.add(new TransactionImpl(0, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 11.20));
+        assertEquals(1, toList(caching.getBySenderOrderedByAmountDescending("Pesho")).size());
+
+        for (int id = 1; id <= 10; id++) {
+            caching.add(new TransactionImpl(id, TransactionStatus.SUCCESSFUL, "Sender" + id, "Receiver" + id, id));
+        }
+        assertEquals(1, toList(caching.getBySenderOrderedByAmountDescending("Pesho")).size());
+        caching.add(new TransactionImpl(11, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 3));
+
+        assertEquals(2, toList(caching.getBySenderOrderedByAmountDescending("Pesho")).size());
+        caching.removeTransactionById(0);
+        assertEquals(1, toList(caching.getBySenderOrderedByAmountDescending("Pesho")).size());
+    }
+}
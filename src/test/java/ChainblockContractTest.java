@@ -0,0 +1,735 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public abstract class ChainblockContractTest {
+
+    private Chainblock chainblock;
+    protected List<Transaction> transactions;
+
+    @Before
+    public void prepare() {
+        this.chainblock = createChainblock();
+        this.transactions = new ArrayList<>();
+        this.prepareTransactions();
+
+    }
+
+    protected abstract Chainblock createChainblock();
+
+    private void fillChainblockWithTransactions() {
+        transactions.forEach(t -> chainblock.add(t));
+    }
+
+    private void prepareTransactions() {
+        Transaction transaction = new TransactionImpl(0, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 11.20);
+        Transaction transaction1 = new TransactionImpl(1, TransactionStatus.SUCCESSFUL, "Pesho", "Toshko", 10);
+        Transaction transaction2 = new TransactionImpl(2, TransactionStatus.UNAUTHORIZED, "Sasho", "Pesho", 11.0);
+        Transaction transaction3 = new TransactionImpl(3, TransactionStatus.FAILED, "Toshko", "Sasho", 12.20);
+        Transaction transaction4 = new TransactionImpl(4, TransactionStatus.SUCCESSFUL, "Sasho", "Pesho", 10.50);
+        Transaction transaction5 = new TransactionImpl(5, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 14);
+        Transaction transaction6 = new TransactionImpl(6, TransactionStatus.SUCCESSFUL, "Toshko", "Sasho", 9);
+        transactions.add(transaction);
+        transactions.add(transaction1);
+        transactions.add(transaction2);
+        transactions.add(transaction3);
+        transactions.add(transaction4);
+        transactions.add(transaction5);
+        transactions.add(transaction6);
+    }
+
+    @Test
+    public void testAdd_ShouldAddTransaction() {
+        chainblock.add(transactions.get(0));
+        assertEquals(1, chainblock.getCount());
+        chainblock.add(transactions.get(1));
+        assertEquals(2, chainblock.getCount());
+
+    }
+
+    @Test
+    public void testAdd_ShouldNotAddDuplicateTransaction() {
+        chainblock.add(transactions.get(0));
+        chainblock.add(transactions.get(0));
+        assertEquals(1, chainblock.getCount());
+    }
+
+    @Test
+    public void testContains_WithTransactionShouldReturnFalse() {
+        chainblock.add(transactions.get(0));
+        boolean chainBlockContainsTransaction = chainblock.contains(transactions.get(1));
+        assertFalse(chainBlockContainsTransaction);
+    }
+
+    @Test
+    public void testContains_WithTransactionShouldReturnTrue() {
+        chainblock.add(transactions.get(1));
+        boolean chainBlockContainsTransaction = chainblock.contains(transactions.get(1));
+        assertTrue(chainBlockContainsTransaction);
+    }
+
+    @Test
+    public void testContainsWithID_ShouldReturnFalse() {
+        chainblock.add(transactions.get(0));
+        boolean chainBlockContainsID = chainblock.contains(transactions.get(1).getId());
+        assertFalse(chainBlockContainsID);
+    }
+
+    @Test
+    public void testContainsWithID_ShouldReturnTrue() {
+        chainblock.add(transactions.get(0));
+        boolean chainBlockContainsID = chainblock.contains(transactions.get(0).getId());
+        assertTrue(chainBlockContainsID);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testChangeTransactionStatus_ShouldThrowForMissingTransaction() {
+        chainblock.changeTransactionStatus(100, TransactionStatus.FAILED);
+    }
+
+    @Test
+    public void testChangeTransactionStatus_ShouldChangeStatus() {
+        chainblock.add(transactions.get(0));
+
+        chainblock.changeTransactionStatus(transactions.get(0).getId(), TransactionStatus.FAILED);
+
+        TransactionStatus newTransactionStatus = chainblock.getById(transactions.get(0).getId()).getStatus();
+
+        assertEquals(TransactionStatus.FAILED, newTransactionStatus);
+    }
+
+    @Test
+    public void testGetByID_ShouldReturnTransaction() {
+        chainblock.add(transactions.get(0));
+
+        Transaction actual = chainblock.getById(transactions.get(0).getId());
+
+        assertSameTransactions(transactions.get(0), actual);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetByID_ShouldThrowForMissingTransaction() {
+        fillChainblockWithTransactions();
+
+        chainblock.getById(199);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRemoveTransactionByID_ShouldThrowForMissingTransaction() {
+        fillChainblockWithTransactions();
+
+        chainblock.removeTransactionById(200);
+    }
+
+    @Test
+    public void testRemoveTransactionByID_ShouldRemove() {
+        fillChainblockWithTransactions();
+
+        chainblock.removeTransactionById(1);
+
+        assertFalse(chainblock.contains(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetByTransactionStatus_ShouldThrowIfNoSuchTransactions() {
+        fillChainblockWithTransactions();
+
+        chainblock.getByTransactionStatus(TransactionStatus.ABORTED);
+    }
+
+    @Test
+    public void testGetByTransactionStatus_ShouldReturnSortedByDescending() {
+        fillChainblockWithTransactions();
+        Iterable<Transaction> expectedTransactions = transactions.stream()
+                .filter(t -> t.getStatus().equals(TransactionStatus.SUCCESSFUL))
+                .sorted(Comparator.comparing(Transaction::getAmount).reversed())
+                .collect(Collectors.toList());
+
+        Iterable<Transaction> actualTransactions = chainblock.getByTransactionStatus(TransactionStatus.SUCCESSFUL);
+        assertSameTransactions(expectedTransactions, actualTransactions);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetAllSendersWithTransactionStatus_ShouldThrowIfNoTransactions() {
+        fillChainblockWithTransactions();
+
+        chainblock.getAllSendersWithTransactionStatus(TransactionStatus.ABORTED);
+    }
+
+    @Test
+    public void testGetAllSendersWithTransactionStatus_ShouldReturnSortedNames() {
+        fillChainblockWithTransactions();
+        List<String> expectedTransactionSenders = transactions.stream()
+                .filter(t -> t.getStatus().equals(TransactionStatus.SUCCESSFUL))
+                .sorted(Comparator.comparing(Transaction::getAmount).reversed())
+                .map(Transaction::getFrom)
+                .collect(Collectors.toList());
+
+        Iterable<String> actualTransactionSenders = chainblock.getAllSendersWithTransactionStatus(TransactionStatus.SUCCESSFUL);
+
+        assertEquals(expectedTransactionSenders, actualTransactionSenders);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetAllReceiversWithTransactionStatus_ShouldThrowIfNoTransactions() {
+        fillChainblockWithTransactions();
+
+        chainblock.getAllSendersWithTransactionStatus(TransactionStatus.ABORTED);
+    }
+
+    @Test
+    public void testGetAllReceiversWithTransactionStatus_ShouldReturnSortedNames() {
+        fillChainblockWithTransactions();
+        List<String> expectedTransactionReceivers = transactions.stream()
+                .filter(t -> t.getStatus().equals(TransactionStatus.SUCCESSFUL))
+                .sorted(Comparator.comparing(Transaction::getAmount).reversed())
+                .map(Transaction::getTo)
+                .collect(Collectors.toList());
+
+        Iterable<String> actualTransactionReceivers = chainblock.getAllReceiversWithTransactionStatus(TransactionStatus.SUCCESSFUL);
+
+        assertEquals(expectedTransactionReceivers, actualTransactionReceivers);
+    }
+
+    @Test
+    public void testGetAllInAmountRange_ShouldReturnTransactions() {
+        fillChainblockWithTransactions();
+        Iterable<Transaction> expectedTransactions = transactions.stream()
+                .filter(t -> t.getAmount() < 12 && t.getAmount() > 10)
+                .collect(Collectors.toList());
+
+        Iterable<Transaction> actualTransactions = chainblock.getAllInAmountRange(10, 12);
+
+        assertSameTransactions(expectedTransactions, actualTransactions);
+
+    }
+
+    @Test
+    public void testGetAllInAmountRange_ShouldReturnEmptyCollectionNoSuchTransactions() {
+        fillChainblockWithTransactions();
+        Iterable<Transaction> expectedTransactions = transactions.stream()
+                .filter(t -> t.getAmount() < 1000 && t.getAmount() > 1100)
+                .collect(Collectors.toList());
+
+        Iterable<Transaction> actualTransactions = chainblock.getAllInAmountRange(1000, 1100);
+
+        assertSameTransactions(expectedTransactions, actualTransactions);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetByReceiverAndAmountRange_ShouldThrowForNoSuchReceiver() {
+        fillChainblockWithTransactions();
+
+        chainblock.getByReceiverAndAmountRange("Ivan", 10, 12);
+
+    }
+
+    @Test
+    public void testGetByReceiverAndAmountRange_ShouldReturnTransactionInRangeReceiverSortedByAmount() {
+        fillChainblockWithTransactions();
+        List<Transaction> expectedTransactions = transactions.stream()
+                .filter(t -> t.getAmount() < 13 && t.getAmount() > 10)
+                .filter(t -> t.getTo().equals("Sasho"))
+                .sorted(Comparator.comparing(Transaction::getAmount).reversed())
+                .collect(Collectors.toList());
+
+        Iterable<Transaction> actualTransactions = chainblock.getByReceiverAndAmountRange("Sasho", 10, 13);
+        assertSameTransactions(expectedTransactions, actualTransactions);
+    }
+
+    @Test
+    public void testGetAllOrderedByAmountDescendingThenById_ShouldReturnTransactions() {
+        fillChainblockWithTransactions();
+
+        List<Transaction> expectedTransactions = transactions.stream()
+                .sorted(Comparator.comparing(Transaction::getAmount).reversed().thenComparing(Transaction::getId))
+                .collect(Collectors.toList());
+
+        Iterable<Transaction> actualTransactions = chainblock.getAllOrderedByAmountDescendingThenById();
+
+        assertSameTransactions(expectedTransactions, actualTransactions);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetByReceiverOrderedByAmountThenById_ShouldThrowForSuchTransaction() {
+        fillChainblockWithTransactions();
+
+        chainblock.getByReceiverOrderedByAmountThenById("Ivan");
+    }
+
+    @Test
+    public void testGetByReceiverOrderedByAmountThenById_ShouldReturnTransactions() {
+        fillChainblockWithTransactions();
+
+        Iterable<Transaction> expectedTransactions = transactions.stream()
+                .filter(t -> t.getTo().equals("Sasho"))
+                .sorted(Comparator.comparing(Transaction::getAmount).reversed().thenComparing(Transaction::getId))
+                .collect(Collectors.toList());
+
+        Iterable<Transaction> actualTransactions = chainblock.getByReceiverOrderedByAmountThenById("Sasho");
+
+        assertSameTransactions(expectedTransactions, actualTransactions);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetBySenderOrderedByAmountDescending_ShouldThrowForSuchTransaction() {
+        fillChainblockWithTransactions();
+
+        chainblock.getBySenderOrderedByAmountDescending("Ivan");
+    }
+
+    @Test
+    public void testGetBySenderOrderedByAmountDescending_ShouldReturnSortedTransactions() {
+        fillChainblockWithTransactions();
+
+        Iterable<Transaction> expectedTransactions = transactions.stream()
+                .filter(t -> t.getFrom().equals("Pesho"))
+                .sorted(Comparator.comparing(Transaction::getAmount).reversed())
+                .collect(Collectors.toList());
+
+        Iterable<Transaction> actualTransactions = chainblock.getBySenderOrderedByAmountDescending("Pesho");
+        assertSameTransactions(expectedTransactions, actualTransactions);
+    }
+
+    @Test
+    public void testGetByTransactionStatusAndMaximumAmount() {
+        fillChainblockWithTransactions();
+
+        Iterable<Transaction> expectedTransactions = transactions.stream()
+                .filter(t -> t.getStatus().equals(TransactionStatus.SUCCESSFUL) && t.getAmount() < 11)
+                .collect(Collectors.toList());
+
+        Iterable<Transaction> actualTransactions = chainblock.getByTransactionStatusAndMaximumAmount(TransactionStatus.SUCCESSFUL, 11);
+
+        assertSameTransactions(expectedTransactions, actualTransactions);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetBySenderAndMinimumAmountDescending_ShouldThrowForMissingTransaction() {
+        fillChainblockWithTransactions();
+
+        chainblock.getBySenderAndMinimumAmountDescending("Ivan", 1000);
+    }
+
+    @Test
+    public void testGetBySenderAndMinimumAmountDescending_ShouldReturnSortedAndFilteredTransactions() {
+        fillChainblockWithTransactions();
+
+        Iterable<Transaction> expectedTransactions = transactions.stream()
+                .filter(t -> t.getFrom().equals("Pesho") && t.getAmount() > 10)
+                .sorted(Comparator.comparing(Transaction::getAmount).reversed())
+                .collect(Collectors.toList());
+
+        Iterable<Transaction> actualTransactions = chainblock.getBySenderAndMinimumAmountDescending("Pesho", 10);
+
+        assertSameTransactions(expectedTransactions, actualTransactions);
+    }
+
+    @Test
+    public void testGetByTransactionStatus_ShouldReflectChangedStatus() {
+        fillChainblockWithTransactions();
+
+        chainblock.changeTransactionStatus(5, TransactionStatus.ABORTED);
+        transactions.get(5).setStatus(TransactionStatus.ABORTED);
+
+        Iterable<Transaction> actualAborted = chainblock.getByTransactionStatus(TransactionStatus.ABORTED);
+        List<Transaction> expectedSuccessful = transactions.stream()
+                .filter(t -> t.getStatus().equals(TransactionStatus.SUCCESSFUL))
+                .sorted(Comparator.comparing(Transaction::getAmount).reversed())
+                .collect(Collectors.toList());
+
+        assertSameTransactions(Collections.singletonList(transactions.get(5)), actualAborted);
+        assertSameTransactions(expectedSuccessful, chainblock.getByTransactionStatus(TransactionStatus.SUCCESSFUL));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetByTransactionStatus_ShouldThrowAfterLastTransactionRemoved() {
+        fillChainblockWithTransactions();
+
+        chainblock.removeTransactionById(3);
+
+        chainblock.getByTransactionStatus(TransactionStatus.FAILED);
+    }
+
+    @Test
+    public void testGetByTransactionStatusAndMaximumAmount_ShouldReflectChangedStatus() {
+        fillChainblockWithTransactions();
+
+        chainblock.changeTransactionStatus(2, TransactionStatus.SUCCESSFUL);
+        transactions.get(2).setStatus(TransactionStatus.SUCCESSFUL);
+        chainblock.removeTransactionById(6);
+
+        Iterable<Transaction> expectedTransactions = transactions.stream()
+                .filter(t -> t.getId() != 6)
+                .filter(t -> t.getStatus().equals(TransactionStatus.SUCCESSFUL) && t.getAmount() < 11.1)
+                .collect(Collectors.toList());
+
+        Iterable<Transaction> actualTransactions = chainblock.getByTransactionStatusAndMaximumAmount(TransactionStatus.SUCCESSFUL, 11.1);
+
+        assertSameTransactions(expectedTransactions, actualTransactions);
+    }
+
+    @Test
+    public void testGetBySenderOrderedByAmountDescending_ShouldBreakTiesById() {
+        chainblock.add(new TransactionImpl(9, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 10));
+        fillChainblockWithTransactions();
+
+        List<Integer> actualIds = new ArrayList<>();
+        chainblock.getBySenderOrderedByAmountDescending("Pesho").forEach(t -> actualIds.add(t.getId()));
+
+        assertEquals(Arrays.asList(5, 0, 1, 9), actualIds);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetBySenderOrderedByAmountDescending_ShouldThrowAfterSenderRemoved() {
+        fillChainblockWithTransactions();
+
+        chainblock.removeTransactionById(3);
+        chainblock.removeTransactionById(6);
+
+        chainblock.getBySenderOrderedByAmountDescending("Toshko");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetByReceiverAndAmountRange_ShouldThrowForEmptyRange() {
+        fillChainblockWithTransactions();
+
+        chainblock.getByReceiverAndAmountRange("Sasho", 13, 10);
+    }
+
+    @Test
+    public void testGetByReceiverAndAmountRange_ShouldExcludeBounds() {
+        fillChainblockWithTransactions();
+
+        Iterable<Transaction> actualTransactions = chainblock.getByReceiverAndAmountRange("Sasho", 9, 12.2);
+
+        assertSameTransactions(Collections.singletonList(transactions.get(0)), actualTransactions);
+    }
+
+    @Test
+    public void testGetAllInAmountRange_ShouldKeepInsertionOrder() {
+        fillChainblockWithTransactions();
+        Iterable<Transaction> expectedTransactions = transactions.stream()
+                .filter(t -> t.getAmount() < 14 && t.getAmount() > 9)
+                .collect(Collectors.toList());
+
+        Iterable<Transaction> actualTransactions = chainblock.getAllInAmountRange(9, 14);
+
+        assertSameTransactions(expectedTransactions, actualTransactions);
+    }
+
+    @Test
+    public void testAmountBounds_ShouldTreatSignedZerosAsEqual() {
+        Transaction negativeZero = new TransactionImpl(10, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", -0.0);
+        Transaction positiveZero = new TransactionImpl(11, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 0.0);
+        Transaction five = new TransactionImpl(12, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 5);
+        chainblock.add(negativeZero);
+        chainblock.add(positiveZero);
+        chainblock.add(five);
+
+        assertSameTransactions(Collections.emptyList(), toList(chainblock.getAllInAmountRange(-1, 0.0)));
+        assertSameTransactions(Collections.singletonList(five), toList(chainblock.getAllInAmountRange(-0.0, 10)));
+        assertSameTransactions(Collections.emptyList(),
+                toList(chainblock.getByTransactionStatusAndMaximumAmount(TransactionStatus.SUCCESSFUL, 0.0)));
+        assertSameTransactions(Collections.singletonList(five), toList(chainblock.getBySenderAndMinimumAmountDescending("Pesho", -0.0)));
+        assertSameTransactions(Arrays.asList(positiveZero, negativeZero),
+                toList(chainblock.getByReceiverAndAmountRange("Sasho", -1, 5)));
+    }
+
+    @Test
+    public void testAmountBounds_ShouldMatchNothingForNaN() {
+        fillChainblockWithTransactions();
+
+        assertSameTransactions(Collections.emptyList(), toList(chainblock.getAllInAmountRange(Double.NaN, 100)));
+        assertSameTransactions(Collections.emptyList(), toList(chainblock.getAllInAmountRange(0, Double.NaN)));
+        assertSameTransactions(Collections.emptyList(),
+                toList(chainblock.getByTransactionStatusAndMaximumAmount(TransactionStatus.SUCCESSFUL, Double.NaN)));
+        assertEquals(0, chainblock.forEachBySenderAndMinimumAmount("Pesho", Double.NaN, t -> { }));
+        assertEquals(0, chainblock.forEachByReceiverAndAmountRange("Sasho", Double.NaN, 100, t -> { }));
+        assertSameTransactions(Collections.emptyList(),
+                toList(chainblock.find(TransactionQuery.builder().minimumAmount(Double.NaN).build())));
+    }
+
+    @Test
+    public void testGetAllOrderedByAmountDescendingThenById_ShouldReflectRemoval() {
+        fillChainblockWithTransactions();
+
+        chainblock.removeTransactionById(5);
+
+        List<Transaction> expectedTransactions = transactions.stream()
+                .filter(t -> t.getId() != 5)
+                .sorted(Comparator.comparing(Transaction::getAmount).reversed().thenComparing(Transaction::getId))
+                .collect(Collectors.toList());
+
+        assertSameTransactions(expectedTransactions, chainblock.getAllOrderedByAmountDescendingThenById());
+    }
+
+    @Test
+    public void testIterator_ShouldReturnTransactionsInInsertionOrder() {
+        fillChainblockWithTransactions();
+        chainblock.removeTransactionById(2);
+
+        List<Transaction> actualTransactions = new ArrayList<>();
+        chainblock.forEach(actualTransactions::add);
+
+        List<Transaction> expectedTransactions = new ArrayList<>(transactions);
+        expectedTransactions.remove(2);
+        assertSameTransactions(expectedTransactions, actualTransactions);
+    }
+
+    static <T> List<T> toList(Iterable<T> iterable) {
+        List<T> list = new ArrayList<>();
+        iterable.forEach(list::add);
+        return list;
+    }
+
+    @Test
+    public void testTopQueries_ShouldMatchPrefixOfFullOrdering() {
+        fillChainblockWithTransactions();
+        chainblock.add(new TransactionImpl(7, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 11.20));
+
+        for (int count = 1; count <= 9; count++) {
+            assertSameTransactions(prefix(chainblock.getAllOrderedByAmountDescendingThenById(), count),
+                    toList(chainblock.getTopOrderedByAmountDescendingThenById(count)));
+            assertSameTransactions(prefix(chainblock.getBySenderOrderedByAmountDescending("Pesho"), count),
+                    toList(chainblock.getTopBySenderOrderedByAmountDescending("Pesho", count)));
+            assertSameTransactions(prefix(chainblock.getByTransactionStatus(TransactionStatus.SUCCESSFUL), count),
+                    toList(chainblock.getTopByTransactionStatus(TransactionStatus.SUCCESSFUL, count)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetTopByTransactionStatus_ShouldThrowIfNoSuchTransactions() {
+        fillChainblockWithTransactions();
+
+        chainblock.getTopByTransactionStatus(TransactionStatus.ABORTED, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetTopBySenderOrderedByAmountDescending_ShouldThrowForMissingSender() {
+        fillChainblockWithTransactions();
+
+        chainblock.getTopBySenderOrderedByAmountDescending("Ivan", 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetTopOrderedByAmountDescendingThenById_ShouldThrowForNonPositiveCount() {
+        fillChainblockWithTransactions();
+
+        chainblock.getTopOrderedByAmountDescendingThenById(0);
+    }
+
+    @Test
+    public void testPages_ShouldConcatenateToFullOrdering() {
+        fillChainblockWithTransactions();
+        chainblock.add(new TransactionImpl(7, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 11.20));
+
+        for (int size = 1; size <= 9; size++) {
+            int pageSize = size;
+            assertSameTransactions(toList(chainblock.getAllOrderedByAmountDescendingThenById()),
+                    allPages(after -> chainblock.getPageOrderedByAmountDescendingThenById(after, pageSize)));
+            assertSameTransactions(toList(chainblock.getByReceiverOrderedByAmountThenById("Sasho")),
+                    allPages(after -> chainblock.getPageByReceiverOrderedByAmountThenById("Sasho", after, pageSize)));
+        }
+    }
+
+    @Test
+    public void testPages_ShouldResumeAfterCursorDespiteConcurrentChanges() {
+        fillChainblockWithTransactions();
+        List<Transaction> firstPage = toList(chainblock.getPageOrderedByAmountDescendingThenById(PageCursor.FIRST, 3));
+        PageCursor cursor = PageCursor.after(firstPage.get(2));
+
+        chainblock.add(new TransactionImpl(7, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 20));
+        chainblock.add(new TransactionImpl(8, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 9.5));
+        chainblock.removeTransactionById(firstPage.get(2).getId());
+
+        List<Transaction> secondPage = toList(chainblock.getPageOrderedByAmountDescendingThenById(cursor, 3));
+        assertSameTransactions(Arrays.asList(transactions.get(2), transactions.get(4), transactions.get(1)), secondPage);
+        List<Transaction> lastPage = toList(chainblock.getPageOrderedByAmountDescendingThenById(PageCursor.after(secondPage.get(2)), 3));
+        assertEquals(Arrays.asList(8, 6), lastPage.stream().map(Transaction::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testPageByReceiver_ShouldReturnEmptyPageAfterLastRow() {
+        fillChainblockWithTransactions();
+
+        assertSameTransactions(Collections.emptyList(),
+                toList(chainblock.getPageByReceiverOrderedByAmountThenById("Toshko", PageCursor.after(10, 1), 5)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPageByReceiver_ShouldThrowForMissingReceiver() {
+        fillChainblockWithTransactions();
+
+        chainblock.getPageByReceiverOrderedByAmountThenById("Ivan", PageCursor.FIRST, 5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPage_ShouldThrowForNonPositivePageSize() {
+        fillChainblockWithTransactions();
+
+        chainblock.getPageOrderedByAmountDescendingThenById(PageCursor.FIRST, 0);
+    }
+
+    @Test
+    public void testFind_ShouldMatchFilteredOrderings() {
+        fillChainblockWithTransactions();
+        List<TransactionQuery> queries = Arrays.asList(
+                TransactionQuery.builder().build(),
+                TransactionQuery.builder().status(TransactionStatus.SUCCESSFUL).sender("Pesho").build(),
+                TransactionQuery.builder().status(TransactionStatus.SUCCESSFUL).minimumAmount(10).maximumAmount(14).build(),
+                TransactionQuery.builder().receiver("Sasho").maximumAmount(12.2).build(),
+                TransactionQuery.builder().sender("Sasho").receiver("Pesho").limit(1).build(),
+                TransactionQuery.builder().minimumAmount(10.5).orderBy(TransactionQuery.Order.INSERTION).build(),
+                TransactionQuery.builder().status(TransactionStatus.SUCCESSFUL).limit(2)
+                        .orderBy(TransactionQuery.Order.INSERTION).build(),
+                TransactionQuery.builder().id(3).status(TransactionStatus.FAILED).build(),
+                TransactionQuery.builder().id(3).status(TransactionStatus.SUCCESSFUL).build(),
+                TransactionQuery.builder().sender("Ivan").build());
+
+        for (TransactionQuery query : queries) {
+            List<Transaction> expected = transactions.stream()
+                    .filter(query::matches)
+                    .sorted(query.getOrder() == TransactionQuery.Order.INSERTION
+                            ? Comparator.comparingInt(transactions::indexOf)
+                            : TransactionOrder.AMOUNT_DESCENDING_THEN_ID)
+                    .limit(query.getLimit())
+                    .collect(Collectors.toList());
+
+            assertSameTransactions(expected, toList(chainblock.find(query)));
+        }
+    }
+
+    @Test
+    public void testTryGetById_ShouldReturnNullForMissingId() {
+        fillChainblockWithTransactions();
+        assertEquals(transactions.get(3).getId(), chainblock.tryGetById(3).getId());
+        assertNull(chainblock.tryGetById(42));
+    }
+
+    @Test
+    public void testForEach_ShouldVisitSameTransactionsAsThrowingQueries() {
+        fillChainblockWithTransactions();
+        for (TransactionStatus status : Arrays.asList(TransactionStatus.SUCCESSFUL, TransactionStatus.FAILED)) {
+            List<Transaction> visited = new ArrayList<>();
+            int count = chainblock.forEachByTransactionStatus(status, visited::add);
+            assertEquals(visited.size(), count);
+            assertSameTransactions(toList(chainblock.getByTransactionStatus(status)), visited);
+        }
+        for (String party : Arrays.asList("Pesho", "Sasho", "Toshko")) {
+            List<Transaction> visited = new ArrayList<>();
+            int count = chainblock.forEachBySender(party, visited::add);
+            assertEquals(visited.size(), count);
+            assertSameTransactions(toList(chainblock.getBySenderOrderedByAmountDescending(party)), visited);
+
+            visited.clear();
+            chainblock.forEachByReceiver(party, visited::add);
+            assertSameTransactions(toList(chainblock.getByReceiverOrderedByAmountThenById(party)), visited);
+        }
+
+        List<Transaction> visited = new ArrayList<>();
+        assertEquals(2, chainblock.forEachBySenderAndMinimumAmount("Pesho", 10, visited::add));
+        assertSameTransactions(toList(chainblock.getBySenderAndMinimumAmountDescending("Pesho", 10)), visited);
+
+        visited.clear();
+        assertEquals(2, chainblock.forEachByReceiverAndAmountRange("Sasho", 9, 13, visited::add));
+        assertSameTransactions(toList(chainblock.getByReceiverAndAmountRange("Sasho", 9, 13)), visited);
+    }
+
+    @Test
+    public void testForEach_ShouldReturnZeroWithoutVisitingOnMiss() {
+        fillChainblockWithTransactions();
+        List<Transaction> visited = new ArrayList<>();
+        assertEquals(0, chainblock.forEachByTransactionStatus(TransactionStatus.ABORTED, visited::add));
+        assertEquals(0, chainblock.forEachBySender("Ivan", visited::add));
+        assertEquals(0, chainblock.forEachByReceiver("Ivan", visited::add));
+        assertEquals(0, chainblock.forEachBySenderAndMinimumAmount("Pesho", 14, visited::add));
+        assertEquals(0, chainblock.forEachByReceiverAndAmountRange("Sasho", 14, 9, visited::add));
+        assertTrue(visited.isEmpty());
+    }
+
+    @Test
+    public void testForEachBySenderAndMinimumAmount_ShouldSkipNaNAmounts() {
+        fillChainblockWithTransactions();
+        chainblock.add(new TransactionImpl(7, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", Double.NaN));
+
+        List<Transaction> visited = new ArrayList<>();
+        assertEquals(2, chainblock.forEachBySenderAndMinimumAmount("Pesho", 10, visited::add));
+        assertSameTransactions(Arrays.asList(transactions.get(5), transactions.get(0)), visited);
+        assertSameTransactions(visited, toList(chainblock.getBySenderAndMinimumAmountDescending("Pesho", 10)));
+    }
+
+    /**
+     * Compares transactions by value, since implementations that store
+     * columns or files hand out fresh instances on every read.
+     */
+    private static void assertSameTransactions(Object expected, Object actual) {
+        assertEquals(described(expected), described(actual));
+    }
+
+    private static Object described(Object value) {
+        if (value instanceof Transaction) {
+            Transaction t = (Transaction) value;
+            return t.getId() + ":" + t.getStatus() + ":" + t.getFrom() + ":" + t.getTo() + ":" + t.getAmount();
+        }
+        List<Object> described = new ArrayList<>();
+        for (Object item : (Iterable<?>) value) {
+            described.add(described(item));
+        }
+        return described;
+    }
+
+    private static List<Transaction> allPages(Function<PageCursor, Iterable<Transaction>> page) {
+        List<Transaction> all = new ArrayList<>();
+        PageCursor cursor = PageCursor.FIRST;
+        while (true) {
+            List<Transaction> next = toList(page.apply(cursor));
+            if (next.isEmpty()) {
+                return all;
+            }
+            all.addAll(next);
+            cursor = PageCursor.after(next.get(next.size() - 1));
+        }
+    }
+
+    private static <T> List<T> prefix(Iterable<T> iterable, int count) {
+        List<T> list = toList(iterable);
+        return list.subList(0, Math.min(count, list.size()));
+    }
+
+    @Test
+    public void testAddAll_ShouldMatchAddingOneByOne() {
+        Chainblock oneByOne = new ChainblockImpl();
+        transactions.forEach(oneByOne::add);
+        chainblock.add(transactions.get(3));
+
+        chainblock.addAll(transactions);
+
+        assertEquals(transactions.size(), chainblock.getCount());
+        assertSameTransactions(toList(oneByOne), toList(chainblock).stream()
+                .sorted(Comparator.comparing(Transaction::getId))
+                .collect(Collectors.toList()));
+        assertSameTransactions(toList(oneByOne.getAllOrderedByAmountDescendingThenById()), toList(chainblock.getAllOrderedByAmountDescendingThenById()));
+        assertSameTransactions(toList(oneByOne.getByTransactionStatus(TransactionStatus.SUCCESSFUL)), toList(chainblock.getByTransactionStatus(TransactionStatus.SUCCESSFUL)));
+        assertSameTransactions(toList(oneByOne.getBySenderOrderedByAmountDescending("Pesho")), toList(chainblock.getBySenderOrderedByAmountDescending("Pesho")));
+        assertSameTransactions(toList(oneByOne.getByReceiverOrderedByAmountThenById("Sasho")), toList(chainblock.getByReceiverOrderedByAmountThenById("Sasho")));
+    }
+
+    @Test
+    public void testAddAll_ShouldKeepFirstOfDuplicateIds() {
+        Transaction duplicate = new TransactionImpl(0, TransactionStatus.FAILED, "Ivan", "Ivan", 1);
+        chainblock.addAll(Arrays.asList(transactions.get(0), duplicate, transactions.get(1)));
+
+        assertEquals(2, chainblock.getCount());
+        assertSameTransactions(transactions.get(0), chainblock.getById(0));
+    }
+}
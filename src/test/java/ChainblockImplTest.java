@@ -1,331 +1,145 @@
-import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 
-public class ChainblockImplTest {
+public class ChainblockImplTest extends ChainblockContractTest {
 
-    private Chainblock chainblock;
-    private List<Transaction> transactions;
-
-    @Before
-    public void prepare() {
-        this.chainblock = new ChainblockImpl();
-        this.transactions = new ArrayList<>();
-        this.prepareTransactions();
-
-    }
-
-    private void fillChainblockWithTransactions() {
-        transactions.forEach(t -> chainblock.add(t));
-    }
-
-    private void prepareTransactions() {
-        Transaction transaction = new TransactionImpl(0, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 11.20);
-        Transaction transaction1 = new TransactionImpl(1, TransactionStatus.SUCCESSFUL, "Pesho", "Toshko", 10);
-        Transaction transaction2 = new TransactionImpl(2, TransactionStatus.UNAUTHORIZED, "Sasho", "Pesho", 11.0);
-        Transaction transaction3 = new TransactionImpl(3, TransactionStatus.FAILED, "Toshko", "Sasho", 12.20);
-        Transaction transaction4 = new TransactionImpl(4, TransactionStatus.SUCCESSFUL, "Sasho", "Pesho", 10.50);
-        Transaction transaction5 = new TransactionImpl(5, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 14);
-        Transaction transaction6 = new TransactionImpl(6, TransactionStatus.SUCCESSFUL, "Toshko", "Sasho", 9);
-        transactions.add(transaction);
-        transactions.add(transaction1);
-        transactions.add(transaction2);
-        transactions.add(transaction3);
-        transactions.add(transaction4);
-        transactions.add(transaction5);
-        transactions.add(transaction6);
-    }
-
-    @Test
-    public void testAdd_ShouldAddTransaction() {
-        chainblock.add(transactions.get(0));
-        assertEquals(1, chainblock.getCount());
-        chainblock.add(transactions.get(1));
-        assertEquals(2, chainblock.getCount());
-
-    }
-
-    @Test
-    public void testAdd_ShouldNotAddDuplicateTransaction() {
-        chainblock.add(transactions.get(0));
-        chainblock.add(transactions.get(0));
-        assertEquals(1, chainblock.getCount());
-    }
-
-    @Test
-    public void testContains_WithTransactionShouldReturnFalse() {
-        chainblock.add(transactions.get(0));
-        boolean chainBlockContainsTransaction = chainblock.contains(transactions.get(1));
-        assertFalse(chainBlockContainsTransaction);
-    }
-
-    @Test
-    public void testContains_WithTransactionShouldReturnTrue() {
-        chainblock.add(transactions.get(1));
-        boolean chainBlockContainsTransaction = chainblock.contains(transactions.get(1));
-        assertTrue(chainBlockContainsTransaction);
-    }
-
-    @Test
-    public void testContainsWithID_ShouldReturnFalse() {
-        chainblock.add(transactions.get(0));
-        boolean chainBlockContainsID = chainblock.contains(transactions.get(1).getId());
-        assertFalse(chainBlockContainsID);
-    }
-
-    @Test
-    public void testContainsWithID_ShouldReturnTrue() {
-        chainblock.add(transactions.get(0));
-        boolean chainBlockContainsID = chainblock.contains(transactions.get(0).getId());
-        assertTrue(chainBlockContainsID);
-    }
-
-    @Test(expected = IllegalArgumentException.class)
-    public void testChangeTransactionStatus_ShouldThrowForMissingTransaction() {
-        chainblock.changeTransactionStatus(100, TransactionStatus.FAILED);
-    }
-
-    @Test
-    public void testChangeTransactionStatus_ShouldChangeStatus() {
-        chainblock.add(transactions.get(0));
-
-        chainblock.changeTransactionStatus(transactions.get(0).getId(), TransactionStatus.FAILED);
-
-        TransactionStatus newTransactionStatus = chainblock.getById(transactions.get(0).getId()).getStatus();
-
-        assertEquals(TransactionStatus.FAILED, newTransactionStatus);
-    }
-
-    @Test
-    public void testGetByID_ShouldReturnTransaction() {
-        chainblock.add(transactions.get(0));
-
-        Transaction actual = chainblock.getById(transactions.get(0).getId());
-
-        assertEquals(transactions.get(0), actual);
-    }
-
-    @Test(expected = IllegalArgumentException.class)
-    public void testGetByID_ShouldThrowForMissingTransaction() {
-        fillChainblockWithTransactions();
-
-        chainblock.getById(199);
-    }
-
-    @Test(expected = IllegalArgumentException.class)
-    public void testRemoveTransactionByID_ShouldThrowForMissingTransaction() {
-        fillChainblockWithTransactions();
-
-        chainblock.removeTransactionById(200);
-    }
-
-    @Test
-    public void testRemoveTransactionByID_ShouldRemove() {
-        fillChainblockWithTransactions();
-
-        chainblock.removeTransactionById(1);
-
-        assertFalse(chainblock.contains(1));
+    @Override
+    protected Chainblock createChainblock() {
+        return new ChainblockImpl();
     }
 
-    @Test(expected = IllegalArgumentException.class)
-    public void testGetByTransactionStatus_ShouldThrowIfNoSuchTransactions() {
-        fillChainblockWithTransactions();
+    @Test(expected = ConcurrentModificationException.class)
+    public void testIterator_ShouldFailFastOnModification() {
+        Chainblock chainblock = new ChainblockImpl();
+        transactions.forEach(chainblock::add);
 
-        chainblock.getByTransactionStatus(TransactionStatus.ABORTED);
+        for (Transaction transaction : chainblock) {
+            chainblock.removeTransactionById(transaction.getId());
+        }
     }
 
     @Test
-    public void testGetByTransactionStatus_ShouldReturnSortedByDescending() {
-        fillChainblockWithTransactions();
-        Iterable<Transaction> expectedTransactions = transactions.stream()
-                .filter(t -> t.getStatus().equals(TransactionStatus.SUCCESSFUL))
-                .sorted(Comparator.comparing(Transaction::getAmount).reversed())
-                .collect(Collectors.toList());
+    public void testLazyResults_ShouldMatchEagerResults() {
+        Chainblock eager = new ChainblockImpl();
+        Chainblock lazy = new ChainblockImpl(true);
+        transactions.forEach(eager::add);
+        transactions.forEach(lazy::add);
 
-        Iterable<Transaction> actualTransactions = chainblock.getByTransactionStatus(TransactionStatus.SUCCESSFUL);
-        assertEquals(expectedTransactions, actualTransactions);
+        assertEquals(eager.getAllOrderedByAmountDescendingThenById(), toList(lazy.getAllOrderedByAmountDescendingThenById()));
+        assertEquals(eager.getByTransactionStatus(TransactionStatus.SUCCESSFUL), toList(lazy.getByTransactionStatus(TransactionStatus.SUCCESSFUL)));
+        assertEquals(eager.getAllSendersWithTransactionStatus(TransactionStatus.SUCCESSFUL), toList(lazy.getAllSendersWithTransactionStatus(TransactionStatus.SUCCESSFUL)));
+        assertEquals(eager.getAllReceiversWithTransactionStatus(TransactionStatus.SUCCESSFUL), toList(lazy.getAllReceiversWithTransactionStatus(TransactionStatus.SUCCESSFUL)));
+        assertEquals(eager.getBySenderOrderedByAmountDescending("Pesho"), toList(lazy.getBySenderOrderedByAmountDescending("Pesho")));
+        assertEquals(eager.getByReceiverOrderedByAmountThenById("Sasho"), toList(lazy.getByReceiverOrderedByAmountThenById("Sasho")));
+        assertEquals(eager.getByTransactionStatusAndMaximumAmount(TransactionStatus.SUCCESSFUL, 11), toList(lazy.getByTransactionStatusAndMaximumAmount(TransactionStatus.SUCCESSFUL, 11)));
+        assertEquals(eager.getBySenderAndMinimumAmountDescending("Pesho", 10), toList(lazy.getBySenderAndMinimumAmountDescending("Pesho", 10)));
+        assertEquals(eager.getByReceiverAndAmountRange("Sasho", 10, 13), toList(lazy.getByReceiverAndAmountRange("Sasho", 10, 13)));
+        assertEquals(eager.getAllInAmountRange(9, 14), toList(lazy.getAllInAmountRange(9, 14)));
     }
 
     @Test(expected = IllegalArgumentException.class)
-    public void testGetAllSendersWithTransactionStatus_ShouldThrowIfNoTransactions() {
-        fillChainblockWithTransactions();
+    public void testLazyResults_ShouldStillThrowEagerlyWhenEmpty() {
+        Chainblock lazy = new ChainblockImpl(true);
+        transactions.forEach(lazy::add);
 
-        chainblock.getAllSendersWithTransactionStatus(TransactionStatus.ABORTED);
+        lazy.getBySenderOrderedByAmountDescending("Ivan");
     }
 
     @Test
-    public void testGetAllSendersWithTransactionStatus_ShouldReturnSortedNames() {
-        fillChainblockWithTransactions();
-        List<String> expectedTransactionSenders = transactions.stream()
-                .filter(t -> t.getStatus().equals(TransactionStatus.SUCCESSFUL))
-                .sorted(Comparator.comparing(Transaction::getAmount).reversed())
-                .map(Transaction::getFrom)
-                .collect(Collectors.toList());
+    public void testLazyResults_ShouldStopAtFirstElement() {
+        Chainblock lazy = new ChainblockImpl(true);
+        transactions.forEach(lazy::add);
 
-        Iterable<String> actualTransactionSenders = chainblock.getAllSendersWithTransactionStatus(TransactionStatus.SUCCESSFUL);
+        Transaction first = lazy.getAllOrderedByAmountDescendingThenById().iterator().next();
 
-        assertEquals(expectedTransactionSenders, actualTransactionSenders);
-    }
-
-    @Test(expected = IllegalArgumentException.class)
-    public void testGetAllReceiversWithTransactionStatus_ShouldThrowIfNoTransactions() {
-        fillChainblockWithTransactions();
-
-        chainblock.getAllSendersWithTransactionStatus(TransactionStatus.ABORTED);
+        assertEquals(transactions.get(5), first);
     }
 
     @Test
-    public void testGetAllReceiversWithTransactionStatus_ShouldReturnSortedNames() {
-        fillChainblockWithTransactions();
-        List<String> expectedTransactionReceivers = transactions.stream()
-                .filter(t -> t.getStatus().equals(TransactionStatus.SUCCESSFUL))
-                .sorted(Comparator.comparing(Transaction::getAmount).reversed())
-                .map(Transaction::getTo)
-                .collect(Collectors.toList());
+    public void testLazyResults_ShouldStayLiveAfterPartyIsEmptiedAndReused() {
+        Chainblock lazy = new ChainblockImpl(true);
+        Transaction first = new TransactionImpl(1, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 10);
+        Transaction second = new TransactionImpl(2, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 20);
+        lazy.add(first);
+        Iterable<Transaction> bySender = lazy.getBySenderOrderedByAmountDescending("Pesho");
+        Iterable<Transaction> byReceiver = lazy.getByReceiverAndAmountRange("Sasho", 0, 100);
+        Iterable<Transaction> inRange = lazy.getAllInAmountRange(0, 100);
 
-        Iterable<String> actualTransactionReceivers = chainblock.getAllReceiversWithTransactionStatus(TransactionStatus.SUCCESSFUL);
+        lazy.removeTransactionById(1);
+        lazy.add(second);
+        lazy.add(first);
 
-        assertEquals(expectedTransactionReceivers, actualTransactionReceivers);
+        assertEquals(Arrays.asList(second, first), toList(bySender));
+        assertEquals(Arrays.asList(second, first), toList(byReceiver));
+        assertEquals(Arrays.asList(second, first), toList(inRange));
     }
 
     @Test
-    public void testGetAllInAmountRange_ShouldReturnTransactions() {
-        fillChainblockWithTransactions();
-        Iterable<Transaction> expectedTransactions = transactions.stream()
-                .filter(t -> t.getAmount() < 12 && t.getAmount() > 10)
-                .collect(Collectors.toList());
-
-        Iterable<Transaction> actualTransactions = chainblock.getAllInAmountRange(10, 12);
+    public void testLazyResults_ShouldShowEmptiedPartyAsEmpty() {
+        Chainblock lazy = new ChainblockImpl(true);
+        lazy.add(new TransactionImpl(1, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 10));
+        Iterable<Transaction> bySender = lazy.getBySenderAndMinimumAmountDescending("Pesho", 5);
+        Iterable<Transaction> byReceiver = lazy.getByReceiverOrderedByAmountThenById("Sasho");
 
-        assertEquals(expectedTransactions, actualTransactions);
+        lazy.removeTransactionById(1);
 
+        assertFalse(bySender.iterator().hasNext());
+        assertFalse(byReceiver.iterator().hasNext());
+        assertEquals(0, lazy.forEachBySender("Pesho", t -> fail()));
     }
 
     @Test
-    public void testGetAllInAmountRange_ShouldReturnEmptyCollectionNoSuchTransactions() {
-        fillChainblockWithTransactions();
-        Iterable<Transaction> expectedTransactions = transactions.stream()
-                .filter(t -> t.getAmount() < 1000 && t.getAmount() > 1100)
-                .collect(Collectors.toList());
-
-        Iterable<Transaction> actualTransactions = chainblock.getAllInAmountRange(1000, 1100);
+    public void testFind_ShouldPlanOnMostSelectiveIndex() {
+        ChainblockImpl impl = new ChainblockImpl();
+        transactions.forEach(impl::add);
 
-        assertEquals(expectedTransactions, actualTransactions);
-    }
-
-    @Test(expected = IllegalArgumentException.class)
-    public void testGetByReceiverAndAmountRange_ShouldThrowForNoSuchReceiver() {
-        fillChainblockWithTransactions();
-
-        chainblock.getByReceiverAndAmountRange("Ivan", 10, 12);
-
-    }
-
-    @Test
-    public void testGetByReceiverAndAmountRange_ShouldReturnTransactionInRangeReceiverSortedByAmount() {
-        fillChainblockWithTransactions();
-        List<Transaction> expectedTransactions = transactions.stream()
-                .filter(t -> t.getAmount() < 13 && t.getAmount() > 10)
-                .filter(t -> t.getTo().equals("Sasho"))
-                .sorted(Comparator.comparing(Transaction::getAmount).reversed())
-                .collect(Collectors.toList());
-
-        Iterable<Transaction> actualTransactions = chainblock.getByReceiverAndAmountRange("Sasho", 10, 13);
-        assertEquals(expectedTransactions, actualTransactions);
+        assertEquals(TransactionQuery.AccessPath.ID, impl.plan(TransactionQuery.builder().id(1).sender("Pesho").build()));
+        assertEquals(TransactionQuery.AccessPath.STATUS, impl.plan(TransactionQuery.builder()
+                .status(TransactionStatus.FAILED).sender("Pesho").build()));
+        assertEquals(TransactionQuery.AccessPath.RECEIVER, impl.plan(TransactionQuery.builder()
+                .status(TransactionStatus.SUCCESSFUL).sender("Pesho").receiver("Toshko").build()));
+        assertEquals(TransactionQuery.AccessPath.AMOUNT, impl.plan(TransactionQuery.builder().minimumAmount(11).build()));
     }
 
     @Test
-    public void testGetAllOrderedByAmountDescendingThenById_ShouldReturnTransactions() {
-        fillChainblockWithTransactions();
+    public void testFind_ShouldPlanOnSelectiveAmountRange() {
+        ChainblockImpl impl = new ChainblockImpl();
+        for (int i = 1; i <= 20; i++) {
+            impl.add(new TransactionImpl(i, TransactionStatus.SUCCESSFUL, "Pesho", "Gosho", i));
+        }
+        impl.add(new TransactionImpl(21, TransactionStatus.SUCCESSFUL, "Toshko", "Gosho", 21));
+        TransactionQuery query = TransactionQuery.builder()
+                .status(TransactionStatus.SUCCESSFUL).sender("Pesho").minimumAmount(17).maximumAmount(19).build();
 
-        List<Transaction> expectedTransactions = transactions.stream()
-                .sorted(Comparator.comparing(Transaction::getAmount).reversed().thenComparing(Transaction::getId))
-                .collect(Collectors.toList());
-
-        Iterable<Transaction> actualTransactions = chainblock.getAllOrderedByAmountDescendingThenById();
-
-        assertEquals(expectedTransactions, actualTransactions);
+        assertEquals(TransactionQuery.AccessPath.AMOUNT, impl.plan(query));
+        assertEquals(TransactionQuery.AccessPath.SENDER, impl.plan(TransactionQuery.builder()
+                .sender("Pesho").minimumAmount(0).build()));
+        List<Transaction> found = new ArrayList<>();
+        impl.find(query).forEach(found::add);
+        assertEquals(Collections.singletonList(impl.getById(18)), found);
     }
 
     @Test(expected = IllegalArgumentException.class)
-    public void testGetByReceiverOrderedByAmountThenById_ShouldThrowForSuchTransaction() {
-        fillChainblockWithTransactions();
-
-        chainblock.getByReceiverOrderedByAmountThenById("Ivan");
+    public void testQueryBuilder_ShouldRejectNonPositiveLimit() {
+        TransactionQuery.builder().limit(0);
     }
 
     @Test
-    public void testGetByReceiverOrderedByAmountThenById_ShouldReturnTransactions() {
-        fillChainblockWithTransactions();
-
-        Iterable<Transaction> expectedTransactions = transactions.stream()
-                .filter(t -> t.getTo().equals("Sasho"))
-                .sorted(Comparator.comparing(Transaction::getAmount).reversed().thenComparing(Transaction::getId))
-                .collect(Collectors.toList());
-
-        Iterable<Transaction> actualTransactions = chainblock.getByReceiverOrderedByAmountThenById("Sasho");
-
-        assertEquals(expectedTransactions, actualTransactions);
-    }
-
-    @Test(expected = IllegalArgumentException.class)
-    public void testGetBySenderOrderedByAmountDescending_ShouldThrowForSuchTransaction() {
-        fillChainblockWithTransactions();
-
-        chainblock.getBySenderOrderedByAmountDescending("Ivan");
-    }
-
-    @Test
-    public void testGetBySenderOrderedByAmountDescending_ShouldReturnSortedTransactions() {
-        fillChainblockWithTransactions();
-
-        Iterable<Transaction> expectedTransactions = transactions.stream()
-                .filter(t -> t.getFrom().equals("Pesho"))
-                .sorted(Comparator.comparing(Transaction::getAmount).reversed())
-                .collect(Collectors.toList());
-
-        Iterable<Transaction> actualTransactions = chainblock.getBySenderOrderedByAmountDescending("Pesho");
-        assertEquals(expectedTransactions, actualTransactions);
-    }
-
-    @Test
-    public void testGetByTransactionStatusAndMaximumAmount() {
-        fillChainblockWithTransactions();
-
-        Iterable<Transaction> expectedTransactions = transactions.stream()
-                .filter(t -> t.getStatus().equals(TransactionStatus.SUCCESSFUL) && t.getAmount() < 11)
-                .collect(Collectors.toList());
-
-        Iterable<Transaction> actualTransactions = chainblock.getByTransactionStatusAndMaximumAmount(TransactionStatus.SUCCESSFUL, 11);
-
-        assertEquals(expectedTransactions, actualTransactions);
-    }
-
-    @Test(expected = IllegalArgumentException.class)
-    public void testGetBySenderAndMinimumAmountDescending_ShouldThrowForMissingTransaction() {
-        fillChainblockWithTransactions();
-
-        chainblock.getBySenderAndMinimumAmountDescending("Ivan", 1000);
-    }
-
-    @Test
-    public void testGetBySenderAndMinimumAmountDescending_ShouldReturnSortedAndFilteredTransactions() {
-        fillChainblockWithTransactions();
-
-        Iterable<Transaction> expectedTransactions = transactions.stream()
-                .filter(t -> t.getFrom().equals("Pesho") && t.getAmount() > 10)
-                .sorted(Comparator.comparing(Transaction::getAmount).reversed())
-                .collect(Collectors.toList());
-
-        Iterable<Transaction> actualTransactions = chainblock.getBySenderAndMinimumAmountDescending("Pesho", 10);
+    public void testBuilder_ShouldBuildPopulatedChainblock() {
+        Chainblock built = ChainblockImpl.builder()
+                .expectedSize(100)
+                .add(transactions.get(0))
+                .addAll(transactions)
+                .build();
 
-        assertEquals(expectedTransactions, actualTransactions);
+        assertEquals(transactions, toList(built));
+        assertEquals(Collections.singletonList(transactions.get(3)), toList(built.getByTransactionStatus(TransactionStatus.FAILED)));
     }
-}
\ No newline at end of file
+}
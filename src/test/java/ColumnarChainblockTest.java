@@ -0,0 +1,144 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import static org.junit.Assert.*;
+
+public class ColumnarChainblockTest extends ChainblockContractTest {
+
+    private static final String[] PARTIES = {"Pesho", "Sasho", "Toshko", "Gosho", "Ivan"};
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    @Override
+    protected Chainblock createChainblock() {
+        return new ColumnarChainblock();
+    }
+
+    @Test
+    public void testOnHeapColumns_ShouldMatchChainblockImpl() {
+        assertMatchesReference(new ColumnarChainblock(), 1);
+    }
+
+    @Test
+    public void testOffHeapColumns_ShouldMatchChainblockImpl() {
+        assertMatchesReference(new ColumnarChainblock(new StringDictionary(), true), 2);
+    }
+
+    @Test
+    public void testSharedDictionary_ShouldEncodeEachPartyOnce() {
+        StringDictionary dictionary = new StringDictionary();
+        Chainblock first = new ColumnarChainblock(dictionary, false);
+        Chainblock second = new ColumnarChainblock(dictionary, true);
+
+        first.add(new TransactionImpl(1, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 10));
+        second.add(new TransactionImpl(1, TransactionStatus.FAILED, "Sasho", "Pesho", 20));
+
+        assertEquals(2, dictionary.size());
+        assertEquals("Sasho", second.getById(1).getFrom());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetById_ShouldThrowAfterRemove() {
+        Chainblock chainblock = new ColumnarChainblock();
+        chainblock.add(new TransactionImpl(1, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 10));
+
+        chainblock.removeTransactionById(1);
+
+        chainblock.getById(1);
+    }
+
+    private static void assertMatchesReference(Chainblock columnar, long seed) {
+        Chainblock reference = new ChainblockImpl();
+        Random random = new Random(seed);
+
+        for (int step = 0; step < 3_000; step++) {
+            int id = random.nextInt(500);
+            int operation = random.nextInt(10);
+            if (operation < 6) {
+                Transaction transaction = new TransactionImpl(id, STATUSES[random.nextInt(STATUSES.length)],
+                        PARTIES[random.nextInt(PARTIES.length)], PARTIES[random.nextInt(PARTIES.length)],
+                        random.nextInt(50) / 2.0);
+                reference.add(transaction);
+                columnar.add(new TransactionImpl(id, transaction.getStatus(), transaction.getFrom(),
+                        transaction.getTo(), transaction.getAmount()));
+            } else if (operation < 8 && reference.contains(id)) {
+                TransactionStatus status = STATUSES[random.nextInt(STATUSES.length)];
+                reference.changeTransactionStatus(id, status);
+                columnar.changeTransactionStatus(id, status);
+            } else if (reference.contains(id)) {
+                reference.removeTransactionById(id);
+                columnar.removeTransactionById(id);
+            }
+        }
+
+        assertEquals(reference.getCount(), columnar.getCount());
+        assertSameResult(reference, columnar, c -> c.getAllOrderedByAmountDescendingThenById());
+        assertSameResult(reference, columnar, c -> c.getAllInAmountRange(5, 17.5));
+        assertSameResult(reference, columnar, c -> c);
+        assertSameResult(reference, columnar, c -> c.getTopOrderedByAmountDescendingThenById(25));
+        assertSameResult(reference, columnar, c -> c.getPageOrderedByAmountDescendingThenById(PageCursor.after(12, 100), 10));
+        for (TransactionStatus status : STATUSES) {
+            assertSameResult(reference, columnar, c -> c.getByTransactionStatus(status));
+            assertSameResult(reference, columnar, c -> c.getAllSendersWithTransactionStatus(status));
+            assertSameResult(reference, columnar, c -> c.getAllReceiversWithTransactionStatus(status));
+            assertSameResult(reference, columnar, c -> c.getByTransactionStatusAndMaximumAmount(status, 12));
+            assertSameResult(reference, columnar, c -> c.getTopByTransactionStatus(status, 7));
+            assertSameResult(reference, columnar, c -> c.find(TransactionQuery.builder().status(status)
+                    .minimumAmount(4).maximumAmount(20).orderBy(TransactionQuery.Order.INSERTION).limit(9).build()));
+            assertSameResult(reference, columnar, c -> visited(action -> c.forEachByTransactionStatus(status, action)));
+        }
+        for (String party : PARTIES) {
+            assertSameResult(reference, columnar, c -> c.getBySenderOrderedByAmountDescending(party));
+            assertSameResult(reference, columnar, c -> c.getBySenderAndMinimumAmountDescending(party, 20));
+            assertSameResult(reference, columnar, c -> c.getTopBySenderOrderedByAmountDescending(party, 5));
+            assertSameResult(reference, columnar, c -> c.getByReceiverOrderedByAmountThenById(party));
+            assertSameResult(reference, columnar, c -> c.getByReceiverAndAmountRange(party, 3, 9));
+            assertSameResult(reference, columnar, c -> c.find(TransactionQuery.builder().sender(party)
+                    .receiver("Pesho").maximumAmount(15).limit(6).build()));
+            assertSameResult(reference, columnar, c -> c.getPageByReceiverOrderedByAmountThenById(party, PageCursor.after(12, 100), 4));
+            assertSameResult(reference, columnar, c -> visited(action -> c.forEachBySender(party, action)));
+            assertSameResult(reference, columnar, c -> visited(action -> c.forEachBySenderAndMinimumAmount(party, 20, action)));
+            assertSameResult(reference, columnar, c -> visited(action -> c.forEachByReceiver(party, action)));
+            assertSameResult(reference, columnar, c -> visited(action -> c.forEachByReceiverAndAmountRange(party, 3, 9, action)));
+        }
+        for (int id = 0; id < 500; id++) {
+            assertEquals(reference.contains(id), columnar.contains(id));
+            assertEquals(reference.contains(id), columnar.tryGetById(id) != null);
+            if (reference.contains(id)) {
+                assertEquals(describe(reference.getById(id)), describe(columnar.getById(id)));
+            }
+        }
+    }
+
+    private static void assertSameResult(Chainblock reference, Chainblock columnar, Function<Chainblock, Iterable<?>> query) {
+        assertEquals(describeOrThrown(reference, query), describeOrThrown(columnar, query));
+    }
+
+    private static List<Transaction> visited(ToIntFunction<Consumer<? super Transaction>> visitor) {
+        List<Transaction> visited = new ArrayList<>();
+        assertEquals(visitor.applyAsInt(visited::add), visited.size());
+        return visited;
+    }
+
+    private static List<String> describeOrThrown(Chainblock chainblock, Function<Chainblock, Iterable<?>> query) {
+        List<String> described = new ArrayList<>();
+        try {
+            for (Object item : query.apply(chainblock)) {
+                described.add(item instanceof Transaction ? describe((Transaction) item) : String.valueOf(item));
+            }
+        } catch (IllegalArgumentException e) {
+            described.add("IllegalArgumentException");
+        }
+        return described;
+    }
+
+    private static String describe(Transaction transaction) {
+        return transaction.getId() + ":" + transaction.getStatus() + ":" + transaction.getFrom()
+                + ":" + transaction.getTo() + ":" + transaction.getAmount();
+    }
+}
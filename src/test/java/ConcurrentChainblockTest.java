@@ -0,0 +1,214 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentChainblockTest extends ChainblockContractTest {
+
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int IDS_PER_WRITER = 2_000;
+
+    @Override
+    protected Chainblock createChainblock() {
+        return new ConcurrentChainblock();
+    }
+
+    @Test
+    public void testConcurrentAdds_ShouldAllBeVisible() throws Exception {
+        Chainblock concurrent = new ConcurrentChainblock();
+
+        runConcurrently(WRITERS, writer -> {
+            for (int i = 0; i < IDS_PER_WRITER; i++) {
+                concurrent.add(new TransactionImpl(idOf(writer, i), TransactionStatus.SUCCESSFUL, "w" + writer, "r", i));
+            }
+        });
+
+        assertEquals(WRITERS * IDS_PER_WRITER, concurrent.getCount());
+        List<Transaction> ordered = new ArrayList<>();
+        concurrent.getAllOrderedByAmountDescendingThenById().forEach(ordered::add);
+        assertEquals(WRITERS * IDS_PER_WRITER, ordered.size());
+        for (int writer = 0; writer < WRITERS; writer++) {
+            List<Transaction> bySender = new ArrayList<>();
+            concurrent.getBySenderOrderedByAmountDescending("w" + writer).forEach(bySender::add);
+            assertEquals(IDS_PER_WRITER, bySender.size());
+        }
+    }
+
+    @Test
+    public void testQueriesUnderConcurrentWrites_ShouldObserveOnlyWriterPrefixes() throws Exception {
+        ConcurrentChainblock concurrent = new ConcurrentChainblock();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(READERS);
+        List<Future<Integer>> checks = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            checks.add(readers.submit(() -> {
+                int observed = 0;
+                while (writing.get()) {
+                    assertPrefixes(concurrent.getAllInAmountRange(-1, Double.MAX_VALUE), "added");
+                    try {
+                        assertPrefixes(concurrent.getByTransactionStatus(TransactionStatus.FAILED), "failed");
+                    } catch (IllegalArgumentException noneFailedYet) {
+                        // nothing has been moved to FAILED yet
+                    }
+                    observed++;
+                }
+                return observed;
+            }));
+        }
+
+        Random seeds = new Random(42);
+        long[] writerSeeds = new long[WRITERS];
+        for (int writer = 0; writer < WRITERS; writer++) {
+            writerSeeds[writer] = seeds.nextLong();
+        }
+        try {
+            runConcurrently(WRITERS, writer -> {
+                Random random = new Random(writerSeeds[writer]);
+                for (int i = 0; i < IDS_PER_WRITER; i++) {
+                    concurrent.add(new TransactionImpl(idOf(writer, i), TransactionStatus.SUCCESSFUL, "w" + writer, "r", random.nextDouble() * 1000));
+                }
+                for (int i = 0; i < IDS_PER_WRITER; i++) {
+                    concurrent.changeTransactionStatus(idOf(writer, i), TransactionStatus.FAILED);
+                }
+            });
+        } finally {
+            writing.set(false);
+            readers.shutdown();
+        }
+
+        for (Future<Integer> check : checks) {
+            assertTrue(check.get(30, TimeUnit.SECONDS) > 0);
+        }
+        assertEquals(WRITERS * IDS_PER_WRITER, concurrent.getCount());
+    }
+
+    @Test
+    public void testInsertionOrderQueriesUnderConcurrentRemoves_ShouldNotFail() throws Exception {
+        ConcurrentChainblock concurrent = new ConcurrentChainblock();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(READERS);
+        List<Future<Integer>> checks = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            checks.add(readers.submit(() -> {
+                int observed = 0;
+                while (writing.get()) {
+                    assertIncreasingPerWriter(concurrent.getAllInAmountRange(-1, Double.MAX_VALUE));
+                    assertIncreasingPerWriter(concurrent.getByTransactionStatusAndMaximumAmount(
+                            TransactionStatus.SUCCESSFUL, Double.MAX_VALUE));
+                    assertIncreasingPerWriter(concurrent);
+                    observed++;
+                }
+                return observed;
+            }));
+        }
+
+        try {
+            runConcurrently(WRITERS, writer -> {
+                for (int i = 0; i < IDS_PER_WRITER; i++) {
+                    concurrent.add(new TransactionImpl(idOf(writer, i), TransactionStatus.SUCCESSFUL, "w" + writer, "r", i));
+                    if (i % 2 == 1) {
+                        concurrent.removeTransactionById(idOf(writer, i - 1));
+                    }
+                }
+            });
+        } finally {
+            writing.set(false);
+            readers.shutdown();
+        }
+
+        for (Future<Integer> check : checks) {
+            assertTrue(check.get(30, TimeUnit.SECONDS) > 0);
+        }
+        assertEquals(WRITERS * IDS_PER_WRITER / 2, concurrent.getCount());
+    }
+
+    @Test
+    public void testConcurrentStatusChangesOnSameId_ShouldKeepIndexConsistent() throws Exception {
+        Chainblock concurrent = new ConcurrentChainblock();
+        concurrent.add(new TransactionImpl(1, TransactionStatus.SUCCESSFUL, "a", "b", 5));
+        TransactionStatus[] statuses = TransactionStatus.values();
+
+        runConcurrently(WRITERS, writer -> {
+            for (int i = 0; i < IDS_PER_WRITER; i++) {
+                concurrent.changeTransactionStatus(1, statuses[(writer + i) % statuses.length]);
+            }
+        });
+
+        int indexed = 0;
+        for (TransactionStatus status : statuses) {
+            try {
+                for (Transaction transaction : concurrent.getByTransactionStatus(status)) {
+                    assertEquals(status, transaction.getStatus());
+                    indexed++;
+                }
+            } catch (IllegalArgumentException empty) {
+                // the transaction is indexed under another status
+            }
+        }
+        assertEquals(1, indexed);
+    }
+
+    private static int idOf(int writer, int sequence) {
+        return writer * IDS_PER_WRITER + sequence;
+    }
+
+    private static void assertPrefixes(Iterable<Transaction> observed, String what) {
+        boolean[] seen = new boolean[WRITERS * IDS_PER_WRITER];
+        for (Transaction transaction : observed) {
+            seen[transaction.getId()] = true;
+        }
+        for (int writer = 0; writer < WRITERS; writer++) {
+            boolean gap = false;
+            for (int i = 0; i < IDS_PER_WRITER; i++) {
+                if (!seen[idOf(writer, i)]) {
+                    gap = true;
+                } else if (gap) {
+                    fail("Observed " + what + " id " + idOf(writer, i) + " before an earlier write of the same writer");
+                }
+            }
+        }
+    }
+
+    private static void assertIncreasingPerWriter(Iterable<Transaction> observed) {
+        int[] last = new int[WRITERS];
+        Arrays.fill(last, -1);
+        for (Transaction transaction : observed) {
+            int writer = transaction.getId() / IDS_PER_WRITER;
+            assertTrue(transaction.getId() > last[writer]);
+            last[writer] = transaction.getId();
+        }
+    }
+
+    private interface WriterTask {
+        void run(int writer);
+    }
+
+    private static void runConcurrently(int threads, WriterTask task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int writer = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                task.run(writer);
+                return null;
+            }));
+        }
+        start.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class DurableChainblockTest extends ChainblockContractTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path logFile;
+    private DurableChainblock contractChainblock;
+
+    @Override
+    protected Chainblock createChainblock() {
+        try {
+            contractChainblock = new DurableChainblock(new ChainblockImpl(), folder.newFile().toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return contractChainblock;
+    }
+
+    @Before
+    public void prepareLogFile() {
+        this.logFile = folder.getRoot().toPath().resolve("chainblock.log");
+    }
+
+    @After
+    public void closeContractChainblock() throws IOException {
+        contractChainblock.close();
+    }
+
+    private static List<String> describe(Chainblock chainblock) {
+        List<String> described = new ArrayList<>();
+        for (Transaction t : chainblock) {
+            described.add(t.getId() + ":" + t.getStatus() + ":" + t.getFrom() + ":" + t.getTo() + ":" + t.getAmount());
+        }
+        return described;
+    }
+
+    private DurableChainblock open() throws IOException {
+        return new DurableChainblock(new ChainblockImpl(), logFile);
+    }
+
+    @Test
+    public void testReopen_ShouldReplayAllMutations() throws IOException {
+        List<String> expected;
+        try (DurableChainblock chainblock = open()) {
+            chainblock.add(new TransactionImpl(0, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 11.20));
+            chainblock.add(new TransactionImpl(1, TransactionStatus.FAILED, "Сашо", null, 10));
+            chainblock.add(new TransactionImpl(1, TransactionStatus.FAILED, "Ignored", "Duplicate", 1));
+            chainblock.add(new TransactionImpl(2, TransactionStatus.UNAUTHORIZED, "Toshko", "Pesho", 12));
+            chainblock.changeTransactionStatus(2, TransactionStatus.ABORTED);
+            chainblock.removeTransactionById(0);
+            chainblock.add(new TransactionImpl(0, TransactionStatus.SUCCESSFUL, "Gosho", "Pesho", 3));
+            expected = describe(chainblock);
+        }
+
+        try (DurableChainblock reopened = open()) {
+            assertEquals(expected, describe(reopened));
+            assertEquals(TransactionStatus.ABORTED, reopened.getById(2).getStatus());
+        }
+    }
+
+    @Test
+    public void testReopen_ShouldNotLogRejectedMutations() throws IOException {
+        try (DurableChainblock chainblock = open()) {
+            chainblock.add(new TransactionImpl(0, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 11.20));
+            try {
+                chainblock.removeTransactionById(5);
+                fail();
+            } catch (IllegalArgumentException expected) {
+                // missing id is rejected before anything is logged
+            }
+        }
+
+        try (DurableChainblock reopened = open()) {
+            assertEquals(1, reopened.getCount());
+        }
+    }
+
+    @Test
+    public void testOversizedRecord_ShouldLeaveDelegateAndLogUntouched() throws IOException {
+        char[] name = new char[1 << 20];
+        Arrays.fill(name, 'x');
+        Transaction oversized = new TransactionImpl(1, TransactionStatus.SUCCESSFUL, new String(name), "Sasho", 5);
+        try (DurableChainblock chainblock = open()) {
+            chainblock.add(new TransactionImpl(0, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 11.20));
+            try {
+                chainblock.add(oversized);
+                fail();
+            } catch (IllegalArgumentException expected) {
+                assertFalse(chainblock.contains(1));
+            }
+            try {
+                chainblock.addAll(Arrays.asList(new TransactionImpl(2, TransactionStatus.FAILED, "Toshko", "Pesho", 3),
+                        oversized));
+                fail();
+            } catch (IllegalArgumentException expected) {
+                assertFalse(chainblock.contains(1));
+            }
+            chainblock.changeTransactionStatus(0, TransactionStatus.ABORTED);
+        }
+
+        try (DurableChainblock reopened = open()) {
+            assertEquals(2, reopened.getCount());
+            assertEquals(TransactionStatus.ABORTED, reopened.getById(0).getStatus());
+            assertTrue(reopened.contains(2));
+        }
+    }
+
+    @Test
+    public void testFailedWrite_ShouldMakeChainblockUnusable() throws IOException {
+        DurableChainblock chainblock = open();
+        chainblock.add(new TransactionImpl(0, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 11.20));
+        chainblock.close();
+
+        try {
+            chainblock.add(new TransactionImpl(1, TransactionStatus.SUCCESSFUL, "Pesho", "Toshko", 10));
+            fail();
+        } catch (UncheckedIOException expected) {
+            // the write to the closed log fails after the delegate was updated
+        }
+        try {
+            chainblock.getCount();
+            fail();
+        } catch (UncheckedIOException expected) {
+            // reads must not serve the mutation the log lost
+        }
+
+        try (DurableChainblock reopened = open()) {
+            assertEquals(1, reopened.getCount());
+        }
+    }
+
+    @Test
+    public void testReopen_ShouldDropTornFinalRecordAndKeepAppending() throws IOException {
+        try (DurableChainblock chainblock = open()) {
+            chainblock.add(new TransactionImpl(0, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 11.20));
+            chainblock.add(new TransactionImpl(1, TransactionStatus.SUCCESSFUL, "Pesho", "Toshko", 10));
+        }
+        long intactSize = Files.size(logFile);
+        try (DurableChainblock chainblock = open()) {
+            chainblock.changeTransactionStatus(1, TransactionStatus.FAILED);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(logFile.toFile(), "rw")) {
+            file.setLength(Files.size(logFile) - 2);
+        }
+
+        try (DurableChainblock reopened = open()) {
+            assertEquals(2, reopened.getCount());
+            assertEquals(TransactionStatus.SUCCESSFUL, reopened.getById(1).getStatus());
+            assertEquals(intactSize, Files.size(logFile));
+            reopened.removeTransactionById(0);
+        }
+
+        try (DurableChainblock reopened = open()) {
+            assertFalse(reopened.contains(0));
+            assertTrue(reopened.contains(1));
+        }
+    }
+
+    @Test
+    public void testReopen_ShouldDropFinalRecordWithBadChecksum() throws IOException {
+        try (DurableChainblock chainblock = open()) {
+            chainblock.add(new TransactionImpl(0, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 11.20));
+            chainblock.add(new TransactionImpl(1, TransactionStatus.SUCCESSFUL, "Pesho", "Toshko", 10));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(logFile.toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF);
+        }
+
+        try (DurableChainblock reopened = open()) {
+            assertEquals(1, reopened.getCount());
+            assertTrue(reopened.contains(0));
+        }
+    }
+
+    @Test
+    public void testConcurrentWriters_ShouldShareSyncs() throws Exception {
+        int writers = 8;
+        int perWriter = 200;
+        long syncs;
+        try (DurableChainblock chainblock = new DurableChainblock(new ConcurrentChainblock(), logFile)) {
+            ExecutorService pool = Executors.newFixedThreadPool(writers);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < perWriter; i++) {
+                        chainblock.add(new TransactionImpl(writer * perWriter + i, TransactionStatus.SUCCESSFUL, "w" + writer, "r", i));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            pool.shutdown();
+            syncs = chainblock.syncCount();
+        }
+
+        assertTrue(syncs < writers * perWriter);
+        try (DurableChainblock reopened = open()) {
+            assertEquals(writers * perWriter, reopened.getCount());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class InstrumentedChainblockTest extends ChainblockContractTest {
+
+    @Override
+    protected Chainblock createChainblock() {
+        return new InstrumentedChainblock(new ChainblockImpl());
+    }
+
+    private InstrumentedChainblock instrumented() {
+        InstrumentedChainblock instrumented = new InstrumentedChainblock(new ChainblockImpl());
+        instrumented.add(new TransactionImpl(0, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 11.20));
+        instrumented.add(new TransactionImpl(1, TransactionStatus.SUCCESSFUL, "Pesho", "Toshko", 10));
+        instrumented.add(new TransactionImpl(2, TransactionStatus.FAILED, "Sasho", "Pesho", 11.0));
+        return instrumented;
+    }
+
+    @Test
+    public void testStats_ShouldCountCallsResultSizesAndIllegalArguments() {
+        InstrumentedChainblock instrumented = instrumented();
+
+        instrumented.getByTransactionStatus(TransactionStatus.SUCCESSFUL);
+        instrumented.getByTransactionStatus(TransactionStatus.FAILED);
+        try {
+            instrumented.getByTransactionStatus(TransactionStatus.ABORTED);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // counted as a failed call
+        }
+
+        OperationStats stats = instrumented.getStats("getByTransactionStatus");
+        assertEquals(3, stats.getCalls());
+        assertEquals(1, stats.getIllegalArgumentExceptions());
+        assertEquals(1 / 3.0, stats.getIllegalArgumentExceptionRate(), 1e-9);
+        assertEquals(1.5, stats.getMeanResultSize(), 1e-9);
+        assertEquals(3, instrumented.getStats("add").getCalls());
+        assertEquals(0, instrumented.getStats("getById").getCalls());
+    }
+
+    @Test
+    public void testStats_ShouldReportPercentilesWithinMaximum() {
+        InstrumentedChainblock instrumented = instrumented();
+        for (int i = 0; i < 1000; i++) {
+            instrumented.getById(i % 3);
+        }
+
+        OperationStats stats = instrumented.getStats("getById");
+        assertEquals(1000, stats.getCalls());
+        assertTrue(stats.getP50LatencyNanos() <= stats.getP99LatencyNanos());
+        assertTrue(stats.getP99LatencyNanos() <= stats.getMaxLatencyNanos());
+        assertTrue(stats.getMeanLatencyNanos() > 0);
+
+        stats.reset();
+        assertEquals(0, stats.getCalls());
+        assertEquals(0, stats.getP99LatencyNanos());
+    }
+
+    @Test
+    public void testRegisterMBeans_ShouldExposeOperationAttributes() throws Exception {
+        InstrumentedChainblock instrumented = instrumented();
+        instrumented.getById(1);
+        instrumented.registerMBeans("test");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName getById = new ObjectName("Chainblock:type=Operation,name=\"test\",operation=\"getById\"");
+
+            assertEquals(1L, server.getAttribute(getById, "Calls"));
+        } finally {
+            instrumented.unregisterMBeans();
+        }
+    }
+
+    @Test
+    public void testSnapshot_ShouldListOnlyCalledOperations() {
+        InstrumentedChainblock instrumented = instrumented();
+        instrumented.getAllInAmountRange(0, 100);
+
+        String snapshot = instrumented.snapshot();
+
+        assertTrue(snapshot.contains("getAllInAmountRange"));
+        assertTrue(snapshot.contains("add"));
+        assertFalse(snapshot.contains("getById"));
+    }
+}
@@ -0,0 +1,106 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class IntTransactionMapTest {
+
+    private IntTransactionMap map;
+
+    @Before
+    public void prepare() {
+        this.map = new IntTransactionMap();
+    }
+
+    private static Transaction transaction(int id) {
+        return new TransactionImpl(id, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", id);
+    }
+
+    private List<Integer> idsInOrder() {
+        List<Integer> ids = new ArrayList<>();
+        map.forEach(t -> ids.add(t.getId()));
+        return ids;
+    }
+
+    @Test
+    public void testPutIfAbsent_ShouldKeepFirstValue() {
+        Transaction first = transaction(7);
+
+        assertNull(map.putIfAbsent(7, first));
+        assertSame(first, map.putIfAbsent(7, transaction(7)));
+        assertSame(first, map.get(7));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testRemove_ShouldReturnRemovedAndForgetId() {
+        Transaction removed = transaction(3);
+        map.putIfAbsent(3, removed);
+
+        assertSame(removed, map.remove(3));
+        assertNull(map.remove(3));
+        assertFalse(map.containsKey(3));
+        assertEquals(-1, map.indexOf(3));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void testGrowthAndRemovals_ShouldKeepInsertionOrder() {
+        List<Integer> expected = new ArrayList<>();
+        for (int id = 1000; id > 0; id--) {
+            map.putIfAbsent(id * 31, transaction(id * 31));
+            if (id % 3 == 0) {
+                map.remove(id * 31);
+            } else {
+                expected.add(id * 31);
+            }
+        }
+
+        assertEquals(expected, idsInOrder());
+        assertEquals(expected.size(), map.size());
+        for (int i = 1; i < expected.size(); i++) {
+            assertTrue(map.indexOf(expected.get(i - 1)) < map.indexOf(expected.get(i)));
+        }
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testIterator_ShouldFailFastAcrossResize() {
+        for (int id = 0; id < 10; id++) {
+            map.putIfAbsent(id, transaction(id));
+        }
+        Iterator<Transaction> iterator = map.iterator();
+        iterator.next();
+
+        map.ensureCapacity(1000);
+
+        iterator.next();
+    }
+
+    @Test
+    public void testReAddAfterRemove_ShouldMoveToEnd() {
+        map.putIfAbsent(1, transaction(1));
+        map.putIfAbsent(2, transaction(2));
+        map.remove(1);
+        map.putIfAbsent(1, transaction(1));
+
+        assertEquals(2, map.size());
+        assertTrue(map.indexOf(2) < map.indexOf(1));
+    }
+
+    @Test
+    public void testNegativeAndExtremeIds_ShouldBeStored() {
+        int[] ids = {Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE};
+        for (int id : ids) {
+            map.putIfAbsent(id, transaction(id));
+        }
+
+        for (int id : ids) {
+            assertEquals(id, map.get(id).getId());
+        }
+    }
+}
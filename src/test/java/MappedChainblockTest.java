@@ -0,0 +1,254 @@
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class MappedChainblockTest extends ChainblockContractTest {
+
+    private static final String[] PARTIES = {"Pesho", "Sasho", "Toshko", "Гошо", null};
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    private static final Set<String> MUTATIONS = new HashSet<>(Arrays.asList(
+            "add", "addAll", "changeTransactionStatus", "removeTransactionById"));
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path snapshot;
+    private Chainblock source;
+
+    /**
+     * Runs the contract against snapshots: writes go to a {@link ChainblockImpl}
+     * and the first read after a write saves and maps a fresh snapshot of it.
+     */
+    @Override
+    protected Chainblock createChainblock() {
+        Path file = folder.getRoot().toPath().resolve("contract.snapshot");
+        Chainblock writes = new ChainblockImpl();
+        MappedChainblock[] reads = new MappedChainblock[1];
+        return (Chainblock) Proxy.newProxyInstance(Chainblock.class.getClassLoader(), new Class<?>[]{Chainblock.class},
+                (proxy, method, args) -> {
+                    Object target = writes;
+                    if (MUTATIONS.contains(method.getName())) {
+                        reads[0] = null;
+                    } else {
+                        if (reads[0] == null) {
+                            MappedChainblock.save(writes, file);
+                            reads[0] = MappedChainblock.load(file);
+                        }
+                        target = reads[0];
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    @Before
+    public void prepareSource() {
+        this.snapshot = folder.getRoot().toPath().resolve("chainblock.snapshot");
+        this.source = new ChainblockImpl();
+        Random random = new Random(7);
+        for (int step = 0; step < 2_000; step++) {
+            int id = random.nextInt(1_000) - 500;
+            if (random.nextInt(5) == 0 && source.contains(id)) {
+                source.removeTransactionById(id);
+            } else {
+                source.add(new TransactionImpl(id, STATUSES[random.nextInt(STATUSES.length)],
+                        PARTIES[random.nextInt(PARTIES.length)], PARTIES[random.nextInt(PARTIES.length)],
+                        random.nextInt(60) / 4.0));
+            }
+        }
+    }
+
+    @Test
+    public void testLoad_ShouldAnswerEveryQueryLikeTheSource() throws IOException {
+        MappedChainblock.save(source, snapshot);
+        MappedChainblock mapped = MappedChainblock.load(snapshot);
+
+        assertTrue(mapped.verify());
+        assertEquals(source.getCount(), mapped.getCount());
+        assertSameResult(mapped, c -> c);
+        assertSameResult(mapped, Chainblock::getAllOrderedByAmountDescendingThenById);
+        assertSameResult(mapped, c -> c.getTopOrderedByAmountDescendingThenById(17));
+        assertSameResult(mapped, c -> c.getAllInAmountRange(2.5, 9));
+        assertSameResult(mapped, c -> c.getAllInAmountRange(9, 2.5));
+        for (TransactionStatus status : STATUSES) {
+            assertSameResult(mapped, c -> c.getByTransactionStatus(status));
+            assertSameResult(mapped, c -> c.getAllSendersWithTransactionStatus(status));
+            assertSameResult(mapped, c -> c.getAllReceiversWithTransactionStatus(status));
+            assertSameResult(mapped, c -> c.getByTransactionStatusAndMaximumAmount(status, 6.25));
+            assertSameResult(mapped, c -> c.getTopByTransactionStatus(status, 3));
+            assertSameResult(mapped, c -> visited(action -> c.forEachByTransactionStatus(status, action)));
+        }
+        for (String party : new String[]{"Pesho", "Гошо", null, "Ivan"}) {
+            assertSameResult(mapped, c -> c.getBySenderOrderedByAmountDescending(party));
+            assertSameResult(mapped, c -> c.getBySenderAndMinimumAmountDescending(party, 10));
+            assertSameResult(mapped, c -> c.getTopBySenderOrderedByAmountDescending(party, 4));
+            assertSameResult(mapped, c -> c.getByReceiverOrderedByAmountThenById(party));
+            assertSameResult(mapped, c -> c.getByReceiverAndAmountRange(party, 1, 7.75));
+            assertSameResult(mapped, c -> visited(action -> c.forEachBySender(party, action)));
+            assertSameResult(mapped, c -> visited(action -> c.forEachBySenderAndMinimumAmount(party, 10, action)));
+            assertSameResult(mapped, c -> visited(action -> c.forEachByReceiver(party, action)));
+            assertSameResult(mapped, c -> visited(action -> c.forEachByReceiverAndAmountRange(party, 1, 7.75, action)));
+            assertSameResult(mapped, c -> visited(action -> c.forEachByReceiverAndAmountRange(party, 7.75, 1, action)));
+        }
+        List<PageCursor> cursors = new ArrayList<>(Collections.singletonList(PageCursor.FIRST));
+        for (Transaction transaction : source.getTopOrderedByAmountDescendingThenById(40)) {
+            cursors.add(PageCursor.after(transaction));
+            cursors.add(PageCursor.after(transaction.getAmount() - 0.1, 0));
+        }
+        for (PageCursor cursor : cursors) {
+            assertSameResult(mapped, c -> c.getPageOrderedByAmountDescendingThenById(cursor, 7));
+            for (String party : new String[]{"Pesho", "Гошо", null, "Ivan"}) {
+                assertSameResult(mapped, c -> c.getPageByReceiverOrderedByAmountThenById(party, cursor, 3));
+            }
+        }
+        for (int id = -500; id < 500; id++) {
+            assertEquals(source.contains(id), mapped.contains(id));
+            assertEquals(source.contains(id), mapped.tryGetById(id) != null);
+        }
+    }
+
+    @Test
+    public void testLoad_ShouldKeepNaNAmountsOutOfAmountQueries() throws IOException {
+        source.add(new TransactionImpl(1000, TransactionStatus.SUCCESSFUL, "Pesho", "Гошо", Double.NaN));
+        source.add(new TransactionImpl(1001, TransactionStatus.FAILED, "Pesho", "Гошо", Double.NaN));
+        MappedChainblock.save(source, snapshot);
+        MappedChainblock mapped = MappedChainblock.load(snapshot);
+
+        assertSameResult(mapped, Chainblock::getAllOrderedByAmountDescendingThenById);
+        assertSameResult(mapped, c -> c.getAllInAmountRange(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY));
+        assertSameResult(mapped, c -> c.getBySenderAndMinimumAmountDescending("Pesho", 10));
+        assertSameResult(mapped, c -> c.getBySenderAndMinimumAmountDescending("Pesho", Double.NEGATIVE_INFINITY));
+        assertSameResult(mapped, c -> c.getByReceiverAndAmountRange("Гошо", Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY));
+        assertSameResult(mapped, c -> c.getByTransactionStatusAndMaximumAmount(TransactionStatus.SUCCESSFUL, Double.POSITIVE_INFINITY));
+        assertSameResult(mapped, c -> visited(action -> c.forEachBySenderAndMinimumAmount("Pesho", 10, action)));
+        assertEquals(0, mapped.forEachBySenderAndMinimumAmount("Pesho", Double.MAX_VALUE, t -> fail()));
+    }
+
+    @Test
+    public void testLoad_ShouldServeEmptyChainblock() throws IOException {
+        MappedChainblock.save(new ChainblockImpl(), snapshot);
+        MappedChainblock mapped = MappedChainblock.load(snapshot);
+
+        assertEquals(0, mapped.getCount());
+        assertFalse(mapped.iterator().hasNext());
+        assertFalse(mapped.contains(0));
+    }
+
+    @Test
+    public void testSave_ShouldKeepOldSnapshotWhenWritingFails() throws IOException {
+        MappedChainblock.save(source, snapshot);
+        Chainblock failing = new ChainblockImpl() {
+            @Override
+            public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+                throw new IllegalStateException();
+            }
+        };
+        failing.add(new TransactionImpl(1000, TransactionStatus.FAILED, "a", "b", 1));
+
+        try {
+            MappedChainblock.save(failing, snapshot);
+            fail();
+        } catch (IllegalStateException expected) {
+            // the amount index is written after the rows
+        }
+
+        MappedChainblock mapped = MappedChainblock.load(snapshot);
+        assertTrue(mapped.verify());
+        assertEquals(source.getCount(), mapped.getCount());
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            assertEquals(Collections.singletonList(snapshot), files.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testSave_ShouldReplaceExistingSnapshot() throws IOException {
+        MappedChainblock.save(source, snapshot);
+        MappedChainblock.save(new ChainblockImpl(), snapshot);
+
+        assertEquals(0, MappedChainblock.load(snapshot).getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoad_ShouldRejectCorruptHeader() throws IOException {
+        MappedChainblock.save(source, snapshot);
+        flipByte(10);
+
+        MappedChainblock.load(snapshot);
+    }
+
+    @Test
+    public void testVerify_ShouldDetectCorruptBody() throws IOException {
+        MappedChainblock.save(source, snapshot);
+        flipByte(100);
+
+        assertFalse(MappedChainblock.load(snapshot).verify());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testAdd_ShouldBeUnsupported() throws IOException {
+        MappedChainblock.save(source, snapshot);
+
+        MappedChainblock.load(snapshot).add(new TransactionImpl(1000, TransactionStatus.FAILED, "a", "b", 1));
+    }
+
+    private void flipByte(long position) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(snapshot.toFile(), "rw")) {
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0xFF);
+        }
+    }
+
+    private void assertSameResult(Chainblock mapped, Function<Chainblock, Iterable<?>> query) {
+        assertEquals(describeOrThrown(source, query), describeOrThrown(mapped, query));
+    }
+
+    private static List<Transaction> visited(ToIntFunction<Consumer<? super Transaction>> visitor) {
+        List<Transaction> visited = new ArrayList<>();
+        assertEquals(visitor.applyAsInt(visited::add), visited.size());
+        return visited;
+    }
+
+    private static List<String> describeOrThrown(Chainblock chainblock, Function<Chainblock, Iterable<?>> query) {
+        List<String> described = new ArrayList<>();
+        try {
+            for (Object item : query.apply(chainblock)) {
+                if (item instanceof Transaction) {
+                    Transaction t = (Transaction) item;
+                    described.add(t.getId() + ":" + t.getStatus() + ":" + t.getFrom() + ":" + t.getTo() + ":" + t.getAmount());
+                } else {
+                    described.add(String.valueOf(item));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            described.add("IllegalArgumentException");
+        }
+        return described;
+    }
+}
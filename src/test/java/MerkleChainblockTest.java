@@ -0,0 +1,158 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MerkleChainblockTest extends ChainblockContractTest {
+
+    private static final String[] PARTIES = {"Pesho", "Sasho", "Toshko", "Gosho", "Ivan"};
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    @Override
+    protected Chainblock createChainblock() {
+        return new MerkleChainblock(new ChainblockImpl());
+    }
+
+    @Test
+    public void testRootHash_ShouldChangeWithEveryMutation() {
+        MerkleChainblock merkle = new MerkleChainblock(new ChainblockImpl());
+        List<byte[]> roots = new ArrayList<>();
+        roots.add(merkle.getRootHash());
+        merkle.add(new TransactionImpl(0, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 11.25));
+        roots.add(merkle.getRootHash());
+        merkle.add(new TransactionImpl(1, TransactionStatus.SUCCESSFUL, "Pesho", "Toshko", 10));
+        roots.add(merkle.getRootHash());
+        merkle.changeTransactionStatus(1, TransactionStatus.FAILED);
+        roots.add(merkle.getRootHash());
+        merkle.removeTransactionById(0);
+        roots.add(merkle.getRootHash());
+
+        for (int i = 0; i < roots.size(); i++) {
+            for (int j = i + 1; j < roots.size(); j++) {
+                assertFalse(Arrays.equals(roots.get(i), roots.get(j)));
+            }
+        }
+        assertTrue(merkle.verify());
+    }
+
+    @Test
+    public void testRootHash_ShouldNotDependOnHowTransactionsWereAdded() {
+        List<Transaction> transactions = randomTransactions(new Random(3), 1000);
+        MerkleChainblock oneByOne = new MerkleChainblock(new ChainblockImpl());
+        transactions.forEach(oneByOne::add);
+        MerkleChainblock inBatches = new MerkleChainblock(new ChainblockImpl());
+        inBatches.addAll(transactions.subList(0, 300));
+        inBatches.addAll(transactions.subList(300, 1000));
+        ChainblockImpl existing = new ChainblockImpl();
+        existing.addAll(transactions);
+
+        assertArrayEquals(oneByOne.getRootHash(), inBatches.getRootHash());
+        assertArrayEquals(oneByOne.getRootHash(), new MerkleChainblock(existing).getRootHash());
+    }
+
+    @Test
+    public void testInclusionProof_ShouldVerifyOnlyTheProvenTransaction() {
+        MerkleChainblock merkle = new MerkleChainblock(new ChainblockImpl());
+        List<Transaction> transactions = randomTransactions(new Random(5), 37);
+        merkle.addAll(transactions);
+        byte[] root = merkle.getRootHash();
+
+        for (Transaction transaction : transactions) {
+            MerkleProof proof = merkle.getInclusionProof(transaction.getId());
+            assertTrue(proof.verify(transaction, root));
+            assertFalse(proof.verify(transactions.get((transactions.indexOf(transaction) + 1) % 37), root));
+            assertFalse(proof.verify(new TransactionImpl(transaction.getId(), transaction.getStatus(),
+                    transaction.getFrom(), transaction.getTo(), transaction.getAmount() + 0.01), root));
+        }
+
+        TransactionStatus status = transactions.get(0).getStatus();
+        merkle.changeTransactionStatus(transactions.get(0).getId(), STATUSES[(status.ordinal() + 1) % 4]);
+        assertFalse(merkle.getInclusionProof(transactions.get(1).getId()).verify(transactions.get(1), root));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInclusionProof_ShouldThrowForRemovedTransaction() {
+        MerkleChainblock merkle = new MerkleChainblock(new ChainblockImpl());
+        merkle.add(new TransactionImpl(0, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 11.25));
+        merkle.removeTransactionById(0);
+
+        merkle.getInclusionProof(0);
+    }
+
+    @Test
+    public void testMutations_ShouldNotTouchDelegateForTransactionsWithoutLeaf() {
+        ChainblockImpl delegate = new ChainblockImpl();
+        MerkleChainblock merkle = new MerkleChainblock(delegate);
+        delegate.add(new TransactionImpl(0, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 11.25));
+
+        try {
+            merkle.changeTransactionStatus(0, TransactionStatus.FAILED);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertEquals(TransactionStatus.SUCCESSFUL, delegate.getById(0).getStatus());
+        }
+        try {
+            merkle.removeTransactionById(0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertTrue(delegate.contains(0));
+        }
+    }
+
+    @Test
+    public void testVerify_ShouldDetectTransactionChangedBehindTheChain() {
+        List<Transaction> transactions = randomTransactions(new Random(7), 20_000);
+        MerkleChainblock merkle = new MerkleChainblock(new ChainblockImpl());
+        merkle.addAll(transactions);
+        assertTrue(merkle.verify());
+
+        Transaction tampered = transactions.get(12_345);
+        tampered.setStatus(tampered.getStatus() == TransactionStatus.FAILED
+                ? TransactionStatus.SUCCESSFUL : TransactionStatus.FAILED);
+
+        assertFalse(merkle.verify());
+    }
+
+    @Test
+    public void testRandomOperations_ShouldKeepProofsAndVerificationConsistent() {
+        Random random = new Random(11);
+        MerkleChainblock merkle = new MerkleChainblock(new ChainblockImpl());
+        List<Integer> live = new ArrayList<>();
+        int nextId = 0;
+        for (int step = 0; step < 3000; step++) {
+            int operation = random.nextInt(10);
+            if (operation < 6 || live.isEmpty()) {
+                Transaction transaction = randomTransaction(random, nextId++);
+                merkle.add(transaction);
+                live.add(transaction.getId());
+            } else if (operation < 8) {
+                merkle.changeTransactionStatus(live.get(random.nextInt(live.size())), STATUSES[random.nextInt(4)]);
+            } else {
+                merkle.removeTransactionById(live.remove(random.nextInt(live.size())));
+            }
+        }
+
+        assertTrue(merkle.verify());
+        byte[] root = merkle.getRootHash();
+        for (int id : live) {
+            assertTrue(merkle.getInclusionProof(id).verify(merkle.getById(id), root));
+        }
+    }
+
+    private static List<Transaction> randomTransactions(Random random, int count) {
+        List<Transaction> transactions = new ArrayList<>(count);
+        for (int id = 0; id < count; id++) {
+            transactions.add(randomTransaction(random, id));
+        }
+        return transactions;
+    }
+
+    private static Transaction randomTransaction(Random random, int id) {
+        return new TransactionImpl(id, STATUSES[random.nextInt(4)], PARTIES[random.nextInt(PARTIES.length)],
+                PARTIES[random.nextInt(PARTIES.length)], random.nextInt(10_000) / 100.0);
+    }
+}
@@ -0,0 +1,170 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class ObservableChainblockTest extends ChainblockContractTest {
+
+    @Override
+    protected Chainblock createChainblock() {
+        return new ObservableChainblock(new ChainblockImpl());
+    }
+
+    private static class Recorder implements ChainblockListener {
+        private final List<ChainblockEvent> events = new ArrayList<>();
+        private final List<Integer> batchSizes = new ArrayList<>();
+        private final AtomicLong overflows = new AtomicLong();
+
+        public synchronized void onEvents(List<ChainblockEvent> batch) {
+            events.addAll(batch);
+            batchSizes.add(batch.size());
+        }
+
+        public void onOverflow(long droppedEvents) {
+            overflows.addAndGet(droppedEvents);
+        }
+
+        private synchronized List<String> described() {
+            List<String> described = new ArrayList<>();
+            for (ChainblockEvent event : events) {
+                described.add(event.toString());
+            }
+            return described;
+        }
+    }
+
+    @Test
+    public void testSubscribe_ShouldDeliverEventsInOrder() {
+        ObservableChainblock observable = new ObservableChainblock(new ChainblockImpl());
+        Recorder recorder = new Recorder();
+        ObservableChainblock.Subscription subscription = observable.subscribe(recorder);
+
+        observable.add(new TransactionImpl(1, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 10));
+        observable.add(new TransactionImpl(1, TransactionStatus.FAILED, "Pesho", "Sasho", 10));
+        observable.addAll(Arrays.asList(
+                new TransactionImpl(2, TransactionStatus.ABORTED, "Sasho", "Pesho", 5),
+                new TransactionImpl(2, TransactionStatus.ABORTED, "Sasho", "Pesho", 5)));
+        observable.changeTransactionStatus(1, TransactionStatus.FAILED);
+        observable.removeTransactionById(2);
+        subscription.close();
+
+        assertEquals(Arrays.asList("ADDED 1 null->SUCCESSFUL", "ADDED 2 null->ABORTED",
+                "STATUS_CHANGED 1 SUCCESSFUL->FAILED", "REMOVED 2 ABORTED->null"), recorder.described());
+        assertEquals(0, subscription.getDroppedEvents());
+    }
+
+    @Test
+    public void testSubscribe_ShouldKeepDeliveringAfterListenerThrows() {
+        ObservableChainblock observable = new ObservableChainblock(new ChainblockImpl());
+        Recorder recorder = new Recorder() {
+            private boolean thrown;
+
+            @Override
+            public synchronized void onEvents(List<ChainblockEvent> batch) {
+                if (!thrown) {
+                    thrown = true;
+                    throw new IllegalStateException();
+                }
+                super.onEvents(batch);
+            }
+        };
+        ObservableChainblock.Subscription subscription = observable.subscribe(recorder, event -> true, 16, 1);
+
+        observable.add(new TransactionImpl(1, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 10));
+        observable.add(new TransactionImpl(2, TransactionStatus.FAILED, "Sasho", "Pesho", 5));
+        observable.removeTransactionById(1);
+        subscription.close();
+
+        assertEquals(Arrays.asList("ADDED 2 null->FAILED", "REMOVED 1 SUCCESSFUL->null"), recorder.described());
+    }
+
+    @Test
+    public void testSubscribe_ShouldApplyStatusAndPartyFilters() {
+        ObservableChainblock observable = new ObservableChainblock(new ChainblockImpl());
+        Recorder failed = new Recorder();
+        Recorder gosho = new Recorder();
+        ObservableChainblock.Subscription failedSubscription =
+                observable.subscribe(failed, ChainblockEvent.withStatus(TransactionStatus.FAILED), 16, 4);
+        ObservableChainblock.Subscription goshoSubscription =
+                observable.subscribe(gosho, ChainblockEvent.withParty("Gosho"), 16, 4);
+
+        observable.add(new TransactionImpl(1, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 10));
+        observable.add(new TransactionImpl(2, TransactionStatus.SUCCESSFUL, "Pesho", "Gosho", 10));
+        observable.changeTransactionStatus(1, TransactionStatus.FAILED);
+        observable.changeTransactionStatus(1, TransactionStatus.SUCCESSFUL);
+        failedSubscription.close();
+        goshoSubscription.close();
+
+        assertEquals(Arrays.asList("STATUS_CHANGED 1 SUCCESSFUL->FAILED", "STATUS_CHANGED 1 FAILED->SUCCESSFUL"),
+                failed.described());
+        assertEquals(Arrays.asList("ADDED 2 null->SUCCESSFUL"), gosho.described());
+    }
+
+    @Test
+    public void testSubscribe_ShouldDeliverInBatchesOfAtMostBatchSize() throws InterruptedException {
+        ObservableChainblock observable = new ObservableChainblock(new ChainblockImpl());
+        CountDownLatch release = new CountDownLatch(1);
+        Recorder recorder = new Recorder();
+        ObservableChainblock.Subscription subscription = observable.subscribe(new ChainblockListener() {
+            public void onEvents(List<ChainblockEvent> batch) {
+                awaitQuietly(release);
+                recorder.onEvents(batch);
+            }
+        }, event -> true, 64, 8);
+
+        for (int i = 0; i < 40; i++) {
+            observable.add(new TransactionImpl(i, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", i));
+        }
+        release.countDown();
+        subscription.close();
+
+        assertEquals(40, recorder.described().size());
+        for (int size : recorder.batchSizes) {
+            assertTrue(size <= 8);
+        }
+        assertTrue(recorder.batchSizes.size() < 40);
+    }
+
+    @Test
+    public void testSlowListener_ShouldDropAndReportInsteadOfBlockingWriters() throws InterruptedException {
+        ObservableChainblock observable = new ObservableChainblock(new ChainblockImpl());
+        CountDownLatch release = new CountDownLatch(1);
+        Recorder recorder = new Recorder();
+        ObservableChainblock.Subscription subscription = observable.subscribe(new ChainblockListener() {
+            public void onEvents(List<ChainblockEvent> batch) {
+                awaitQuietly(release);
+                recorder.onEvents(batch);
+            }
+
+            public void onOverflow(long droppedEvents) {
+                recorder.onOverflow(droppedEvents);
+            }
+        }, event -> true, 4, 2);
+
+        for (int i = 0; i < 1_000; i++) {
+            observable.add(new TransactionImpl(i, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", i));
+        }
+        assertEquals(1_000, observable.getCount());
+        release.countDown();
+        subscription.close();
+
+        long dropped = subscription.getDroppedEvents();
+        assertTrue(dropped > 0);
+        assertEquals(1_000, recorder.described().size() + dropped);
+        assertEquals(dropped, recorder.overflows.get());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ParallelChainblockImplTest extends ChainblockContractTest {
+
+    @Override
+    protected Chainblock createChainblock() {
+        return new ChainblockImpl(0, false, 1);
+    }
+
+    @Test
+    public void testParallelScan_ShouldMatchSequentialOrder() {
+        Random random = new Random(42);
+        List<Transaction> transactions = new ArrayList<>();
+        TransactionStatus[] statuses = TransactionStatus.values();
+        for (int i = 0; i < 50_000; i++) {
+            int id = random.nextInt(1_000_000);
+            transactions.add(new TransactionImpl(id, statuses[random.nextInt(statuses.length)],
+                    "s" + random.nextInt(100), "r" + random.nextInt(100), random.nextInt(1000)));
+        }
+        ChainblockImpl sequential = ChainblockImpl.builder().addAll(copies(transactions)).build();
+        ChainblockImpl parallel = ChainblockImpl.builder().addAll(copies(transactions)).parallelThreshold(1000).build();
+        for (int i = 0; i < 5_000; i++) {
+            int id = transactions.get(random.nextInt(transactions.size())).getId();
+            if (sequential.contains(id)) {
+                sequential.removeTransactionById(id);
+                parallel.removeTransactionById(id);
+            }
+        }
+
+        assertEquals(describe(sequential.getAllInAmountRange(100, 900)),
+                describe(parallel.getAllInAmountRange(100, 900)));
+        assertEquals(describe(sequential.getByTransactionStatusAndMaximumAmount(TransactionStatus.FAILED, 700)),
+                describe(parallel.getByTransactionStatusAndMaximumAmount(TransactionStatus.FAILED, 700)));
+        assertEquals(describe(sequential.getAllInAmountRange(10, 11)),
+                describe(parallel.getAllInAmountRange(10, 11)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_ShouldRejectNonPositiveThreshold() {
+        new ChainblockImpl(0, false, 0);
+    }
+
+    private static List<Transaction> copies(List<Transaction> transactions) {
+        List<Transaction> copies = new ArrayList<>();
+        for (Transaction t : transactions) {
+            copies.add(new TransactionImpl(t.getId(), t.getStatus(), t.getFrom(), t.getTo(), t.getAmount()));
+        }
+        return copies;
+    }
+
+    private static List<String> describe(Iterable<Transaction> transactions) {
+        List<String> described = new ArrayList<>();
+        for (Transaction t : transactions) {
+            described.add(t.getId() + ":" + t.getStatus() + ":" + t.getFrom() + ":" + t.getTo() + ":" + t.getAmount());
+        }
+        return described;
+    }
+}
@@ -0,0 +1,165 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class ShardedChainblockTest extends ChainblockContractTest {
+
+    private static final String[] PARTIES = {"Pesho", "Sasho", "Toshko", "Gosho", "Ivan"};
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    @Override
+    protected Chainblock createChainblock() {
+        return new ShardedChainblock(4);
+    }
+
+    @Test
+    public void testRandomOperations_ShouldMatchChainblockImpl() {
+        Chainblock reference = new ChainblockImpl();
+        Chainblock sharded = new ShardedChainblock(7);
+        Random random = new Random(11);
+
+        for (int step = 0; step < 3_000; step++) {
+            int id = random.nextInt(500);
+            int operation = random.nextInt(10);
+            if (operation < 5) {
+                Transaction transaction = randomTransaction(random, id);
+                reference.add(transaction);
+                sharded.add(copy(transaction));
+            } else if (operation < 6) {
+                List<Transaction> batch = new ArrayList<>();
+                List<Transaction> copies = new ArrayList<>();
+                for (int i = 0; i < 10; i++) {
+                    Transaction transaction = randomTransaction(random, random.nextInt(500));
+                    batch.add(transaction);
+                    copies.add(copy(transaction));
+                }
+                reference.addAll(batch);
+                sharded.addAll(copies);
+            } else if (operation < 8 && reference.contains(id)) {
+                TransactionStatus status = STATUSES[random.nextInt(STATUSES.length)];
+                reference.changeTransactionStatus(id, status);
+                sharded.changeTransactionStatus(id, status);
+            } else if (reference.contains(id)) {
+                reference.removeTransactionById(id);
+                sharded.removeTransactionById(id);
+            }
+        }
+
+        assertEquals(reference.getCount(), sharded.getCount());
+        assertSameResult(reference, sharded, c -> c.getAllOrderedByAmountDescendingThenById());
+        assertSameResult(reference, sharded, c -> c.getAllInAmountRange(5, 17.5));
+        assertSameResult(reference, sharded, c -> c.getAllInAmountRange(5, 5));
+        assertSameResult(reference, sharded, c -> c);
+        assertSameResult(reference, sharded, c -> c.getTopOrderedByAmountDescendingThenById(25));
+        assertSameResult(reference, sharded, c -> c.getTopOrderedByAmountDescendingThenById(0));
+        for (TransactionStatus status : STATUSES) {
+            assertSameResult(reference, sharded, c -> c.getByTransactionStatus(status));
+            assertSameResult(reference, sharded, c -> c.getAllSendersWithTransactionStatus(status));
+            assertSameResult(reference, sharded, c -> c.getAllReceiversWithTransactionStatus(status));
+            assertSameResult(reference, sharded, c -> c.getByTransactionStatusAndMaximumAmount(status, 12));
+            assertSameResult(reference, sharded, c -> c.getTopByTransactionStatus(status, 7));
+        }
+        for (String party : new String[]{"Pesho", "Sasho", "Toshko", "Gosho", "Ivan", "Nobody"}) {
+            assertSameResult(reference, sharded, c -> c.getBySenderOrderedByAmountDescending(party));
+            assertSameResult(reference, sharded, c -> c.getBySenderAndMinimumAmountDescending(party, 20));
+            assertSameResult(reference, sharded, c -> c.getTopBySenderOrderedByAmountDescending(party, 5));
+            assertSameResult(reference, sharded, c -> c.getByReceiverOrderedByAmountThenById(party));
+            assertSameResult(reference, sharded, c -> c.getByReceiverAndAmountRange(party, 3, 9));
+        }
+        for (int id = 0; id < 500; id++) {
+            assertEquals(reference.contains(id), sharded.contains(id));
+        }
+    }
+
+    @Test
+    public void testConcurrentAddAndAddAll_ShouldKeepEachWritersInsertionOrder() throws Exception {
+        int perWriter = 20_000;
+        ShardedChainblock sharded = new ShardedChainblock(4);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            Future<?> single = pool.submit(() -> {
+                start.await();
+                for (int id = 0; id < perWriter; id++) {
+                    sharded.add(new TransactionImpl(id, TransactionStatus.SUCCESSFUL, "single", "r", 1));
+                }
+                return null;
+            });
+            Future<?> batched = pool.submit(() -> {
+                start.await();
+                for (int id = perWriter; id < 2 * perWriter; id += 16) {
+                    List<Transaction> batch = new ArrayList<>();
+                    for (int i = id; i < id + 16; i++) {
+                        batch.add(new TransactionImpl(i, TransactionStatus.SUCCESSFUL, "batched", "r", 1));
+                    }
+                    sharded.addAll(batch);
+                }
+                return null;
+            });
+            start.countDown();
+            single.get(60, TimeUnit.SECONDS);
+            batched.get(60, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertIncreasingPerWriter(sharded, perWriter);
+        assertIncreasingPerWriter(sharded.getAllInAmountRange(0, 2), perWriter);
+        assertIncreasingPerWriter(sharded.getByTransactionStatusAndMaximumAmount(TransactionStatus.SUCCESSFUL, 2), perWriter);
+        assertIncreasingPerWriter(sharded.find(TransactionQuery.builder().status(TransactionStatus.SUCCESSFUL)
+                .orderBy(TransactionQuery.Order.INSERTION).build()), perWriter);
+    }
+
+    private static void assertIncreasingPerWriter(Iterable<Transaction> observed, int perWriter) {
+        int[] last = {-1, -1};
+        int count = 0;
+        for (Transaction transaction : observed) {
+            int writer = transaction.getId() / perWriter;
+            assertTrue(transaction.getId() > last[writer]);
+            last[writer] = transaction.getId();
+            count++;
+        }
+        assertEquals(2 * perWriter, count);
+    }
+
+    private static Transaction randomTransaction(Random random, int id) {
+        return new TransactionImpl(id, STATUSES[random.nextInt(STATUSES.length)],
+                PARTIES[random.nextInt(PARTIES.length)], PARTIES[random.nextInt(PARTIES.length)],
+                random.nextInt(50) / 2.0);
+    }
+
+    private static Transaction copy(Transaction t) {
+        return new TransactionImpl(t.getId(), t.getStatus(), t.getFrom(), t.getTo(), t.getAmount());
+    }
+
+    private static void assertSameResult(Chainblock reference, Chainblock sharded, Function<Chainblock, Iterable<?>> query) {
+        assertEquals(describeOrThrown(reference, query), describeOrThrown(sharded, query));
+    }
+
+    private static List<String> describeOrThrown(Chainblock chainblock, Function<Chainblock, Iterable<?>> query) {
+        List<String> described = new ArrayList<>();
+        try {
+            for (Object item : query.apply(chainblock)) {
+                if (item instanceof Transaction) {
+                    Transaction t = (Transaction) item;
+                    described.add(t.getId() + ":" + t.getStatus() + ":" + t.getFrom() + ":" + t.getTo() + ":" + t.getAmount());
+                } else {
+                    described.add(String.valueOf(item));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            described.add("IllegalArgumentException");
+        }
+        return described;
+    }
+}
@@ -0,0 +1,205 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class VersionedChainblockTest extends ChainblockContractTest {
+
+    private static final String[] PARTIES = {"Pesho", "Sasho", "Toshko", "Gosho", "Ivan"};
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    @Override
+    protected Chainblock createChainblock() {
+        return new VersionedChainblock();
+    }
+
+    private VersionedChainblock versioned() {
+        VersionedChainblock versioned = new VersionedChainblock();
+        versioned.add(new TransactionImpl(0, TransactionStatus.SUCCESSFUL, "Pesho", "Sasho", 11.20));
+        versioned.add(new TransactionImpl(1, TransactionStatus.SUCCESSFUL, "Pesho", "Toshko", 10));
+        versioned.add(new TransactionImpl(2, TransactionStatus.FAILED, "Sasho", "Pesho", 11.0));
+        return versioned;
+    }
+
+    /**
+     * Replaces the inherited test, which expects the status change to show up
+     * on the caller's own transaction objects.
+     */
+    @Override
+    @Test
+    public void testGetByTransactionStatus_ShouldReflectChangedStatus() {
+        VersionedChainblock versioned = versioned();
+
+        versioned.changeTransactionStatus(1, TransactionStatus.ABORTED);
+
+        assertEquals(Collections.singletonList(1), ids(versioned.getByTransactionStatus(TransactionStatus.ABORTED)));
+        assertEquals(Collections.singletonList(0), ids(versioned.getByTransactionStatus(TransactionStatus.SUCCESSFUL)));
+    }
+
+    /**
+     * Replaces the inherited test, which expects the status change to show up
+     * on the caller's own transaction objects.
+     */
+    @Override
+    @Test
+    public void testGetByTransactionStatusAndMaximumAmount_ShouldReflectChangedStatus() {
+        VersionedChainblock versioned = versioned();
+
+        versioned.changeTransactionStatus(2, TransactionStatus.SUCCESSFUL);
+        versioned.removeTransactionById(1);
+
+        assertEquals(Arrays.asList(0, 2),
+                ids(versioned.getByTransactionStatusAndMaximumAmount(TransactionStatus.SUCCESSFUL, 11.3)));
+    }
+
+    @Test
+    public void testSnapshot_ShouldNotSeeLaterWrites() {
+        VersionedChainblock versioned = versioned();
+        Chainblock snapshot = versioned.snapshot();
+
+        versioned.add(new TransactionImpl(3, TransactionStatus.ABORTED, "Gosho", "Pesho", 50));
+        versioned.removeTransactionById(0);
+        versioned.changeTransactionStatus(1, TransactionStatus.FAILED);
+
+        assertEquals(3, snapshot.getCount());
+        assertFalse(snapshot.contains(3));
+        assertTrue(snapshot.contains(0));
+        assertEquals(TransactionStatus.SUCCESSFUL, snapshot.getById(1).getStatus());
+        assertEquals(2, toList(snapshot.getByTransactionStatus(TransactionStatus.SUCCESSFUL)).size());
+        assertEquals(TransactionStatus.FAILED, versioned.getById(1).getStatus());
+        assertEquals(2, toList(versioned.getByTransactionStatus(TransactionStatus.FAILED)).size());
+    }
+
+    @Test
+    public void testQueryResult_ShouldStayConsistentWhileWritersContinue() {
+        VersionedChainblock versioned = versioned();
+        Iterable<Transaction> ordered = versioned.getAllOrderedByAmountDescendingThenById();
+
+        for (int i = 10; i < 1000; i++) {
+            versioned.add(new TransactionImpl(i, TransactionStatus.FAILED, "Gosho", "Pesho", i));
+        }
+        versioned.removeTransactionById(2);
+
+        List<Transaction> result = toList(ordered);
+        assertEquals(3, result.size());
+        assertEquals(0, result.get(0).getId());
+        assertEquals(2, result.get(1).getId());
+        assertEquals(1, result.get(2).getId());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshot_ShouldRejectWrites() {
+        versioned().snapshot().add(new TransactionImpl(3, TransactionStatus.ABORTED, "Gosho", "Pesho", 50));
+    }
+
+    @Test
+    public void testChangeTransactionStatus_ShouldNotMutateReturnedTransaction() {
+        VersionedChainblock versioned = versioned();
+        Transaction before = versioned.getById(2);
+
+        versioned.changeTransactionStatus(2, TransactionStatus.SUCCESSFUL);
+
+        assertEquals(TransactionStatus.FAILED, before.getStatus());
+        assertEquals(TransactionStatus.SUCCESSFUL, versioned.getById(2).getStatus());
+    }
+
+    @Test
+    public void testRandomOperations_ShouldMatchChainblockImplIncludingSnapshots() {
+        Chainblock reference = new ChainblockImpl();
+        VersionedChainblock versioned = new VersionedChainblock();
+        Random random = new Random(7);
+        Chainblock frozenReference = null;
+        Chainblock snapshot = null;
+
+        for (int step = 0; step < 3_000; step++) {
+            if (step == 1_500) {
+                frozenReference = copyOf(reference);
+                snapshot = versioned.snapshot();
+            }
+            int id = random.nextInt(500);
+            int operation = random.nextInt(10);
+            if (operation < 6) {
+                Transaction transaction = new TransactionImpl(id, STATUSES[random.nextInt(STATUSES.length)],
+                        PARTIES[random.nextInt(PARTIES.length)], PARTIES[random.nextInt(PARTIES.length)],
+                        random.nextInt(50) / 2.0);
+                reference.add(transaction);
+                versioned.add(new TransactionImpl(id, transaction.getStatus(), transaction.getFrom(),
+                        transaction.getTo(), transaction.getAmount()));
+            } else if (operation < 8 && reference.contains(id)) {
+                TransactionStatus status = STATUSES[random.nextInt(STATUSES.length)];
+                reference.changeTransactionStatus(id, status);
+                versioned.changeTransactionStatus(id, status);
+            } else if (reference.contains(id)) {
+                reference.removeTransactionById(id);
+                versioned.removeTransactionById(id);
+            }
+        }
+
+        assertMatches(reference, versioned);
+        assertMatches(frozenReference, snapshot);
+    }
+
+    private static Chainblock copyOf(Chainblock chainblock) {
+        Chainblock copy = new ChainblockImpl();
+        for (Transaction t : chainblock) {
+            copy.add(new TransactionImpl(t.getId(), t.getStatus(), t.getFrom(), t.getTo(), t.getAmount()));
+        }
+        return copy;
+    }
+
+    private static void assertMatches(Chainblock reference, Chainblock versioned) {
+        assertEquals(reference.getCount(), versioned.getCount());
+        assertSameResult(reference, versioned, c -> c.getAllOrderedByAmountDescendingThenById());
+        assertSameResult(reference, versioned, c -> c.getAllInAmountRange(5, 17.5));
+        assertSameResult(reference, versioned, c -> c);
+        assertSameResult(reference, versioned, c -> c.getTopOrderedByAmountDescendingThenById(25));
+        for (TransactionStatus status : STATUSES) {
+            assertSameResult(reference, versioned, c -> c.getByTransactionStatus(status));
+            assertSameResult(reference, versioned, c -> c.getAllSendersWithTransactionStatus(status));
+            assertSameResult(reference, versioned, c -> c.getByTransactionStatusAndMaximumAmount(status, 12));
+            assertSameResult(reference, versioned, c -> c.getTopByTransactionStatus(status, 7));
+        }
+        for (String party : PARTIES) {
+            assertSameResult(reference, versioned, c -> c.getBySenderOrderedByAmountDescending(party));
+            assertSameResult(reference, versioned, c -> c.getBySenderAndMinimumAmountDescending(party, 20));
+            assertSameResult(reference, versioned, c -> c.getTopBySenderOrderedByAmountDescending(party, 5));
+            assertSameResult(reference, versioned, c -> c.getByReceiverOrderedByAmountThenById(party));
+            assertSameResult(reference, versioned, c -> c.getByReceiverAndAmountRange(party, 3, 9));
+        }
+    }
+
+    private static void assertSameResult(Chainblock reference, Chainblock versioned, Function<Chainblock, Iterable<?>> query) {
+        assertEquals(describeOrThrown(reference, query), describeOrThrown(versioned, query));
+    }
+
+    private static List<String> describeOrThrown(Chainblock chainblock, Function<Chainblock, Iterable<?>> query) {
+        List<String> described = new ArrayList<>();
+        try {
+            for (Object item : query.apply(chainblock)) {
+                if (item instanceof Transaction) {
+                    Transaction t = (Transaction) item;
+                    described.add(t.getId() + ":" + t.getStatus() + ":" + t.getFrom() + ":" + t.getTo() + ":" + t.getAmount());
+                } else {
+                    described.add(String.valueOf(item));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            described.add("IllegalArgumentException");
+        }
+        return described;
+    }
+
+    private static List<Integer> ids(Iterable<Transaction> transactions) {
+        List<Integer> ids = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            ids.add(transaction.getId());
+        }
+        return ids;
+    }
+}